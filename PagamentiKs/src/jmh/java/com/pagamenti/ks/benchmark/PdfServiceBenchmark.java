@@ -0,0 +1,123 @@
+package com.pagamenti.ks.benchmark;
+
+import com.itextpdf.text.DocumentException;
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.service.PdfAssets;
+import com.pagamenti.ks.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression numbers for PDF generation, without a Spring context or database.
+ * Documents are written to a stream that only counts bytes, as when they are
+ * streamed to a response, so the figures are rendering cost alone. Run with
+ * {@code mvn -Pbenchmarks test-compile exec:exec} (see pom.xml); the default
+ * arguments add the GC profiler, whose {@code gc.alloc.rate.norm} is the
+ * allocation per document.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms512m", "-Xmx512m"})
+@State(Scope.Benchmark)
+public class PdfServiceBenchmark {
+
+    private static final String IMAGES = "classpath:images/";
+
+    private PdfAssets pdfAssets;
+    private PdfService pdfService;
+    private Atleta atleta;
+    private Pagamento pagamento;
+
+    @Setup
+    public void setup() {
+        pdfAssets = new PdfAssets(new DefaultResourceLoader(), IMAGES);
+        pdfService = new PdfService(pdfAssets);
+        atleta = atleta();
+        pagamento = pagamento(1L, LocalDate.of(2024, 3, 1));
+    }
+
+    /** Payments printed in a 730 statement: none, one a month, a very busy year. */
+    @State(Scope.Benchmark)
+    public static class Resoconto730 {
+
+        @Param({"0", "12", "200"})
+        public int pagamenti;
+
+        List<Pagamento> lista;
+
+        @Setup
+        public void setup() {
+            lista = new ArrayList<>(pagamenti);
+            for (int i = 0; i < pagamenti; i++) {
+                lista.add(pagamento(i + 1L, LocalDate.of(2024, 1 + i % 12, 1 + i % 28)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void ricevuta(Blackhole blackhole) throws DocumentException {
+        CountingOutputStream out = new CountingOutputStream();
+        pdfService.writeRicevuta(pagamento, atleta, "001/2024", out);
+        blackhole.consume(out.count);
+    }
+
+    @Benchmark
+    public void resoconto730(Resoconto730 state, Blackhole blackhole) throws DocumentException {
+        CountingOutputStream out = new CountingOutputStream();
+        pdfService.writeResoconto730(atleta, state.lista, 2024, out);
+        blackhole.consume(out.count);
+    }
+
+    /** Reading, decoding and pre-compressing the header and signature images. */
+    @Benchmark
+    public String caricamentoImmagini() {
+        return pdfAssets.reload();
+    }
+
+    private static Atleta atleta() {
+        Atleta atleta = new Atleta();
+        atleta.setId(1L);
+        atleta.setNome("Mario");
+        atleta.setCognome("Rossi");
+        atleta.setCf("RSSMRA80A01F704X");
+        return atleta;
+    }
+
+    private static Pagamento pagamento(Long id, LocalDate data) {
+        Pagamento pagamento = new Pagamento();
+        pagamento.setId(id);
+        pagamento.setImporto(50.0);
+        pagamento.setData(data);
+        pagamento.setTipoPagamento(TipoPagamento.CONTANTI);
+        pagamento.setDetraibile(true);
+        pagamento.setNumeroRicevuta(id);
+        pagamento.setAnnoRicevuta(data.getYear());
+        return pagamento;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -1,15 +1,42 @@
 package com.pagamenti.ks.controller;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pagamenti.ks.dto.request.RinnovoScadenzeRequest;
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.dto.response.ImportAtletiResponse;
+import com.pagamenti.ks.dto.response.RinnovoScadenzeResponse;
+import com.pagamenti.ks.dto.response.ScadenzaAtletaResponse;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ConflictException;
+import com.pagamenti.ks.exception.ResourceNotFoundException;
 import com.pagamenti.ks.model.Atleta;
 import com.pagamenti.ks.service.AtletaService;
+import com.pagamenti.ks.service.ImportAtletiService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -18,11 +45,23 @@ import java.util.List;
 public class AtletaController {
 
     private final AtletaService atletaService;
+    private final ImportAtletiService importAtletiService;
+    private final ObjectWriter atletaStreamWriter;
+    private final ObjectWriter atletaPageWriter;
 
-    public AtletaController(AtletaService atletaService) {
+    public AtletaController(AtletaService atletaService, ImportAtletiService importAtletiService,
+                            ObjectMapper objectMapper) {
         this.atletaService = atletaService;
+        this.importAtletiService = importAtletiService;
+        // Streamed rows and pages leave out the payments list, which would cost one query per athlete
+        ObjectMapper senzaPagamenti = objectMapper.copy().addMixIn(Atleta.class, AtletaSenzaPagamenti.class);
+        this.atletaStreamWriter = senzaPagamenti.writerFor(Atleta.class);
+        this.atletaPageWriter = senzaPagamenti.writerFor(new TypeReference<CursorPage<Atleta>>() {});
     }
 
+    @JsonIgnoreProperties("pagamenti")
+    private abstract static class AtletaSenzaPagamenti {}
+
     @GetMapping({"", "/all"})
     @Operation(summary = "Get all athletes or search by name", 
                description = "Retrieve all athletes or search by name/surname")
@@ -40,6 +79,40 @@ public class AtletaController {
         }
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Get a page of athletes, optionally filtered",
+               description = "Keyset pagination ordered by surname, name and id. Pass the returned nextCursor to get the following page. " +
+                             "Items do not include the payments list.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Page of athletes",
+                content = @Content(schema = @Schema(implementation = CursorPage.class))),
+        @ApiResponse(responseCode = "400", description = "Malformed cursor")
+    })
+    public ResponseEntity<byte[]> getPage(
+            @Parameter(description = "Search term for name, surname, codice fiscale, email or phone", required = false)
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) throws JsonProcessingException {
+        CursorPage<Atleta> page;
+        try {
+            page = atletaService.findPage(search, cursor, limit);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(atletaPageWriter.writeValueAsBytes(page));
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream athletes as newline-delimited JSON",
+               description = "Athletes in surname order, optionally filtered, written as they are read. Rows do not include the payments list.")
+    public ResponseEntity<StreamingResponseBody> stream(
+            @Parameter(description = "Search term for name, surname, codice fiscale, email or phone", required = false)
+            @RequestParam(required = false) String search) {
+        return NdjsonResponses.<Atleta>of(atletaStreamWriter, action -> atletaService.forEach(search, action));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get athlete by ID")
     public ResponseEntity<Atleta> getOne(@PathVariable Long id) {
@@ -61,6 +134,14 @@ public class AtletaController {
         return ResponseEntity.ok(atletaService.findAthletesWithExpiringCertificate(days));
     }
 
+    @GetMapping("/expiring")
+    @Operation(summary = "Get active athletes with any deadline expiring in next X days",
+               description = "Certificate, ASC and FIJLKAM deadlines in one query; each entry lists which deadlines are due")
+    public ResponseEntity<List<ScadenzaAtletaResponse>> getAthletesWithAnyDeadline(
+            @RequestParam(defaultValue = "30") int days) {
+        return ResponseEntity.ok(atletaService.findAthletesWithAnyDeadline(days));
+    }
+
     @GetMapping("/expiring-memberships")
     @Operation(summary = "Get athletes with memberships expiring in next X days")
     public ResponseEntity<List<Atleta>> getAthletesWithExpiringMemberships(
@@ -89,17 +170,65 @@ public class AtletaController {
         return ResponseEntity.ok(savedAtleta);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Import athletes in bulk from a CSV file",
+               description = "Header with cf, nome, cognome and optionally the other athlete fields; comma or semicolon separated. " +
+                             "Rows are matched on codice fiscale: known athletes are updated with the fields filled in, the others created. " +
+                             "The file is read as it arrives and written in batches. Answers 409 while another import is running.")
+    public ResponseEntity<ImportAtletiResponse> importCsv(HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        try {
+            return ResponseEntity.ok(importAtletiService.importaCsv(
+                    new InputStreamReader(request.getInputStream(), charset)));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/scadenze/rinnovo")
+    @Operation(summary = "Renew a deadline for many athletes at once",
+               description = "Sets the certificate, ASC or FIJLKAM deadline for the athletes matching every given criterion " +
+                             "(ids, active only, current deadline window) with set-based updates. Returns how many changed.")
+    public ResponseEntity<RinnovoScadenzeResponse> rinnovaScadenze(@Valid @RequestBody RinnovoScadenzeRequest request) {
+        try {
+            return ResponseEntity.ok(atletaService.rinnovaScadenze(request));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update an existing athlete")
     public ResponseEntity<Atleta> update(@PathVariable Long id, @RequestBody Atleta atleta) {
         try {
             Atleta updatedAtleta = atletaService.update(id, atleta);
             return ResponseEntity.ok(updatedAtleta);
+        } catch (ConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update an athlete",
+               description = "JSON Merge Patch: only the fields sent are changed, null clears a field. " +
+                             "Send the version read with the athlete to get 409 instead of overwriting a concurrent change.")
+    public ResponseEntity<Atleta> patch(@PathVariable Long id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(atletaService.patch(id, patch));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
     @PutMapping("/{id}/disable")
     @Operation(summary = "Disable an athlete")
     public ResponseEntity<Atleta> disableAtleta(@PathVariable Long id) {
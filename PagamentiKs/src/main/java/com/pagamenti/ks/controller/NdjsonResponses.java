@@ -0,0 +1,49 @@
+package com.pagamenti.ks.controller;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Builds newline-delimited JSON responses: one object per line, written as
+ * rows are produced so the client can start reading before the query ends.
+ */
+final class NdjsonResponses {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    private NdjsonResponses() {}
+
+    /**
+     * @param writer writer used for each row
+     * @param source invoked on the streaming thread; must pass every row to the given consumer
+     */
+    static <T> ResponseEntity<StreamingResponseBody> of(ObjectWriter writer, Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = out -> {
+            try {
+                source.accept(row -> writeLine(out, writer, row));
+            } catch (UncheckedIOException e) {
+                // Client went away or the connection broke mid-stream
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    private static void writeLine(OutputStream out, ObjectWriter writer, Object row) {
+        try {
+            out.write(writer.writeValueAsBytes(row));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
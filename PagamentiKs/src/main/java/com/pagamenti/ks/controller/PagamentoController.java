@@ -1,50 +1,109 @@
 package com.pagamenti.ks.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.itextpdf.text.DocumentException;
+import com.pagamenti.ks.dto.request.PagamentoImportRequest;
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.dto.response.ImportResponse;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ConflictException;
+import com.pagamenti.ks.exception.ResourceNotFoundException;
+import com.pagamenti.ks.exception.UnprocessableEntityException;
 import com.pagamenti.ks.model.Atleta;
 import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoAtleta;
 import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.service.IdempotenzaService;
+import com.pagamenti.ks.service.ImportPagamentiService;
+import com.pagamenti.ks.service.NumerazioneRicevuteService;
 import com.pagamenti.ks.service.PagamentoService;
+import com.pagamenti.ks.service.PdfCache;
 import com.pagamenti.ks.service.PdfService;
+import com.pagamenti.ks.service.Resoconto730Service;
+import com.pagamenti.ks.service.RicevutaService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/pagamenti")
 @Tag(name = "Payments", description = "Payments management API")
 public class PagamentoController {
 
+    private static final Logger logger = LoggerFactory.getLogger(PagamentoController.class);
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final PagamentoService pagamentoService;
     private final PdfService pdfService;
-    private final AtomicLong receiptCounter = new AtomicLong(1);
+    private final Resoconto730Service resoconto730Service;
+    private final RicevutaService ricevutaService;
+    private final PdfCache pdfCache;
+    private final NumerazioneRicevuteService numerazioneRicevute;
+    private final ImportPagamentiService importPagamentiService;
+    private final IdempotenzaService idempotenzaService;
+    private final ObjectWriter pagamentoWriter;
 
-    public PagamentoController(PagamentoService pagamentoService, PdfService pdfService) {
+    public PagamentoController(PagamentoService pagamentoService, PdfService pdfService,
+                               Resoconto730Service resoconto730Service, RicevutaService ricevutaService,
+                               PdfCache pdfCache, NumerazioneRicevuteService numerazioneRicevute,
+                               ImportPagamentiService importPagamentiService, IdempotenzaService idempotenzaService,
+                               ObjectMapper objectMapper) {
         this.pagamentoService = pagamentoService;
         this.pdfService = pdfService;
+        this.resoconto730Service = resoconto730Service;
+        this.ricevutaService = ricevutaService;
+        this.pdfCache = pdfCache;
+        this.numerazioneRicevute = numerazioneRicevute;
+        this.importPagamentiService = importPagamentiService;
+        this.idempotenzaService = idempotenzaService;
+        this.pagamentoWriter = objectMapper.writerFor(Pagamento.class);
     }
 
     @GetMapping
     @Operation(summary = "Get all payments with optional filters")
     public ResponseEntity<List<Pagamento>> getAll(
+            @RequestParam(required = false) List<Long> ids,
             @RequestParam(required = false) Long atletaId,
             @RequestParam(required = false) TipoPagamento tipo,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
         
+        if (ids != null && !ids.isEmpty()) {
+            return ResponseEntity.ok(pagamentoService.findByIds(ids));
+        }
+        
         if (atletaId != null) {
             return ResponseEntity.ok(pagamentoService.findByAtleta(atletaId));
         }
@@ -60,6 +119,35 @@ public class PagamentoController {
         return ResponseEntity.ok(pagamentoService.findAll());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Get a page of payments with optional filters",
+               description = "Keyset pagination ordered by date and id, newest first. Pass the returned nextCursor to get the following page.")
+    public ResponseEntity<CursorPage<Pagamento>> getPage(
+            @RequestParam(required = false) Long atletaId,
+            @RequestParam(required = false) TipoPagamento tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(pagamentoService.findPage(atletaId, tipo, fromDate, toDate, cursor, limit));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream payments as newline-delimited JSON",
+               description = "Same filters as the list endpoint, all optional and combinable. Rows are written as they are read, newest first, so memory stays constant for any range.")
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) Long atletaId,
+            @RequestParam(required = false) TipoPagamento tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        return NdjsonResponses.<Pagamento>of(pagamentoWriter,
+                action -> pagamentoService.forEach(atletaId, tipo, fromDate, toDate, action));
+    }
+
     @GetMapping("/recent")
     @Operation(summary = "Get recent payments (last X days)")
     public ResponseEntity<List<Pagamento>> getRecentPayments(
@@ -92,6 +180,14 @@ public class PagamentoController {
         return ResponseEntity.ok(totale != null ? totale : 0.0);
     }
     
+    @GetMapping("/atleta/{atletaId}/riepilogo")
+    @Operation(summary = "Get an athlete's payment count, lifetime total and latest payment")
+    public ResponseEntity<RiepilogoAtleta> getRiepilogoByAtleta(@PathVariable Long atletaId) {
+        return pagamentoService.findRiepilogoByAtleta(atletaId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
     @GetMapping("/atleta/{atletaId}/total")
     @Operation(summary = "Get total payments amount for a specific athlete")
     public ResponseEntity<Double> getTotalPaymentsByAthlete(
@@ -101,33 +197,93 @@ public class PagamentoController {
     }
 
     @PostMapping
-    @Operation(summary = "Create a new payment")
-    public ResponseEntity<Pagamento> create(@RequestBody Pagamento pagamento) {
+    @Operation(summary = "Create a new payment",
+            description = "With an Idempotency-Key header, a retry with the same key and body returns the original payment instead of creating another")
+    public ResponseEntity<Pagamento> create(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody Pagamento pagamento) {
         try {
-            // Handle case where athlete is nested object
-            if (pagamento.getAtleta() != null && pagamento.getAtleta().getId() != null) {
-                // If athlete is properly set in the payment object, use createPagamento
-                return ResponseEntity.ok(pagamentoService.createPagamento(pagamento.getAtleta().getId(), pagamento));
-            } else {
-                // Otherwise, save directly (for cases where athlete might not be set)
-                return ResponseEntity.ok(pagamentoService.save(pagamento));
-            }
+            return creaUnaVolta(idempotencyKey, "POST /api/v1/pagamenti", pagamento, () -> {
+                // Handle case where athlete is nested object
+                if (pagamento.getAtleta() != null && pagamento.getAtleta().getId() != null) {
+                    // If athlete is properly set in the payment object, use createPagamento
+                    return pagamentoService.createPagamento(pagamento.getAtleta().getId(), pagamento);
+                } else {
+                    // Otherwise, save directly (for cases where athlete might not be set)
+                    return pagamentoService.save(pagamento);
+                }
+            });
+        } catch (UnprocessableEntityException e) {
+            return ResponseEntity.unprocessableEntity().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
     
     @PostMapping("/atleta/{atletaId}")
-    @Operation(summary = "Create a new payment for an athlete")
+    @Operation(summary = "Create a new payment for an athlete",
+            description = "With an Idempotency-Key header, a retry with the same key and body returns the original payment instead of creating another")
     public ResponseEntity<Pagamento> createForAthlete(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @PathVariable Long atletaId, 
             @RequestBody Pagamento pagamento) {
         try {
-            return ResponseEntity.ok(pagamentoService.createPagamento(atletaId, pagamento));
+            return creaUnaVolta(idempotencyKey, "POST /api/v1/pagamenti/atleta/" + atletaId, pagamento,
+                    () -> pagamentoService.createPagamento(atletaId, pagamento));
+        } catch (UnprocessableEntityException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Creates the payment, or without creating anything returns the one
+     * already created for the same Idempotency-Key, marked with the
+     * Idempotent-Replayed header.
+     */
+    private ResponseEntity<Pagamento> creaUnaVolta(String idempotencyKey, String ambito, Pagamento richiesta,
+                                                   Supplier<Pagamento> crea) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(crea.get());
+        }
+        IdempotenzaService.Risultato<Pagamento> risultato =
+                idempotenzaService.esegui(idempotencyKey, ambito, richiesta, Pagamento.class, crea);
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(risultato.ripetuto()))
+                .body(risultato.valore());
+    }
+    
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Import payments in bulk from a JSON array",
+               description = "Athletes are checked with one query and rows are written with JDBC batch inserts. " +
+                             "The array is read one row at a time as it arrives. Invalid rows are skipped and reported; the others are imported.")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(
+            array = @ArraySchema(schema = @Schema(implementation = PagamentoImportRequest.class))))
+    public ResponseEntity<ImportResponse> importJson(HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(importPagamentiService.importa(request.getInputStream()));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Import payments in bulk from a CSV file",
+               description = "Header with atletaId, data, importo, tipoPagamento and optionally detraibile and note; " +
+                             "comma or semicolon separated. The file is read as it arrives. Invalid rows are skipped and reported.")
+    public ResponseEntity<ImportResponse> importCsv(HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        try {
+            return ResponseEntity.ok(importPagamentiService.importaCsv(
+                    new InputStreamReader(request.getInputStream(), charset)));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
     
     @PutMapping("/{id}")
     @Operation(summary = "Update a payment")
@@ -136,10 +292,28 @@ public class PagamentoController {
             @RequestBody Pagamento pagamento) {
         try {
             return ResponseEntity.ok(pagamentoService.update(id, pagamento));
+        } catch (ConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
+
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Partially update a payment",
+               description = "JSON Merge Patch: only the fields sent are changed (importo, data, tipoPagamento, detraibile, note). " +
+                             "Send the version read with the payment to get 409 instead of overwriting a concurrent change.")
+    public ResponseEntity<Pagamento> patch(@PathVariable Long id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(pagamentoService.patch(id, patch));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
     
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete a payment")
@@ -158,124 +332,89 @@ public class PagamentoController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
         
-        List<Pagamento> pagamenti = pagamentoService.findByDateRange(startDate, endDate);
-        double total = pagamenti.stream()
-            .mapToDouble(p -> p.getImporto() != null ? p.getImporto() : 0.0)
-            .sum();
-            
-        return ResponseEntity.ok(total);
+        Double total = pagamentoService.getTotalBetween(startDate, endDate);
+        return ResponseEntity.ok(total != null ? total : 0.0);
     }
     
     @GetMapping("/{id}/ricevuta")
     @Operation(summary = "Generate PDF receipt for payment")
-    public ResponseEntity<byte[]> generateRicevuta(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> generateRicevuta(@PathVariable Long id, WebRequest webRequest) {
         try {
-            System.out.println("Generating receipt for payment ID: " + id);
+            logger.debug("Generating receipt for payment {}", id);
             
             // Get payment details
             Pagamento pagamento = pagamentoService.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Pagamento non trovato con id: " + id));
-            
-            System.out.println("Payment found: " + pagamento.getId() + ", athlete: " + pagamento.getAtleta());
+                    .orElseThrow(() -> new ResourceNotFoundException("Pagamento", "id", id));
             
             // Get athlete details
             Atleta atleta = pagamento.getAtleta();
             if (atleta == null) {
-                System.out.println("Athlete is null in payment object, trying to get from atletaId");
                 // If athlete is not loaded, fetch it separately
                 Long atletaId = pagamento.getAtletaId();
-                if (atletaId != null) {
-                    atleta = pagamentoService.findAtletaById(atletaId)
-                            .orElseThrow(() -> new RuntimeException("Atleta non trovato con id: " + atletaId));
-                } else {
-                    System.out.println("Both atleta and atletaId are null");
+                if (atletaId == null) {
+                    logger.warn("Payment {} has no athlete: cannot issue a receipt", id);
                     return ResponseEntity.badRequest().build();
                 }
+                atleta = pagamentoService.findAtletaById(atletaId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Atleta", "id", atletaId));
             }
             
-            System.out.println("Athlete found: " + (atleta != null ? "success" : "null") + 
-                (atleta.getNome() != null ? atleta.getNome() : "N/A") + " " + 
-                (atleta.getCognome() != null ? atleta.getCognome() : "N/A"));
-            
-            // Generate receipt number
-            String numeroRicevuta = String.format("%03d", receiptCounter.getAndIncrement());
-            
-            // Generate PDF
-            byte[] pdfContent = pdfService.generateRicevuta(pagamento, atleta, numeroRicevuta);
+            String numeroRicevuta = numerazioneRicevute.assegna(pagamento);
             
-            System.out.println("PDF generated successfully, size: " + pdfContent.length + " bytes");
-            
-            // Set response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", 
-                "ricevuta_" + (atleta != null ? atleta.getCognome() + "_" + atleta.getNome() : "unknown") + ".pdf");
+            // Unchanged receipt: 304 or straight from the disk cache
+            PdfCache.Key key = pdfCache.ricevutaKey(pagamento, atleta);
+            if (webRequest.checkNotModified(key.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(key.etag()).build();
+            }
             
-            return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
+            // Rendered while it is sent
+            Atleta intestatario = atleta;
+            return pdfResponse(key, out -> pdfService.writeRicevuta(pagamento, intestatario, numeroRicevuta, out),
+                "ricevuta_" + atleta.getCognome() + "_" + atleta.getNome() + ".pdf");
             
-        } catch (RuntimeException e) {
-            System.out.println("RuntimeException: " + e.getMessage());
-            e.printStackTrace();
+        } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
-        } catch (IOException | DocumentException e) {
-            System.out.println("IOException/DocumentException: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        } catch (Exception e) {
-            System.out.println("Generic Exception: " + e.getMessage());
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            logger.error("Could not generate the receipt of payment {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
     @GetMapping("/atleta/{atletaId}/ricevuta")
     @Operation(summary = "Generate PDF receipt for athlete's latest payment")
-    public ResponseEntity<byte[]> generateRicevutaForAthlete(@PathVariable Long atletaId) {
+    public ResponseEntity<StreamingResponseBody> generateRicevutaForAthlete(@PathVariable Long atletaId, WebRequest webRequest) {
         try {
-            // Get athlete's payments
-            List<Pagamento> pagamenti = pagamentoService.findByAtleta(atletaId);
-            
-            if (pagamenti.isEmpty()) {
+            // Most recent payment, with the athlete, from the athlete's payment summary
+            Optional<Pagamento> ultimo = pagamentoService.findUltimoPagamento(atletaId);
+            if (ultimo.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
+            Pagamento pagamento = ultimo.get();
+            Atleta atleta = pagamento.getAtleta();
             
-            // Get the most recent payment
-            Pagamento pagamento = pagamenti.get(pagamenti.size() - 1);
-            
-            // Get athlete details
-            Atleta atleta = pagamentoService.findAtletaById(atletaId)
-                    .orElseThrow(() -> new RuntimeException("Atleta non trovato con id: " + atletaId));
-            
-            // Generate receipt number
-            String numeroRicevuta = String.format("%03d", receiptCounter.getAndIncrement());
+            String numeroRicevuta = numerazioneRicevute.assegna(pagamento);
             
-            // Generate PDF
-            byte[] pdfContent = pdfService.generateRicevuta(pagamento, atleta, numeroRicevuta);
+            PdfCache.Key key = pdfCache.ricevutaKey(pagamento, atleta);
+            if (webRequest.checkNotModified(key.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(key.etag()).build();
+            }
             
-            // Set response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", 
+            return pdfResponse(key, out -> pdfService.writeRicevuta(pagamento, atleta, numeroRicevuta, out),
                 "ricevuta_" + atleta.getCognome() + "_" + atleta.getNome() + ".pdf");
             
-            return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
-            
         } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (IOException | DocumentException e) {
+            logger.error("Could not generate the latest receipt of athlete {}", atletaId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
     @GetMapping("/atleta/{atletaId}/resoconto730")
     @Operation(summary = "Generate 730 report PDF for athlete's previous year payments")
-    public ResponseEntity<byte[]> generateResoconto730(@PathVariable Long atletaId) {
+    public ResponseEntity<StreamingResponseBody> generateResoconto730(@PathVariable Long atletaId, WebRequest webRequest) {
         try {
-            System.out.println("Generating 730 report for athlete ID: " + atletaId);
-            
             // Get athlete details
             Atleta atleta = pagamentoService.findAtletaById(atletaId)
-                    .orElseThrow(() -> new RuntimeException("Atleta non trovato con id: " + atletaId));
+                    .orElseThrow(() -> new ResourceNotFoundException("Atleta", "id", atletaId));
             
             // Calculate previous year
             int previousYear = Year.now().minusYears(1).getValue();
@@ -285,34 +424,88 @@ public class PagamentoController {
             LocalDate endDate = LocalDate.of(previousYear, 12, 31);
             
             List<Pagamento> pagamenti = pagamentoService.findByAtletaAndDateRange(atletaId, startDate, endDate);
+            logger.debug("Generating the {} 730 report of athlete {} from {} payments", previousYear, atletaId, pagamenti.size());
             
-            System.out.println("Found " + pagamenti.size() + " payments for year " + previousYear);
-            
-            // Generate PDF
-            byte[] pdfContent = pdfService.generateResoconto730(atleta, pagamenti, previousYear);
-            
-            System.out.println("730 PDF generated successfully, size: " + pdfContent.length + " bytes");
+            PdfCache.Key key = pdfCache.resoconto730Key(atleta, pagamenti, previousYear);
+            if (webRequest.checkNotModified(key.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(key.etag()).build();
+            }
             
-            // Set response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", 
+            return pdfResponse(key, out -> pdfService.writeResoconto730(atleta, pagamenti, previousYear, out),
                 "resoconto_730_" + atleta.getCognome() + "_" + atleta.getNome() + "_" + previousYear + ".pdf");
             
-            return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
-            
-        } catch (RuntimeException e) {
-            System.out.println("RuntimeException: " + e.getMessage());
-            e.printStackTrace();
+        } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
-        } catch (IOException | DocumentException e) {
-            System.out.println("IOException/DocumentException: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        } catch (Exception e) {
-            System.out.println("Generic Exception: " + e.getMessage());
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            logger.error("Could not generate the 730 report of athlete {}", atletaId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Streams a single document: copied from the PDF cache, or rendered into
+     * the response and the cache at once. Nothing is buffered in memory, so a
+     * failure after the first bytes aborts the download instead of turning
+     * into an error status.
+     */
+    private ResponseEntity<StreamingResponseBody> pdfResponse(PdfCache.Key key, PdfCache.PdfGenerator generator,
+                                                              String fileName) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", fileName);
+        headers.setETag(key.etag());
+        // Let the browser keep the file but revalidate it with If-None-Match
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        StreamingResponseBody body = out -> {
+            try {
+                pdfCache.write(key, generator, out);
+            } catch (DocumentException e) {
+                throw new IOException("PDF generation failed: " + e.getMessage(), e);
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    @GetMapping("/pdf-cache")
+    @Operation(summary = "Get PDF cache size and hit ratio")
+    public ResponseEntity<Map<String, Object>> getPdfCacheMetrics() {
+        return ResponseEntity.ok(pdfCache.getMetrics());
+    }
+    
+    @GetMapping(value = "/ricevute", produces = MediaType.APPLICATION_PDF_VALUE)
+    @Operation(summary = "Generate one PDF with the receipts of every payment in a date range",
+               description = "One receipt per page, oldest first; pages are streamed as they are produced and the header image is embedded once")
+    public ResponseEntity<StreamingResponseBody> generateLibroRicevute(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        if (toDate.isBefore(fromDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "ricevute_" + fromDate + "_" + toDate + ".pdf");
+        StreamingResponseBody body = out -> ricevutaService.writeLibroRicevute(fromDate, toDate, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/resoconti730/{anno}", produces = "application/zip")
+    @Operation(summary = "Generate the 730 report of every active athlete for a year as a ZIP",
+               description = "Statements are rendered in parallel and streamed into the archive as they are ready")
+    public ResponseEntity<StreamingResponseBody> generateResoconti730(@PathVariable int anno) {
+        if (anno < 1900 || anno > Year.now().getValue()) {
+            return ResponseEntity.badRequest().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", "resoconti_730_" + anno + ".zip");
+        StreamingResponseBody body = out -> resoconto730Service.writeResoconti730Zip(anno, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    @PostMapping("/pdf-assets/reload")
+    @Operation(summary = "Reload the header and signature images used in PDFs",
+               description = "Re-reads the images from pdf.assets.location; documents generated afterwards use the new files")
+    public ResponseEntity<Map<String, String>> reloadPdfAssets() {
+        return ResponseEntity.ok(Map.of("version", pdfService.reloadAssets()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.dto.request.PdfJobRequest;
+import com.pagamenti.ks.dto.response.PdfJobResponse;
+import com.pagamenti.ks.service.PdfJob;
+import com.pagamenti.ks.service.PdfJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/v1/pdf-jobs")
+@Tag(name = "PDF Jobs", description = "Background generation of receipt books and 730 statement archives")
+public class PdfJobController {
+
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    private final PdfJobService pdfJobService;
+    private final PdfJobEvents pdfJobEvents;
+
+    public PdfJobController(PdfJobService pdfJobService, PdfJobEvents pdfJobEvents) {
+        this.pdfJobService = pdfJobService;
+        this.pdfJobEvents = pdfJobEvents;
+    }
+
+    @PostMapping
+    @Operation(summary = "Start a background PDF job",
+               description = "RESOCONTI_730 needs anno, LIBRO_RICEVUTE needs fromDate and toDate. Answers 503 when the job queue is full")
+    public ResponseEntity<PdfJobResponse> create(@Valid @RequestBody PdfJobRequest request) {
+        PdfJob job;
+        try {
+            switch (request.getTipo()) {
+                case RESOCONTI_730 -> {
+                    Integer anno = request.getAnno();
+                    if (anno == null || anno < 1900 || anno > Year.now().getValue()) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                    job = pdfJobService.avviaResoconti730(anno);
+                }
+                case LIBRO_RICEVUTE -> {
+                    if (request.getFromDate() == null || request.getToDate() == null
+                            || request.getToDate().isBefore(request.getFromDate())) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                    job = pdfJobService.avviaLibroRicevute(request.getFromDate(), request.getToDate());
+                }
+                default -> {
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return ResponseEntity
+                .accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(PdfJobResponse.from(job));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get all PDF jobs, newest first")
+    public ResponseEntity<List<PdfJobResponse>> getAll() {
+        return ResponseEntity.ok(pdfJobService.findAll().stream().map(PdfJobResponse::from).toList());
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get the state and progress of a PDF job")
+    public ResponseEntity<PdfJobResponse> getById(@PathVariable String id) {
+        return pdfJobService.find(id)
+                .map(job -> ResponseEntity.ok(PdfJobResponse.from(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream the progress of a PDF job as server-sent events",
+               description = "An 'avanzamento' event each time the job changes; the stream closes after the final state")
+    public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+        return pdfJobService.find(id)
+                .map(job -> ResponseEntity.ok(pdfJobEvents.iscrivi(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/download")
+    @Operation(summary = "Download the result of a completed PDF job",
+               description = "Answers 409 while the job is queued or running, or if it did not complete")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+        Optional<PdfJob> job = pdfJobService.find(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<Path> risultato = pdfJobService.getRisultato(job.get());
+        if (risultato.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(job.get().getContentType()));
+        headers.setContentDispositionFormData("attachment", job.get().getFileName());
+        return new ResponseEntity<>(new FileSystemResource(risultato.get()), headers, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Cancel a PDF job, or delete the result of an ended one")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        return pdfJobService.annullaOElimina(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/metrics")
+    @Operation(summary = "Get PDF job workers and queue usage")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(pdfJobService.getMetrics());
+    }
+}
@@ -0,0 +1,135 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.dto.response.PdfJobResponse;
+import com.pagamenti.ks.service.PdfJob;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent progress of PDF jobs. One thread checks every watched job at a
+ * fixed interval and sends its state only if it changed, so the job workers
+ * never wait on a slow client and a fast job does not flood the connection.
+ * The sends themselves run on a separate pool, at most one at a time per
+ * subscriber, so a slow client only delays its own updates; one whose send
+ * has not finished after {@code pdf.jobs.events-send-timeout-ms} is dropped.
+ * The stream ends with the event carrying the final state.
+ */
+@Component
+class PdfJobEvents {
+
+    private static final Duration TIMEOUT = Duration.ofHours(1);
+
+    private static final class Iscrizione {
+        private final PdfJob job;
+        private final SseEmitter emitter;
+        private final AtomicBoolean inInvio = new AtomicBoolean();
+        private volatile long versioneInviata = -1;
+        private volatile long inizioInvio;
+
+        private Iscrizione(PdfJob job, SseEmitter emitter) {
+            this.job = job;
+            this.emitter = emitter;
+        }
+    }
+
+    private final Set<Iscrizione> iscrizioni = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService invii;
+    private final long timeoutInvioNanos;
+
+    PdfJobEvents(@Value("${pdf.jobs.events-interval-ms:500}") long intervalMs,
+                 @Value("${pdf.jobs.events-send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.timeoutInvioNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        // Unbounded, but each subscriber has at most one send in flight
+        AtomicInteger threadCount = new AtomicInteger();
+        this.invii = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "pdf-job-events-send-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pdf-job-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleWithFixedDelay(this::invia, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        invii.shutdownNow();
+        iscrizioni.forEach(iscrizione -> iscrizione.emitter.complete());
+    }
+
+    SseEmitter iscrivi(PdfJob job) {
+        return iscrivi(job, new SseEmitter(TIMEOUT.toMillis()));
+    }
+
+    SseEmitter iscrivi(PdfJob job, SseEmitter emitter) {
+        Iscrizione iscrizione = new Iscrizione(job, emitter);
+        emitter.onCompletion(() -> iscrizioni.remove(iscrizione));
+        emitter.onTimeout(() -> iscrizioni.remove(iscrizione));
+        emitter.onError(e -> iscrizioni.remove(iscrizione));
+        iscrizioni.add(iscrizione);
+        return emitter;
+    }
+
+    private void invia() {
+        for (Iscrizione iscrizione : iscrizioni) {
+            if (iscrizione.inInvio.get()) {
+                if (System.nanoTime() - iscrizione.inizioInvio > timeoutInvioNanos) {
+                    // Not reading: stop serving it; the stuck send completes the emitter when it returns
+                    iscrizioni.remove(iscrizione);
+                }
+                continue;
+            }
+            long versione = iscrizione.job.getVersione();
+            if (versione == iscrizione.versioneInviata) {
+                continue;
+            }
+            PdfJobResponse stato = PdfJobResponse.from(iscrizione.job);
+            iscrizione.inInvio.set(true);
+            iscrizione.inizioInvio = System.nanoTime();
+            try {
+                invii.execute(() -> invia(iscrizione, versione, stato));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                iscrizione.inInvio.set(false);
+            }
+        }
+    }
+
+    private void invia(Iscrizione iscrizione, long versione, PdfJobResponse stato) {
+        try {
+            iscrizione.emitter.send(SseEmitter.event()
+                    .id(Long.toString(versione))
+                    .name("avanzamento")
+                    .data(stato, MediaType.APPLICATION_JSON));
+            iscrizione.versioneInviata = versione;
+            if (stato.getStato().isTerminato() || !iscrizioni.contains(iscrizione)) {
+                iscrizioni.remove(iscrizione);
+                iscrizione.emitter.complete();
+            }
+        } catch (Exception e) {
+            // Client gone
+            iscrizioni.remove(iscrizione);
+        } finally {
+            iscrizione.inInvio.set(false);
+        }
+    }
+}
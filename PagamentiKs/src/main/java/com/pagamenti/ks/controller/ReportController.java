@@ -1,11 +1,19 @@
 package com.pagamenti.ks.controller;
 
+import com.pagamenti.ks.dto.response.DashboardBundleResponse;
+import com.pagamenti.ks.dto.response.RicavoMensileResponse;
+import com.pagamenti.ks.dto.response.Riepilogo730Response;
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
+import com.pagamenti.ks.model.enums.TipoPagamento;
 import com.pagamenti.ks.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.Year;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +23,9 @@ import java.util.Map;
 @Tag(name = "Reports", description = "Reports and analytics API")
 public class ReportController {
 
+    private static final int MAX_REVENUE_YEARS = 20;
+    private static final int MAX_EXPIRY_DAYS = 366;
+
     private final ReportService reportService;
 
     public ReportController(ReportService reportService) {
@@ -28,6 +39,30 @@ public class ReportController {
         return ResponseEntity.ok(stats);
     }
 
+    @GetMapping("/dashboard/bundle")
+    @Operation(summary = "Get everything the dashboard needs in one call",
+               description = "Stats, yearly revenue and expiring certificates/memberships with each athlete's latest payment")
+    public ResponseEntity<DashboardBundleResponse> getDashboardBundle(
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(required = false) List<Integer> years) {
+        List<Integer> revenueYears = years;
+        if (revenueYears == null || revenueYears.isEmpty()) {
+            int currentYear = Year.now().getValue();
+            revenueYears = List.of(currentYear - 1, currentYear);
+        }
+        if (days < 0 || days > MAX_EXPIRY_DAYS || revenueYears.size() > MAX_REVENUE_YEARS
+                || !revenueYears.stream().allMatch(ReportController::annoValido)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reportService.getDashboardBundle(days, revenueYears));
+    }
+
+    @GetMapping("/dashboard/cache")
+    @Operation(summary = "Get dashboard cache age and hit ratio")
+    public ResponseEntity<Map<String, Object>> getDashboardCacheMetrics() {
+        return ResponseEntity.ok(reportService.getDashboardCacheMetrics());
+    }
+
     @GetMapping("/monthly-revenue/{year}")
     @Operation(summary = "Get monthly revenue for a specific year")
     public ResponseEntity<Map<String, Double>> getMonthlyRevenue(@PathVariable int year) {
@@ -35,6 +70,40 @@ public class ReportController {
         return ResponseEntity.ok(monthlyRevenue);
     }
 
+    @GetMapping("/monthly-revenue")
+    @Operation(summary = "Get monthly revenue series for a range of years",
+               description = "Monthly totals with payment type and deductibility breakdown, computed in a single query. Defaults to the current year.")
+    public ResponseEntity<List<RicavoMensileResponse>> getMonthlyRevenueSeries(
+            @RequestParam(required = false) Integer fromYear,
+            @RequestParam(required = false) Integer toYear) {
+        int currentYear = Year.now().getValue();
+        int from = fromYear != null ? fromYear : (toYear != null ? toYear : currentYear);
+        int to = toYear != null ? toYear : Math.max(from, currentYear);
+        if (from > to || to - from >= MAX_REVENUE_YEARS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reportService.getMonthlyRevenueSeries(from, to));
+    }
+
+    @GetMapping("/resoconti730")
+    @Operation(summary = "Get every athlete's deductible totals for the 730 declaration",
+               description = "Deductible and non-deductible totals and payment counts per athlete and year, from a single grouped query. " +
+                             "Deductible amounts are capped at the TUIR limit and athletes without payments are flagged. Defaults to the previous and current year.")
+    public ResponseEntity<Riepilogo730Response> getRiepilogo730(@RequestParam(required = false) List<Integer> anni) {
+        List<Integer> anniRichiesti = anni;
+        if (anniRichiesti == null || anniRichiesti.isEmpty()) {
+            int currentYear = Year.now().getValue();
+            anniRichiesti = List.of(currentYear - 1, currentYear);
+        }
+        if (anniRichiesti.size() > MAX_REVENUE_YEARS) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!anniRichiesti.stream().allMatch(ReportController::annoValido)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reportService.getRiepilogo730(anniRichiesti));
+    }
+
     @GetMapping("/athletes/stats")
     @Operation(summary = "Get athlete statistics")
     public ResponseEntity<Map<String, Object>> getAthleteStats() {
@@ -45,8 +114,11 @@ public class ReportController {
     @GetMapping("/athletes/top-payers")
     @Operation(summary = "Get top paying athletes")
     public ResponseEntity<Map<String, Object>> getTopPayingAthletes(
-            @RequestParam(defaultValue = "10") int limit) {
-        List<Map<String, Object>> topPayers = reportService.getTopPayingAthletes(limit);
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) TipoPagamento tipo) {
+        List<TopPagatoreResponse> topPayers = reportService.getTopPayingAthletes(limit, fromDate, toDate, tipo);
         Map<String, Object> result = new HashMap<>();
         result.put("topPayers", topPayers);
         return ResponseEntity.ok(result);
@@ -54,8 +126,37 @@ public class ReportController {
 
     @GetMapping("/payments/method-stats")
     @Operation(summary = "Get payment method statistics")
-    public ResponseEntity<Map<String, Object>> getPaymentMethodStats() {
-        Map<String, Object> stats = reportService.getPaymentMethodStats();
+    public ResponseEntity<Map<String, Object>> getPaymentMethodStats(
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        if (year != null) {
+            if (!annoValido(year)) {
+                return ResponseEntity.badRequest().build();
+            }
+            fromDate = LocalDate.of(year, 1, 1);
+            toDate = LocalDate.of(year, 12, 31);
+        }
+        Map<String, Object> stats = reportService.getPaymentMethodStats(fromDate, toDate);
         return ResponseEntity.ok(stats);
     }
+
+    @PostMapping("/rollup/rebuild")
+    @Operation(summary = "Rebuild the daily revenue rollup and the per-athlete payment summaries from the payments table",
+               description = "Administrative operation; run it when no payments are being registered")
+    public ResponseEntity<Map<String, Object>> rebuildRevenueRollup() {
+        long start = System.currentTimeMillis();
+        int rows = reportService.rebuildRevenueRollup();
+        int athletes = reportService.rebuildAthleteSummaries();
+        Map<String, Object> result = new HashMap<>();
+        result.put("rows", rows);
+        result.put("athletes", athletes);
+        result.put("durationMs", System.currentTimeMillis() - start);
+        return ResponseEntity.ok(result);
+    }
+
+    /** Years reports can cover: from 1900 up to the current year. */
+    private static boolean annoValido(Integer anno) {
+        return anno != null && anno >= 1900 && anno <= Year.now().getValue();
+    }
 }
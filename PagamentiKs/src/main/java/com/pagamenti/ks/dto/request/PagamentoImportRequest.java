@@ -0,0 +1,79 @@
+package com.pagamenti.ks.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+@Schema(description = "One payment of a bulk import")
+public class PagamentoImportRequest {
+
+    @Schema(description = "ID of the athlete who made the payment", example = "1")
+    private Long atletaId;
+
+    @Schema(description = "Payment date", example = "2024-12-28")
+    private LocalDate data;
+
+    @Schema(description = "Payment amount", example = "50.00")
+    private Double importo;
+
+    @Schema(description = "Payment type (CONTANTI, BONIFICO)", example = "CONTANTI")
+    private String tipoPagamento;
+
+    @Schema(description = "Whether the payment is deductible for 730 calculations (default: true)", example = "true")
+    private Boolean detraibile;
+
+    @Schema(description = "Payment notes", example = "Quota di ottobre")
+    private String note;
+
+    // Constructors
+    public PagamentoImportRequest() {}
+
+    // Getters and Setters
+    public Long getAtletaId() {
+        return atletaId;
+    }
+
+    public void setAtletaId(Long atletaId) {
+        this.atletaId = atletaId;
+    }
+
+    public LocalDate getData() {
+        return data;
+    }
+
+    public void setData(LocalDate data) {
+        this.data = data;
+    }
+
+    public Double getImporto() {
+        return importo;
+    }
+
+    public void setImporto(Double importo) {
+        this.importo = importo;
+    }
+
+    public String getTipoPagamento() {
+        return tipoPagamento;
+    }
+
+    public void setTipoPagamento(String tipoPagamento) {
+        this.tipoPagamento = tipoPagamento;
+    }
+
+    public Boolean getDetraibile() {
+        return detraibile;
+    }
+
+    public void setDetraibile(Boolean detraibile) {
+        this.detraibile = detraibile;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+}
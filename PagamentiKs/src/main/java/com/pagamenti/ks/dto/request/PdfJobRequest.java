@@ -0,0 +1,59 @@
+package com.pagamenti.ks.dto.request;
+
+import com.pagamenti.ks.model.enums.TipoJobPdf;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+@Schema(description = "Background PDF job to start")
+public class PdfJobRequest {
+
+    @NotNull(message = "Il tipo di elaborazione è obbligatorio")
+    private TipoJobPdf tipo;
+
+    @Schema(description = "Tax year, for RESOCONTI_730", example = "2024")
+    private Integer anno;
+
+    @Schema(description = "First payment date, for LIBRO_RICEVUTE", example = "2024-01-01")
+    private LocalDate fromDate;
+
+    @Schema(description = "Last payment date, for LIBRO_RICEVUTE", example = "2024-12-31")
+    private LocalDate toDate;
+
+    // Constructors
+    public PdfJobRequest() {}
+
+    // Getters and Setters
+    public TipoJobPdf getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(TipoJobPdf tipo) {
+        this.tipo = tipo;
+    }
+
+    public Integer getAnno() {
+        return anno;
+    }
+
+    public void setAnno(Integer anno) {
+        this.anno = anno;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(LocalDate fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(LocalDate toDate) {
+        this.toDate = toDate;
+    }
+}
@@ -0,0 +1,94 @@
+package com.pagamenti.ks.dto.request;
+
+import com.pagamenti.ks.model.enums.TipoScadenza;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Schema(description = "New deadline to set on a selection of athletes. The criteria combine; at least one is required")
+public class RinnovoScadenzeRequest {
+
+    @NotNull(message = "Il tipo di scadenza è obbligatorio")
+    private TipoScadenza tipo;
+
+    @NotNull(message = "La nuova scadenza è obbligatoria")
+    @Schema(description = "Deadline to set", example = "2025-12-31")
+    private LocalDate nuovaScadenza;
+
+    @Schema(description = "Only these athletes")
+    private List<Long> atletaIds;
+
+    @Schema(description = "Only active athletes", example = "true")
+    private Boolean soloAttivi;
+
+    @Schema(description = "Only athletes whose current deadline is on or after this date", example = "2024-01-01")
+    private LocalDate scadenzaDal;
+
+    @Schema(description = "Only athletes whose current deadline is on or before this date", example = "2024-12-31")
+    private LocalDate scadenzaAl;
+
+    @Schema(description = "With scadenzaDal or scadenzaAl, also athletes that have no deadline yet", example = "false")
+    private Boolean includiSenzaScadenza;
+
+    // Constructors
+    public RinnovoScadenzeRequest() {}
+
+    // Getters and Setters
+    public TipoScadenza getTipo() {
+        return tipo;
+    }
+
+    public void setTipo(TipoScadenza tipo) {
+        this.tipo = tipo;
+    }
+
+    public LocalDate getNuovaScadenza() {
+        return nuovaScadenza;
+    }
+
+    public void setNuovaScadenza(LocalDate nuovaScadenza) {
+        this.nuovaScadenza = nuovaScadenza;
+    }
+
+    public List<Long> getAtletaIds() {
+        return atletaIds;
+    }
+
+    public void setAtletaIds(List<Long> atletaIds) {
+        this.atletaIds = atletaIds;
+    }
+
+    public Boolean getSoloAttivi() {
+        return soloAttivi;
+    }
+
+    public void setSoloAttivi(Boolean soloAttivi) {
+        this.soloAttivi = soloAttivi;
+    }
+
+    public LocalDate getScadenzaDal() {
+        return scadenzaDal;
+    }
+
+    public void setScadenzaDal(LocalDate scadenzaDal) {
+        this.scadenzaDal = scadenzaDal;
+    }
+
+    public LocalDate getScadenzaAl() {
+        return scadenzaAl;
+    }
+
+    public void setScadenzaAl(LocalDate scadenzaAl) {
+        this.scadenzaAl = scadenzaAl;
+    }
+
+    public Boolean getIncludiSenzaScadenza() {
+        return includiSenzaScadenza;
+    }
+
+    public void setIncludiSenzaScadenza(Boolean includiSenzaScadenza) {
+        this.includiSenzaScadenza = includiSenzaScadenza;
+    }
+}
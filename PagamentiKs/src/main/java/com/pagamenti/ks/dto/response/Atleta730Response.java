@@ -0,0 +1,93 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.repository.projection.Riepilogo730View;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Athlete with their 730 totals by year")
+public class Atleta730Response {
+
+    @Schema(description = "Athlete ID", example = "1")
+    private Long id;
+
+    @Schema(description = "Athlete first name", example = "Mario")
+    private String nome;
+
+    @Schema(description = "Athlete last name", example = "Rossi")
+    private String cognome;
+
+    @Schema(description = "Codice Fiscale of the athlete")
+    private String cf;
+
+    @Schema(description = "Email of the athlete")
+    private String email;
+
+    @Schema(description = "Phone number of the athlete")
+    private String telefono;
+
+    @Schema(description = "Registration date of the athlete")
+    private LocalDate dataIscrizione;
+
+    @Schema(description = "Whether the athlete is active", example = "true")
+    private boolean attivo;
+
+    @Schema(description = "Totals by year; every requested year is present")
+    private Map<Integer, Riepilogo730Response.Anno> anni = new LinkedHashMap<>();
+
+    public Atleta730Response() {}
+
+    public Atleta730Response(Riepilogo730View row, List<Integer> anni) {
+        this.id = row.getAtletaId();
+        this.nome = row.getNome();
+        this.cognome = row.getCognome();
+        this.cf = row.getCf();
+        this.email = row.getEmail();
+        this.telefono = row.getTelefono();
+        this.dataIscrizione = row.getDataIscrizione();
+        this.attivo = Boolean.TRUE.equals(row.getAttivo());
+        for (Integer anno : anni) {
+            this.anni.put(anno, new Riepilogo730Response.Anno());
+        }
+    }
+
+    /** Adds a (year, deductible) group of the athlete; groups of other years are ignored. */
+    public void add(Riepilogo730View row) {
+        Riepilogo730Response.Anno anno = row.getAnno() != null ? anni.get(row.getAnno()) : null;
+        if (anno != null) {
+            anno.add(row.getDetraibile(),
+                    row.getTotale() != null ? row.getTotale() : 0.0,
+                    row.getConteggio() != null ? row.getConteggio() : 0L);
+        }
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public String getCognome() { return cognome; }
+    public void setCognome(String cognome) { this.cognome = cognome; }
+
+    public String getCf() { return cf; }
+    public void setCf(String cf) { this.cf = cf; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public String getTelefono() { return telefono; }
+    public void setTelefono(String telefono) { this.telefono = telefono; }
+
+    public LocalDate getDataIscrizione() { return dataIscrizione; }
+    public void setDataIscrizione(LocalDate dataIscrizione) { this.dataIscrizione = dataIscrizione; }
+
+    public boolean isAttivo() { return attivo; }
+    public void setAttivo(boolean attivo) { this.attivo = attivo; }
+
+    public Map<Integer, Riepilogo730Response.Anno> getAnni() { return anni; }
+    public void setAnni(Map<Integer, Riepilogo730Response.Anno> anni) { this.anni = anni; }
+}
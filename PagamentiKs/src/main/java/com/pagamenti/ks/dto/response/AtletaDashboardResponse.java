@@ -0,0 +1,116 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.RiepilogoAtleta;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+@Schema(description = "Athlete registry data with the latest payment, as shown on the dashboard")
+public class AtletaDashboardResponse {
+
+    private Long id;
+    private String nome;
+    private String cognome;
+    private String cf;
+    private LocalDate dataNascita;
+    private String indirizzo;
+    private String telefono;
+    private String email;
+    private LocalDate dataIscrizione;
+    private LocalDate dataScadenzaCertificato;
+    private LocalDate scadenzaTesseramentoAsc;
+    private LocalDate scadenzaTesseramentoFijlkam;
+    private String note;
+    private Boolean attivo;
+
+    @Schema(description = "ID of the latest payment")
+    private Long ultimoPagamentoId;
+
+    @Schema(description = "Date of the latest payment", example = "2024-12-28")
+    private LocalDate ultimoPagamento;
+
+    @Schema(description = "Amount of the latest payment", example = "50.00")
+    private Double importoUltimoPagamento;
+
+    public AtletaDashboardResponse() {}
+
+    public static AtletaDashboardResponse from(Atleta atleta) {
+        AtletaDashboardResponse response = new AtletaDashboardResponse();
+        response.id = atleta.getId();
+        response.nome = atleta.getNome();
+        response.cognome = atleta.getCognome();
+        response.cf = atleta.getCf();
+        response.dataNascita = atleta.getDataNascita();
+        response.indirizzo = atleta.getIndirizzo();
+        response.telefono = atleta.getTelefono();
+        response.email = atleta.getEmail();
+        response.dataIscrizione = atleta.getDataIscrizione();
+        response.dataScadenzaCertificato = atleta.getDataScadenzaCertificato();
+        response.scadenzaTesseramentoAsc = atleta.getScadenzaTesseramentoAsc();
+        response.scadenzaTesseramentoFijlkam = atleta.getScadenzaTesseramentoFijlkam();
+        response.note = atleta.getNote();
+        response.attivo = atleta.isAttivo();
+        return response;
+    }
+
+    public AtletaDashboardResponse withUltimoPagamento(RiepilogoAtleta riepilogo) {
+        if (riepilogo != null && riepilogo.getUltimoPagamentoId() != null) {
+            this.ultimoPagamentoId = riepilogo.getUltimoPagamentoId();
+            this.ultimoPagamento = riepilogo.getUltimoPagamentoData();
+            this.importoUltimoPagamento = riepilogo.getUltimoPagamentoImporto();
+        }
+        return this;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public String getCognome() { return cognome; }
+    public void setCognome(String cognome) { this.cognome = cognome; }
+
+    public String getCf() { return cf; }
+    public void setCf(String cf) { this.cf = cf; }
+
+    public LocalDate getDataNascita() { return dataNascita; }
+    public void setDataNascita(LocalDate dataNascita) { this.dataNascita = dataNascita; }
+
+    public String getIndirizzo() { return indirizzo; }
+    public void setIndirizzo(String indirizzo) { this.indirizzo = indirizzo; }
+
+    public String getTelefono() { return telefono; }
+    public void setTelefono(String telefono) { this.telefono = telefono; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public LocalDate getDataIscrizione() { return dataIscrizione; }
+    public void setDataIscrizione(LocalDate dataIscrizione) { this.dataIscrizione = dataIscrizione; }
+
+    public LocalDate getDataScadenzaCertificato() { return dataScadenzaCertificato; }
+    public void setDataScadenzaCertificato(LocalDate dataScadenzaCertificato) { this.dataScadenzaCertificato = dataScadenzaCertificato; }
+
+    public LocalDate getScadenzaTesseramentoAsc() { return scadenzaTesseramentoAsc; }
+    public void setScadenzaTesseramentoAsc(LocalDate scadenzaTesseramentoAsc) { this.scadenzaTesseramentoAsc = scadenzaTesseramentoAsc; }
+
+    public LocalDate getScadenzaTesseramentoFijlkam() { return scadenzaTesseramentoFijlkam; }
+    public void setScadenzaTesseramentoFijlkam(LocalDate scadenzaTesseramentoFijlkam) { this.scadenzaTesseramentoFijlkam = scadenzaTesseramentoFijlkam; }
+
+    public String getNote() { return note; }
+    public void setNote(String note) { this.note = note; }
+
+    public Boolean getAttivo() { return attivo; }
+    public void setAttivo(Boolean attivo) { this.attivo = attivo; }
+
+    public Long getUltimoPagamentoId() { return ultimoPagamentoId; }
+    public void setUltimoPagamentoId(Long ultimoPagamentoId) { this.ultimoPagamentoId = ultimoPagamentoId; }
+
+    public LocalDate getUltimoPagamento() { return ultimoPagamento; }
+    public void setUltimoPagamento(LocalDate ultimoPagamento) { this.ultimoPagamento = ultimoPagamento; }
+
+    public Double getImportoUltimoPagamento() { return importoUltimoPagamento; }
+    public void setImportoUltimoPagamento(Double importoUltimoPagamento) { this.importoUltimoPagamento = importoUltimoPagamento; }
+}
@@ -0,0 +1,78 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.exception.BadRequestException;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Schema(description = "Page of results addressed by an opaque keyset cursor")
+public class CursorPage<T> {
+
+    private static final String SEPARATOR = "\u001F";
+
+    @Schema(description = "Items of the current page")
+    private List<T> items;
+
+    @Schema(description = "Cursor to pass back to fetch the next page, null when there are no more results")
+    private String nextCursor;
+
+    @Schema(description = "Whether more results are available after this page", example = "true")
+    private boolean hasMore;
+
+    @Schema(description = "Page size applied to the request", example = "50")
+    private int limit;
+
+    public CursorPage() {}
+
+    public CursorPage(List<T> items, String nextCursor, int limit) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.limit = limit;
+    }
+
+    /**
+     * Encodes the sort key of the last returned row into an opaque, URL-safe token.
+     */
+    public static String encodeCursor(Object... keys) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(keys[i] != null ? keys[i].toString() : "");
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encodeCursor(Object...)} back into its key parts.
+     */
+    public static String[] decodeCursor(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != expectedParts) {
+                throw new BadRequestException("Cursore non valido: " + cursor);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursore non valido: " + cursor);
+        }
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
@@ -0,0 +1,48 @@
+package com.pagamenti.ks.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Everything the dashboard needs on load, in one response")
+public class DashboardBundleResponse {
+
+    @Schema(description = "Dashboard statistics, same as /reports/dashboard")
+    private Map<String, Object> stats;
+
+    @Schema(description = "Total revenue by year")
+    private Map<Integer, Double> revenueByYear;
+
+    @Schema(description = "Total number of registered payments", example = "1520")
+    private long totalPayments;
+
+    @Schema(description = "Active athletes with the medical certificate expiring within the window")
+    private List<AtletaDashboardResponse> expiringCertificates;
+
+    @Schema(description = "Active athletes with the ASC membership expiring within the window")
+    private List<AtletaDashboardResponse> expiringAscMemberships;
+
+    @Schema(description = "Active athletes with the FIJLKAM membership expiring within the window")
+    private List<AtletaDashboardResponse> expiringFijlkamMemberships;
+
+    public DashboardBundleResponse() {}
+
+    public Map<String, Object> getStats() { return stats; }
+    public void setStats(Map<String, Object> stats) { this.stats = stats; }
+
+    public Map<Integer, Double> getRevenueByYear() { return revenueByYear; }
+    public void setRevenueByYear(Map<Integer, Double> revenueByYear) { this.revenueByYear = revenueByYear; }
+
+    public long getTotalPayments() { return totalPayments; }
+    public void setTotalPayments(long totalPayments) { this.totalPayments = totalPayments; }
+
+    public List<AtletaDashboardResponse> getExpiringCertificates() { return expiringCertificates; }
+    public void setExpiringCertificates(List<AtletaDashboardResponse> expiringCertificates) { this.expiringCertificates = expiringCertificates; }
+
+    public List<AtletaDashboardResponse> getExpiringAscMemberships() { return expiringAscMemberships; }
+    public void setExpiringAscMemberships(List<AtletaDashboardResponse> expiringAscMemberships) { this.expiringAscMemberships = expiringAscMemberships; }
+
+    public List<AtletaDashboardResponse> getExpiringFijlkamMemberships() { return expiringFijlkamMemberships; }
+    public void setExpiringFijlkamMemberships(List<AtletaDashboardResponse> expiringFijlkamMemberships) { this.expiringFijlkamMemberships = expiringFijlkamMemberships; }
+}
@@ -0,0 +1,111 @@
+package com.pagamenti.ks.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "Outcome of a bulk athlete import, with the result of every row")
+public class ImportAtletiResponse {
+
+    public enum Esito {
+        CREATO,
+        AGGIORNATO,
+        SCARTATO
+    }
+
+    @Schema(description = "Rows read", example = "120")
+    private long righe;
+
+    @Schema(description = "New athletes created", example = "95")
+    private long creati;
+
+    @Schema(description = "Existing athletes, matched on codice fiscale, that were updated", example = "23")
+    private long aggiornati;
+
+    @Schema(description = "Rows rejected", example = "2")
+    private long scartati;
+
+    @Schema(description = "Time taken in milliseconds", example = "640")
+    private long durataMs;
+
+    @Schema(description = "Result of each row, in file order")
+    private List<EsitoRiga> esiti = new ArrayList<>();
+
+    public ImportAtletiResponse() {}
+
+    public void addEsito(EsitoRiga esito) {
+        esiti.add(esito);
+        switch (esito.getEsito()) {
+            case CREATO -> creati++;
+            case AGGIORNATO -> aggiornati++;
+            case SCARTATO -> scartati++;
+        }
+    }
+
+    public long getRighe() { return righe; }
+    public void setRighe(long righe) { this.righe = righe; }
+
+    public long getCreati() { return creati; }
+    public void setCreati(long creati) { this.creati = creati; }
+
+    public long getAggiornati() { return aggiornati; }
+    public void setAggiornati(long aggiornati) { this.aggiornati = aggiornati; }
+
+    public long getScartati() { return scartati; }
+    public void setScartati(long scartati) { this.scartati = scartati; }
+
+    public long getDurataMs() { return durataMs; }
+    public void setDurataMs(long durataMs) { this.durataMs = durataMs; }
+
+    public List<EsitoRiga> getEsiti() { return esiti; }
+    public void setEsiti(List<EsitoRiga> esiti) { this.esiti = esiti; }
+
+    @Schema(description = "Result of one row")
+    public static class EsitoRiga {
+
+        @Schema(description = "CSV record after the header, from 1", example = "17")
+        private long riga;
+
+        @Schema(description = "Codice fiscale as normalized for matching", example = "RSSMRA80A01F704X")
+        private String cf;
+
+        @Schema(description = "What happened to the row")
+        private Esito esito;
+
+        @Schema(description = "Athlete created or updated; null when the row was rejected", example = "42")
+        private Long atletaId;
+
+        @Schema(description = "Why the row was rejected", example = "Codice fiscale non valido: RSS123")
+        private String errore;
+
+        public EsitoRiga() {}
+
+        public EsitoRiga(long riga, String cf, Esito esito, Long atletaId, String errore) {
+            this.riga = riga;
+            this.cf = cf;
+            this.esito = esito;
+            this.atletaId = atletaId;
+            this.errore = errore;
+        }
+
+        public static EsitoRiga scartato(long riga, String cf, String errore) {
+            return new EsitoRiga(riga, cf, Esito.SCARTATO, null, errore);
+        }
+
+        public long getRiga() { return riga; }
+        public void setRiga(long riga) { this.riga = riga; }
+
+        public String getCf() { return cf; }
+        public void setCf(String cf) { this.cf = cf; }
+
+        public Esito getEsito() { return esito; }
+        public void setEsito(Esito esito) { this.esito = esito; }
+
+        public Long getAtletaId() { return atletaId; }
+        public void setAtletaId(Long atletaId) { this.atletaId = atletaId; }
+
+        public String getErrore() { return errore; }
+        public void setErrore(String errore) { this.errore = errore; }
+    }
+}
@@ -0,0 +1,70 @@
+package com.pagamenti.ks.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "Outcome of a bulk import")
+public class ImportResponse {
+
+    @Schema(description = "Rows read", example = "250")
+    private long righe;
+
+    @Schema(description = "Rows written", example = "248")
+    private long importati;
+
+    @Schema(description = "Rows rejected, listed in errori", example = "2")
+    private long scartati;
+
+    @Schema(description = "Time taken in milliseconds", example = "850")
+    private long durataMs;
+
+    @Schema(description = "Rejected rows with the reason")
+    private List<ErroreRiga> errori = new ArrayList<>();
+
+    public ImportResponse() {}
+
+    public void addErrore(long riga, String errore) {
+        errori.add(new ErroreRiga(riga, errore));
+        scartati++;
+    }
+
+    public long getRighe() { return righe; }
+    public void setRighe(long righe) { this.righe = righe; }
+
+    public long getImportati() { return importati; }
+    public void setImportati(long importati) { this.importati = importati; }
+
+    public long getScartati() { return scartati; }
+    public void setScartati(long scartati) { this.scartati = scartati; }
+
+    public long getDurataMs() { return durataMs; }
+    public void setDurataMs(long durataMs) { this.durataMs = durataMs; }
+
+    public List<ErroreRiga> getErrori() { return errori; }
+    public void setErrori(List<ErroreRiga> errori) { this.errori = errori; }
+
+    @Schema(description = "A rejected row")
+    public static class ErroreRiga {
+
+        @Schema(description = "Row number: position in the JSON array, or CSV record after the header, from 1", example = "17")
+        private long riga;
+
+        @Schema(description = "Why the row was rejected", example = "Atleta non trovato con id: 99")
+        private String errore;
+
+        public ErroreRiga() {}
+
+        public ErroreRiga(long riga, String errore) {
+            this.riga = riga;
+            this.errore = errore;
+        }
+
+        public long getRiga() { return riga; }
+        public void setRiga(long riga) { this.riga = riga; }
+
+        public String getErrore() { return errore; }
+        public void setErrore(String errore) { this.errore = errore; }
+    }
+}
@@ -0,0 +1,94 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.model.enums.StatoJobPdf;
+import com.pagamenti.ks.model.enums.TipoJobPdf;
+import com.pagamenti.ks.service.PdfJob;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+@Schema(description = "State and progress of a background PDF job")
+public class PdfJobResponse {
+
+    private String id;
+    private TipoJobPdf tipo;
+    private StatoJobPdf stato;
+
+    @Schema(description = "Documents or receipts written so far", example = "120")
+    private int completati;
+
+    @Schema(description = "Documents or receipts expected; 0 until known", example = "340")
+    private int totale;
+
+    @Schema(description = "Progress from 0 to 100", example = "35")
+    private int percentuale;
+
+    @Schema(description = "Reason of the failure, if the job failed")
+    private String errore;
+
+    private Instant creato;
+    private Instant avviato;
+    private Instant terminato;
+
+    @Schema(description = "Name the result is downloaded as", example = "resoconti_730_2024.zip")
+    private String fileName;
+
+    @Schema(description = "Size of the result in bytes, once completed")
+    private long dimensione;
+
+    public PdfJobResponse() {}
+
+    public static PdfJobResponse from(PdfJob job) {
+        PdfJobResponse response = new PdfJobResponse();
+        response.id = job.getId();
+        response.tipo = job.getTipo();
+        response.stato = job.getStato();
+        response.completati = job.getCompletati();
+        response.totale = job.getTotale();
+        response.percentuale = job.getStato() == StatoJobPdf.COMPLETATO ? 100
+                : job.getTotale() > 0 ? Math.min(100, job.getCompletati() * 100 / job.getTotale()) : 0;
+        response.errore = job.getErrore();
+        response.creato = job.getCreato();
+        response.avviato = job.getAvviato();
+        response.terminato = job.getTerminato();
+        response.fileName = job.getFileName();
+        response.dimensione = job.getDimensione();
+        return response;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public TipoJobPdf getTipo() { return tipo; }
+    public void setTipo(TipoJobPdf tipo) { this.tipo = tipo; }
+
+    public StatoJobPdf getStato() { return stato; }
+    public void setStato(StatoJobPdf stato) { this.stato = stato; }
+
+    public int getCompletati() { return completati; }
+    public void setCompletati(int completati) { this.completati = completati; }
+
+    public int getTotale() { return totale; }
+    public void setTotale(int totale) { this.totale = totale; }
+
+    public int getPercentuale() { return percentuale; }
+    public void setPercentuale(int percentuale) { this.percentuale = percentuale; }
+
+    public String getErrore() { return errore; }
+    public void setErrore(String errore) { this.errore = errore; }
+
+    public Instant getCreato() { return creato; }
+    public void setCreato(Instant creato) { this.creato = creato; }
+
+    public Instant getAvviato() { return avviato; }
+    public void setAvviato(Instant avviato) { this.avviato = avviato; }
+
+    public Instant getTerminato() { return terminato; }
+    public void setTerminato(Instant terminato) { this.terminato = terminato; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public long getDimensione() { return dimensione; }
+    public void setDimensione(long dimensione) { this.dimensione = dimensione; }
+}
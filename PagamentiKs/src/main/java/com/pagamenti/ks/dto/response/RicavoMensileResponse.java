@@ -0,0 +1,83 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Schema(description = "Revenue of a single month with payment type and deductibility breakdown")
+public class RicavoMensileResponse {
+
+    @Schema(description = "Year", example = "2024")
+    private int anno;
+
+    @Schema(description = "Month number (1-12)", example = "3")
+    private int mese;
+
+    @Schema(description = "Month name", example = "Marzo")
+    private String nomeMese;
+
+    @Schema(description = "Total amount of the month", example = "1250.00")
+    private double totale;
+
+    @Schema(description = "Number of payments in the month", example = "25")
+    private long conteggio;
+
+    @Schema(description = "Deductible amount of the month", example = "1100.00")
+    private double totaleDetraibile;
+
+    @Schema(description = "Non-deductible amount of the month", example = "150.00")
+    private double totaleNonDetraibile;
+
+    @Schema(description = "Amount by payment type")
+    private Map<TipoPagamento, Double> totaliPerTipo = new EnumMap<>(TipoPagamento.class);
+
+    public RicavoMensileResponse() {}
+
+    public RicavoMensileResponse(int anno, int mese, String nomeMese) {
+        this.anno = anno;
+        this.mese = mese;
+        this.nomeMese = nomeMese;
+        for (TipoPagamento tipo : TipoPagamento.values()) {
+            totaliPerTipo.put(tipo, 0.0);
+        }
+    }
+
+    public void add(TipoPagamento tipo, Boolean detraibile, double importo, long count) {
+        totale += importo;
+        conteggio += count;
+        if (Boolean.TRUE.equals(detraibile)) {
+            totaleDetraibile += importo;
+        } else {
+            totaleNonDetraibile += importo;
+        }
+        if (tipo != null) {
+            totaliPerTipo.merge(tipo, importo, Double::sum);
+        }
+    }
+
+    public int getAnno() { return anno; }
+    public void setAnno(int anno) { this.anno = anno; }
+
+    public int getMese() { return mese; }
+    public void setMese(int mese) { this.mese = mese; }
+
+    public String getNomeMese() { return nomeMese; }
+    public void setNomeMese(String nomeMese) { this.nomeMese = nomeMese; }
+
+    public double getTotale() { return totale; }
+    public void setTotale(double totale) { this.totale = totale; }
+
+    public long getConteggio() { return conteggio; }
+    public void setConteggio(long conteggio) { this.conteggio = conteggio; }
+
+    public double getTotaleDetraibile() { return totaleDetraibile; }
+    public void setTotaleDetraibile(double totaleDetraibile) { this.totaleDetraibile = totaleDetraibile; }
+
+    public double getTotaleNonDetraibile() { return totaleNonDetraibile; }
+    public void setTotaleNonDetraibile(double totaleNonDetraibile) { this.totaleNonDetraibile = totaleNonDetraibile; }
+
+    public Map<TipoPagamento, Double> getTotaliPerTipo() { return totaliPerTipo; }
+    public void setTotaliPerTipo(Map<TipoPagamento, Double> totaliPerTipo) { this.totaliPerTipo = totaliPerTipo; }
+}
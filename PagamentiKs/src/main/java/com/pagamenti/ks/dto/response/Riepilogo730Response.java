@@ -0,0 +1,159 @@
+package com.pagamenti.ks.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Deductible and non-deductible payments of every athlete for the 730 declaration, by year")
+public class Riepilogo730Response {
+
+    @Schema(description = "Years summarised", example = "[2023, 2024]")
+    private List<Integer> anni;
+
+    @Schema(description = "Maximum deductible amount per athlete and year (TUIR art. 15, c. 1, lett. i-quinquies)", example = "210.00")
+    private double limiteDetraibile;
+
+    @Schema(description = "Tax deduction rate applied to the deductible amount", example = "0.19")
+    private double aliquotaDetrazione;
+
+    @Schema(description = "Totals of all athletes by year")
+    private Map<Integer, Anno> totali = new LinkedHashMap<>();
+
+    @Schema(description = "Number of athletes without payments by year")
+    private Map<Integer, Long> atletiSenzaPagamenti = new LinkedHashMap<>();
+
+    @Schema(description = "Athletes, ordered by last name and first name")
+    private List<Atleta730Response> atleti = new ArrayList<>();
+
+    public Riepilogo730Response() {}
+
+    public Riepilogo730Response(List<Integer> anni, double limiteDetraibile, double aliquotaDetrazione) {
+        this.anni = anni;
+        this.limiteDetraibile = limiteDetraibile;
+        this.aliquotaDetrazione = aliquotaDetrazione;
+        for (Integer anno : anni) {
+            totali.put(anno, new Anno());
+            atletiSenzaPagamenti.put(anno, 0L);
+        }
+    }
+
+    /** Adds an athlete whose years are complete, capping them and updating the totals. */
+    public void addAtleta(Atleta730Response atleta) {
+        atleti.add(atleta);
+        for (Map.Entry<Integer, Anno> entry : atleta.getAnni().entrySet()) {
+            Anno anno = entry.getValue();
+            anno.applicaLimite(limiteDetraibile, aliquotaDetrazione);
+            Anno totale = totali.get(entry.getKey());
+            if (totale != null) {
+                totale.somma(anno);
+            }
+            if (anno.isSenzaPagamenti()) {
+                atletiSenzaPagamenti.merge(entry.getKey(), 1L, Long::sum);
+            }
+        }
+    }
+
+    public List<Integer> getAnni() { return anni; }
+    public void setAnni(List<Integer> anni) { this.anni = anni; }
+
+    public double getLimiteDetraibile() { return limiteDetraibile; }
+    public void setLimiteDetraibile(double limiteDetraibile) { this.limiteDetraibile = limiteDetraibile; }
+
+    public double getAliquotaDetrazione() { return aliquotaDetrazione; }
+    public void setAliquotaDetrazione(double aliquotaDetrazione) { this.aliquotaDetrazione = aliquotaDetrazione; }
+
+    public Map<Integer, Anno> getTotali() { return totali; }
+    public void setTotali(Map<Integer, Anno> totali) { this.totali = totali; }
+
+    public Map<Integer, Long> getAtletiSenzaPagamenti() { return atletiSenzaPagamenti; }
+    public void setAtletiSenzaPagamenti(Map<Integer, Long> atletiSenzaPagamenti) { this.atletiSenzaPagamenti = atletiSenzaPagamenti; }
+
+    public List<Atleta730Response> getAtleti() { return atleti; }
+    public void setAtleti(List<Atleta730Response> atleti) { this.atleti = atleti; }
+
+    @Schema(description = "Payments of one year, split by deductibility")
+    public static class Anno {
+
+        @Schema(description = "Number of deductible payments", example = "10")
+        private long pagamentiDetraibili;
+
+        @Schema(description = "Amount of deductible payments", example = "500.00")
+        private double totaleDetraibile;
+
+        @Schema(description = "Number of non-deductible payments", example = "1")
+        private long pagamentiNonDetraibili;
+
+        @Schema(description = "Amount of non-deductible payments", example = "30.00")
+        private double totaleNonDetraibile;
+
+        @Schema(description = "Deductible amount within the yearly limit", example = "210.00")
+        private double importoDetraibile;
+
+        @Schema(description = "Deductible payments above the yearly limit", example = "290.00")
+        private double eccedenza;
+
+        @Schema(description = "Tax deduction on the deductible amount", example = "39.90")
+        private double detrazione;
+
+        @Schema(description = "True if there are no payments at all in the year", example = "false")
+        private boolean senzaPagamenti = true;
+
+        public void add(Boolean detraibile, double importo, long count) {
+            if (count == 0) {
+                return;
+            }
+            if (Boolean.TRUE.equals(detraibile)) {
+                pagamentiDetraibili += count;
+                totaleDetraibile += importo;
+            } else {
+                pagamentiNonDetraibili += count;
+                totaleNonDetraibile += importo;
+            }
+            senzaPagamenti = false;
+        }
+
+        void applicaLimite(double limite, double aliquota) {
+            importoDetraibile = Math.min(totaleDetraibile, limite);
+            eccedenza = Math.max(0.0, totaleDetraibile - limite);
+            detrazione = Math.round(importoDetraibile * aliquota * 100) / 100.0;
+        }
+
+        void somma(Anno anno) {
+            pagamentiDetraibili += anno.pagamentiDetraibili;
+            totaleDetraibile += anno.totaleDetraibile;
+            pagamentiNonDetraibili += anno.pagamentiNonDetraibili;
+            totaleNonDetraibile += anno.totaleNonDetraibile;
+            importoDetraibile += anno.importoDetraibile;
+            eccedenza += anno.eccedenza;
+            detrazione = Math.round((detrazione + anno.detrazione) * 100) / 100.0;
+            senzaPagamenti &= anno.senzaPagamenti;
+        }
+
+        public long getPagamentiDetraibili() { return pagamentiDetraibili; }
+        public void setPagamentiDetraibili(long pagamentiDetraibili) { this.pagamentiDetraibili = pagamentiDetraibili; }
+
+        public double getTotaleDetraibile() { return totaleDetraibile; }
+        public void setTotaleDetraibile(double totaleDetraibile) { this.totaleDetraibile = totaleDetraibile; }
+
+        public long getPagamentiNonDetraibili() { return pagamentiNonDetraibili; }
+        public void setPagamentiNonDetraibili(long pagamentiNonDetraibili) { this.pagamentiNonDetraibili = pagamentiNonDetraibili; }
+
+        public double getTotaleNonDetraibile() { return totaleNonDetraibile; }
+        public void setTotaleNonDetraibile(double totaleNonDetraibile) { this.totaleNonDetraibile = totaleNonDetraibile; }
+
+        public double getImportoDetraibile() { return importoDetraibile; }
+        public void setImportoDetraibile(double importoDetraibile) { this.importoDetraibile = importoDetraibile; }
+
+        public double getEccedenza() { return eccedenza; }
+        public void setEccedenza(double eccedenza) { this.eccedenza = eccedenza; }
+
+        public double getDetrazione() { return detrazione; }
+        public void setDetrazione(double detrazione) { this.detrazione = detrazione; }
+
+        public boolean isSenzaPagamenti() { return senzaPagamenti; }
+        public void setSenzaPagamenti(boolean senzaPagamenti) { this.senzaPagamenti = senzaPagamenti; }
+    }
+}
@@ -0,0 +1,36 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.model.enums.TipoScadenza;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+@Schema(description = "Outcome of a mass deadline renewal")
+public class RinnovoScadenzeResponse {
+
+    @Schema(description = "Deadline renewed")
+    private TipoScadenza tipo;
+
+    @Schema(description = "Deadline set", example = "2025-12-31")
+    private LocalDate nuovaScadenza;
+
+    @Schema(description = "Athletes changed; those already at the new deadline are not counted", example = "87")
+    private int aggiornati;
+
+    public RinnovoScadenzeResponse() {}
+
+    public RinnovoScadenzeResponse(TipoScadenza tipo, LocalDate nuovaScadenza, int aggiornati) {
+        this.tipo = tipo;
+        this.nuovaScadenza = nuovaScadenza;
+        this.aggiornati = aggiornati;
+    }
+
+    public TipoScadenza getTipo() { return tipo; }
+    public void setTipo(TipoScadenza tipo) { this.tipo = tipo; }
+
+    public LocalDate getNuovaScadenza() { return nuovaScadenza; }
+    public void setNuovaScadenza(LocalDate nuovaScadenza) { this.nuovaScadenza = nuovaScadenza; }
+
+    public int getAggiornati() { return aggiornati; }
+    public void setAggiornati(int aggiornati) { this.aggiornati = aggiornati; }
+}
@@ -0,0 +1,96 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.model.enums.TipoScadenza;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "Active athlete with at least one deadline due within the requested window")
+public class ScadenzaAtletaResponse {
+
+    @Schema(description = "Athlete ID", example = "1")
+    private Long atletaId;
+
+    @Schema(description = "Athlete first name", example = "Mario")
+    private String nome;
+
+    @Schema(description = "Athlete last name", example = "Rossi")
+    private String cognome;
+
+    @Schema(description = "Medical certificate expiry date", example = "2024-12-31")
+    private LocalDate dataScadenzaCertificato;
+
+    @Schema(description = "ASC membership expiry date", example = "2024-12-31")
+    private LocalDate scadenzaTesseramentoAsc;
+
+    @Schema(description = "FIJLKAM membership expiry date", example = "2024-12-31")
+    private LocalDate scadenzaTesseramentoFijlkam;
+
+    @Schema(description = "Deadlines falling within the window")
+    private List<TipoScadenza> scadenzeDovute = new ArrayList<>();
+
+    @Schema(description = "Earliest of the due deadlines", example = "2024-12-31")
+    private LocalDate primaScadenza;
+
+    public ScadenzaAtletaResponse() {}
+
+    public ScadenzaAtletaResponse(Long atletaId, String nome, String cognome,
+                                  LocalDate dataScadenzaCertificato,
+                                  LocalDate scadenzaTesseramentoAsc,
+                                  LocalDate scadenzaTesseramentoFijlkam) {
+        this.atletaId = atletaId;
+        this.nome = nome;
+        this.cognome = cognome;
+        this.dataScadenzaCertificato = dataScadenzaCertificato;
+        this.scadenzaTesseramentoAsc = scadenzaTesseramentoAsc;
+        this.scadenzaTesseramentoFijlkam = scadenzaTesseramentoFijlkam;
+    }
+
+    /**
+     * Fills {@link #scadenzeDovute} and {@link #primaScadenza} with the deadlines
+     * falling on or before the given limit.
+     */
+    public ScadenzaAtletaResponse withDeadlinesDueBy(LocalDate limit) {
+        scadenzeDovute = new ArrayList<>();
+        primaScadenza = null;
+        markIfDue(TipoScadenza.CERTIFICATO, dataScadenzaCertificato, limit);
+        markIfDue(TipoScadenza.TESSERAMENTO_ASC, scadenzaTesseramentoAsc, limit);
+        markIfDue(TipoScadenza.TESSERAMENTO_FIJLKAM, scadenzaTesseramentoFijlkam, limit);
+        return this;
+    }
+
+    private void markIfDue(TipoScadenza tipo, LocalDate scadenza, LocalDate limit) {
+        if (scadenza != null && !scadenza.isAfter(limit)) {
+            scadenzeDovute.add(tipo);
+            if (primaScadenza == null || scadenza.isBefore(primaScadenza)) {
+                primaScadenza = scadenza;
+            }
+        }
+    }
+
+    public Long getAtletaId() { return atletaId; }
+    public void setAtletaId(Long atletaId) { this.atletaId = atletaId; }
+
+    public String getNome() { return nome; }
+    public void setNome(String nome) { this.nome = nome; }
+
+    public String getCognome() { return cognome; }
+    public void setCognome(String cognome) { this.cognome = cognome; }
+
+    public LocalDate getDataScadenzaCertificato() { return dataScadenzaCertificato; }
+    public void setDataScadenzaCertificato(LocalDate dataScadenzaCertificato) { this.dataScadenzaCertificato = dataScadenzaCertificato; }
+
+    public LocalDate getScadenzaTesseramentoAsc() { return scadenzaTesseramentoAsc; }
+    public void setScadenzaTesseramentoAsc(LocalDate scadenzaTesseramentoAsc) { this.scadenzaTesseramentoAsc = scadenzaTesseramentoAsc; }
+
+    public LocalDate getScadenzaTesseramentoFijlkam() { return scadenzaTesseramentoFijlkam; }
+    public void setScadenzaTesseramentoFijlkam(LocalDate scadenzaTesseramentoFijlkam) { this.scadenzaTesseramentoFijlkam = scadenzaTesseramentoFijlkam; }
+
+    public List<TipoScadenza> getScadenzeDovute() { return scadenzeDovute; }
+    public void setScadenzeDovute(List<TipoScadenza> scadenzeDovute) { this.scadenzeDovute = scadenzeDovute; }
+
+    public LocalDate getPrimaScadenza() { return primaScadenza; }
+    public void setPrimaScadenza(LocalDate primaScadenza) { this.primaScadenza = primaScadenza; }
+}
@@ -0,0 +1,33 @@
+package com.pagamenti.ks.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Athlete with the total amount paid")
+public class TopPagatoreResponse {
+
+    @Schema(description = "Athlete information")
+    private PagamentoResponse.AthleteInfo atleta;
+
+    @Schema(description = "Total amount paid", example = "420.00")
+    private Double totalPaid;
+
+    @Schema(description = "Number of payments", example = "12")
+    private Long paymentCount;
+
+    public TopPagatoreResponse() {}
+
+    public TopPagatoreResponse(Long atletaId, String nome, String cognome, Double totalPaid, Long paymentCount) {
+        this.atleta = new PagamentoResponse.AthleteInfo(atletaId, nome, cognome);
+        this.totalPaid = totalPaid != null ? totalPaid : 0.0;
+        this.paymentCount = paymentCount;
+    }
+
+    public PagamentoResponse.AthleteInfo getAtleta() { return atleta; }
+    public void setAtleta(PagamentoResponse.AthleteInfo atleta) { this.atleta = atleta; }
+
+    public Double getTotalPaid() { return totalPaid; }
+    public void setTotalPaid(Double totalPaid) { this.totalPaid = totalPaid; }
+
+    public Long getPaymentCount() { return paymentCount; }
+    public void setPaymentCount(Long paymentCount) { this.paymentCount = paymentCount; }
+}
@@ -0,0 +1,56 @@
+package com.pagamenti.ks.event;
+
+/**
+ * Published by the services whenever an athlete or a payment is written, so
+ * that caches and derived data can be invalidated once the transaction commits.
+ */
+public class DatiModificatiEvent {
+
+    public enum Entita {
+        ATLETA,
+        PAGAMENTO
+    }
+
+    private final Entita entita;
+    private final Long id;
+    private final Long atletaId;
+
+    public DatiModificatiEvent(Entita entita, Long id, Long atletaId) {
+        this.entita = entita;
+        this.id = id;
+        this.atletaId = atletaId;
+    }
+
+    public static DatiModificatiEvent atleta(Long atletaId) {
+        return new DatiModificatiEvent(Entita.ATLETA, atletaId, atletaId);
+    }
+
+    /**
+     * Several athletes were created, or had their deadlines changed, at once;
+     * {@link #getId()} is null. Nothing printed on their documents changed.
+     */
+    public static DatiModificatiEvent atleti() {
+        return new DatiModificatiEvent(Entita.ATLETA, null, null);
+    }
+
+    public static DatiModificatiEvent pagamento(Long pagamentoId, Long atletaId) {
+        return new DatiModificatiEvent(Entita.PAGAMENTO, pagamentoId, atletaId);
+    }
+
+    /** Several payments of the athlete were written at once; {@link #getId()} is null. */
+    public static DatiModificatiEvent pagamentiAtleta(Long atletaId) {
+        return new DatiModificatiEvent(Entita.PAGAMENTO, null, atletaId);
+    }
+
+    public Entita getEntita() {
+        return entita;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAtletaId() {
+        return atletaId;
+    }
+}
@@ -0,0 +1,7 @@
+package com.pagamenti.ks.exception;
+
+public class UnprocessableEntityException extends RuntimeException {
+    public UnprocessableEntityException(String message) {
+        super(message);
+    }
+}
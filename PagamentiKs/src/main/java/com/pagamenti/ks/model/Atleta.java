@@ -5,12 +5,19 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "atleti")
+@Table(name = "atleti", indexes = {
+        @Index(name = "idx_atleti_cf", columnList = "cf"),
+        @Index(name = "idx_atleti_attivo_certificato", columnList = "attivo, datascadenzacertificato"),
+        @Index(name = "idx_atleti_attivo_asc", columnList = "attivo, scadenzatesseramentoasc"),
+        @Index(name = "idx_atleti_attivo_fijlkam", columnList = "attivo, scadenza_tesseramento_fijlkam")
+})
 @Schema(description = "Athlete entity representing a sports athlete")
+@DynamicUpdate
 @JsonInclude(JsonInclude.Include.ALWAYS)
 public class Atleta {
     @Id
@@ -66,6 +73,12 @@ public class Atleta {
     
     @Column(nullable = true)
     private LocalDate disableDate;
+
+    // Optimistic lock: incremented on every update, checked by PATCH and PUT when sent back
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT DEFAULT 0", nullable = false)
+    @Schema(description = "Row version, to send back on updates so concurrent edits are detected", example = "3")
+    private Long version;
     
     @OneToMany(mappedBy = "atleta", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
@@ -195,6 +208,14 @@ public class Atleta {
         this.disableDate = disableDate;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public List<Pagamento> getPagamenti() {
         return pagamenti;
     }
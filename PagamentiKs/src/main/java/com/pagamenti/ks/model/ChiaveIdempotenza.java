@@ -0,0 +1,106 @@
+package com.pagamenti.ks.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * An {@code Idempotency-Key} already used to create a payment, with the
+ * response to replay when the same request is sent again. Written in the
+ * same transaction as the payment, so a key is recorded if and only if its
+ * payment exists.
+ */
+@Entity
+@Table(name = "chiavi_idempotenza", indexes = {
+        @Index(name = "idx_chiavi_idempotenza_scadenza", columnList = "scade_il")
+})
+public class ChiaveIdempotenza implements Persistable<String> {
+
+    @Id
+    @Column(name = "chiave", length = 255)
+    private String chiave;
+
+    // SHA-256 of the endpoint and request body, to tell a retry from a different request reusing the key
+    @Column(name = "impronta", length = 64, nullable = false)
+    private String impronta;
+
+    @Column(name = "risposta", columnDefinition = "TEXT", nullable = false)
+    private String risposta;
+
+    @Column(name = "creata_il", nullable = false)
+    private LocalDateTime creataIl;
+
+    @Column(name = "scade_il", nullable = false)
+    private LocalDateTime scadeIl;
+
+    // Always insert a new key: a merge would overwrite a key another request just committed
+    @Transient
+    private boolean nuova = true;
+
+    public ChiaveIdempotenza() {}
+
+    public ChiaveIdempotenza(String chiave, String impronta, String risposta, LocalDateTime creataIl, LocalDateTime scadeIl) {
+        this.chiave = chiave;
+        this.impronta = impronta;
+        this.risposta = risposta;
+        this.creataIl = creataIl;
+        this.scadeIl = scadeIl;
+    }
+
+    public String getChiave() {
+        return chiave;
+    }
+
+    public void setChiave(String chiave) {
+        this.chiave = chiave;
+    }
+
+    public String getImpronta() {
+        return impronta;
+    }
+
+    public void setImpronta(String impronta) {
+        this.impronta = impronta;
+    }
+
+    public String getRisposta() {
+        return risposta;
+    }
+
+    public void setRisposta(String risposta) {
+        this.risposta = risposta;
+    }
+
+    public LocalDateTime getCreataIl() {
+        return creataIl;
+    }
+
+    public void setCreataIl(LocalDateTime creataIl) {
+        this.creataIl = creataIl;
+    }
+
+    public LocalDateTime getScadeIl() {
+        return scadeIl;
+    }
+
+    public void setScadeIl(LocalDateTime scadeIl) {
+        this.scadeIl = scadeIl;
+    }
+
+    @Override
+    public String getId() {
+        return chiave;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nuova;
+    }
+
+    @PostLoad
+    @PostPersist
+    void segnaSalvata() {
+        nuova = false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.pagamenti.ks.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "contatori_ricevute")
+@Schema(description = "Last receipt number handed out for a year")
+public class ContatoreRicevute {
+
+    @Id
+    @Column(name = "anno")
+    private Integer anno;
+
+    @Column(name = "ultimo_numero", nullable = false)
+    private Long ultimoNumero = 0L;
+
+    public ContatoreRicevute() {}
+
+    public ContatoreRicevute(Integer anno, Long ultimoNumero) {
+        this.anno = anno;
+        this.ultimoNumero = ultimoNumero;
+    }
+
+    public Integer getAnno() {
+        return anno;
+    }
+
+    public void setAnno(Integer anno) {
+        this.anno = anno;
+    }
+
+    public Long getUltimoNumero() {
+        return ultimoNumero;
+    }
+
+    public void setUltimoNumero(Long ultimoNumero) {
+        this.ultimoNumero = ultimoNumero;
+    }
+}
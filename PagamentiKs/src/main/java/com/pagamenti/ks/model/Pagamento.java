@@ -4,11 +4,19 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.pagamenti.ks.model.enums.TipoPagamento;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "pagamenti")
+@Table(name = "pagamenti", indexes = {
+        @Index(name = "idx_pagamenti_data_id", columnList = "data, id"),
+        @Index(name = "idx_pagamenti_atleta_data", columnList = "atleta_id, data"),
+        @Index(name = "idx_pagamenti_tipo_data", columnList = "tipo_pagamento, data")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pagamenti_ricevuta", columnNames = {"anno_ricevuta", "numero_ricevuta"})
+})
 @Schema(description = "Payment entity representing a payment made by an athlete")
+@DynamicUpdate
 public class Pagamento {
     
     @Id
@@ -54,6 +62,20 @@ public class Pagamento {
     @Schema(description = "Payment notes", example = "Pagamento mensile corso avanzato")
     private String note;
 
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT DEFAULT 0", nullable = false)
+    @Schema(description = "Row version, to send back on updates so concurrent edits are detected", example = "0")
+    private Long version;
+
+    // Assigned once by NumerazioneRicevuteService; never written by entity updates
+    @Column(name = "anno_ricevuta", insertable = false, updatable = false)
+    @Schema(description = "Year of the receipt numbering sequence", example = "2024", accessMode = Schema.AccessMode.READ_ONLY)
+    private Integer annoRicevuta;
+
+    @Column(name = "numero_ricevuta", insertable = false, updatable = false)
+    @Schema(description = "Receipt number within its year, assigned when the first receipt is issued", example = "12", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long numeroRicevuta;
+
     // Constructors
     public Pagamento() {}
 
@@ -97,7 +119,10 @@ public class Pagamento {
 
     public void setMetodoPagamento(String metodoPagamento) {
         this.metodoPagamento = metodoPagamento;
-        this.tipoPagamento = TipoPagamento.fromValue(metodoPagamento);
+        // A missing legacy field must not clear a tipoPagamento sent alongside it
+        if (metodoPagamento != null) {
+            this.tipoPagamento = TipoPagamento.fromValue(metodoPagamento);
+        }
     }
 
     public TipoPagamento getTipoPagamento() {
@@ -147,4 +172,28 @@ public class Pagamento {
     public void setNote(String note) {
         this.note = note;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Integer getAnnoRicevuta() {
+        return annoRicevuta;
+    }
+
+    public void setAnnoRicevuta(Integer annoRicevuta) {
+        this.annoRicevuta = annoRicevuta;
+    }
+
+    public Long getNumeroRicevuta() {
+        return numeroRicevuta;
+    }
+
+    public void setNumeroRicevuta(Long numeroRicevuta) {
+        this.numeroRicevuta = numeroRicevuta;
+    }
 }
@@ -0,0 +1,98 @@
+package com.pagamenti.ks.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "riepilogo_pagamenti_atleta")
+@Schema(description = "Pre-aggregated payment count, lifetime total and latest payment of one athlete")
+public class RiepilogoAtleta {
+
+    @Id
+    @Column(name = "atleta_id")
+    @Schema(description = "Athlete ID", example = "1")
+    private Long atletaId;
+
+    @Column(name = "conteggio", nullable = false)
+    @Schema(description = "Number of payments", example = "12")
+    private Long conteggio = 0L;
+
+    @Column(name = "totale", nullable = false)
+    @Schema(description = "Total amount paid", example = "420.00")
+    private Double totale = 0.0;
+
+    @Column(name = "ultimo_pagamento_id")
+    @Schema(description = "ID of the latest payment (by date, then by registration)", example = "42")
+    private Long ultimoPagamentoId;
+
+    @Column(name = "ultimo_pagamento_data")
+    @Schema(description = "Date of the latest payment", example = "2024-03-01")
+    private LocalDate ultimoPagamentoData;
+
+    @Column(name = "ultimo_pagamento_importo")
+    @Schema(description = "Amount of the latest payment", example = "35.00")
+    private Double ultimoPagamentoImporto;
+
+    public RiepilogoAtleta() {}
+
+    public RiepilogoAtleta(Long atletaId, Long conteggio, Double totale) {
+        this.atletaId = atletaId;
+        this.conteggio = conteggio;
+        this.totale = totale;
+    }
+
+    public void setUltimoPagamento(Pagamento pagamento) {
+        this.ultimoPagamentoId = pagamento != null ? pagamento.getId() : null;
+        this.ultimoPagamentoData = pagamento != null ? pagamento.getData() : null;
+        this.ultimoPagamentoImporto = pagamento != null ? pagamento.getImporto() : null;
+    }
+
+    public Long getAtletaId() {
+        return atletaId;
+    }
+
+    public void setAtletaId(Long atletaId) {
+        this.atletaId = atletaId;
+    }
+
+    public Long getConteggio() {
+        return conteggio;
+    }
+
+    public void setConteggio(Long conteggio) {
+        this.conteggio = conteggio;
+    }
+
+    public Double getTotale() {
+        return totale;
+    }
+
+    public void setTotale(Double totale) {
+        this.totale = totale;
+    }
+
+    public Long getUltimoPagamentoId() {
+        return ultimoPagamentoId;
+    }
+
+    public void setUltimoPagamentoId(Long ultimoPagamentoId) {
+        this.ultimoPagamentoId = ultimoPagamentoId;
+    }
+
+    public LocalDate getUltimoPagamentoData() {
+        return ultimoPagamentoData;
+    }
+
+    public void setUltimoPagamentoData(LocalDate ultimoPagamentoData) {
+        this.ultimoPagamentoData = ultimoPagamentoData;
+    }
+
+    public Double getUltimoPagamentoImporto() {
+        return ultimoPagamentoImporto;
+    }
+
+    public void setUltimoPagamentoImporto(Double ultimoPagamentoImporto) {
+        this.ultimoPagamentoImporto = ultimoPagamentoImporto;
+    }
+}
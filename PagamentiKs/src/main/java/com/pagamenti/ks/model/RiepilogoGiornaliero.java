@@ -0,0 +1,92 @@
+package com.pagamenti.ks.model;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "riepilogo_pagamenti_giornaliero", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_riepilogo_giorno_tipo_detraibile", columnNames = {"giorno", "tipo_pagamento", "detraibile"})
+})
+@Schema(description = "Pre-aggregated payment count and amount for one day, payment type and deductibility")
+public class RiepilogoGiornaliero {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "giorno", nullable = false)
+    private LocalDate giorno;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_pagamento", nullable = false)
+    private TipoPagamento tipoPagamento;
+
+    @Column(name = "detraibile", nullable = false)
+    private Boolean detraibile;
+
+    @Column(name = "conteggio", nullable = false)
+    private Long conteggio = 0L;
+
+    @Column(name = "totale", nullable = false)
+    private Double totale = 0.0;
+
+    public RiepilogoGiornaliero() {}
+
+    public RiepilogoGiornaliero(LocalDate giorno, TipoPagamento tipoPagamento, Boolean detraibile, Long conteggio, Double totale) {
+        this.giorno = giorno;
+        this.tipoPagamento = tipoPagamento;
+        this.detraibile = detraibile;
+        this.conteggio = conteggio;
+        this.totale = totale;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getGiorno() {
+        return giorno;
+    }
+
+    public void setGiorno(LocalDate giorno) {
+        this.giorno = giorno;
+    }
+
+    public TipoPagamento getTipoPagamento() {
+        return tipoPagamento;
+    }
+
+    public void setTipoPagamento(TipoPagamento tipoPagamento) {
+        this.tipoPagamento = tipoPagamento;
+    }
+
+    public Boolean getDetraibile() {
+        return detraibile;
+    }
+
+    public void setDetraibile(Boolean detraibile) {
+        this.detraibile = detraibile;
+    }
+
+    public Long getConteggio() {
+        return conteggio;
+    }
+
+    public void setConteggio(Long conteggio) {
+        this.conteggio = conteggio;
+    }
+
+    public Double getTotale() {
+        return totale;
+    }
+
+    public void setTotale(Double totale) {
+        this.totale = totale;
+    }
+}
@@ -0,0 +1,13 @@
+package com.pagamenti.ks.model.enums;
+
+public enum StatoJobPdf {
+    IN_CODA,
+    IN_ESECUZIONE,
+    COMPLETATO,
+    FALLITO,
+    ANNULLATO;
+
+    public boolean isTerminato() {
+        return this == COMPLETATO || this == FALLITO || this == ANNULLATO;
+    }
+}
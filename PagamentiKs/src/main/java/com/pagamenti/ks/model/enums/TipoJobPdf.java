@@ -0,0 +1,6 @@
+package com.pagamenti.ks.model.enums;
+
+public enum TipoJobPdf {
+    RESOCONTI_730,
+    LIBRO_RICEVUTE
+}
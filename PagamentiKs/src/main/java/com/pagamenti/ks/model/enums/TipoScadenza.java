@@ -0,0 +1,7 @@
+package com.pagamenti.ks.model.enums;
+
+public enum TipoScadenza {
+    CERTIFICATO,
+    TESSERAMENTO_ASC,
+    TESSERAMENTO_FIJLKAM
+}
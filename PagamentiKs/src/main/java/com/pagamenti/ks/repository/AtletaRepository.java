@@ -1,12 +1,45 @@
 package com.pagamenti.ks.repository;
 
+import com.pagamenti.ks.dto.response.ScadenzaAtletaResponse;
 import com.pagamenti.ks.model.Atleta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface AtletaRepository extends JpaRepository<Atleta, Long> {
+public interface AtletaRepository extends JpaRepository<Atleta, Long>, AtletaRepositoryCustom {
     List<Atleta> findByCognomeContainingIgnoreCaseOrNomeContainingIgnoreCase(String cognome, String nome);
+
+    List<Atleta> findByAttivoTrue();
+
+    long countByAttivoTrue();
+
+    @Query("SELECT a.id FROM Atleta a WHERE a.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT a FROM Atleta a WHERE a.attivo = true AND a.dataScadenzaCertificato <= :dateLimit ORDER BY a.dataScadenzaCertificato")
+    List<Atleta> findActiveWithCertificateExpiringBy(@Param("dateLimit") LocalDate dateLimit);
+
+    @Query("SELECT COUNT(a) FROM Atleta a WHERE a.attivo = true AND a.dataScadenzaCertificato <= :dateLimit")
+    long countActiveWithCertificateExpiringBy(@Param("dateLimit") LocalDate dateLimit);
+
+    @Query("SELECT a FROM Atleta a WHERE a.attivo = true AND a.scadenzaTesseramentoAsc <= :dateLimit ORDER BY a.scadenzaTesseramentoAsc")
+    List<Atleta> findActiveWithAscMembershipExpiringBy(@Param("dateLimit") LocalDate dateLimit);
+
+    @Query("SELECT a FROM Atleta a WHERE a.attivo = true AND a.scadenzaTesseramentoFijlkam <= :dateLimit ORDER BY a.scadenzaTesseramentoFijlkam")
+    List<Atleta> findActiveWithFijlkamMembershipExpiringBy(@Param("dateLimit") LocalDate dateLimit);
+
+    @Query("SELECT new com.pagamenti.ks.dto.response.ScadenzaAtletaResponse(" +
+           "a.id, a.nome, a.cognome, a.dataScadenzaCertificato, a.scadenzaTesseramentoAsc, a.scadenzaTesseramentoFijlkam) " +
+           "FROM Atleta a WHERE a.attivo = true AND (" +
+           "a.dataScadenzaCertificato <= :dateLimit OR " +
+           "a.scadenzaTesseramentoAsc <= :dateLimit OR " +
+           "a.scadenzaTesseramentoFijlkam <= :dateLimit) " +
+           "ORDER BY a.cognome, a.nome, a.id")
+    List<ScadenzaAtletaResponse> findActiveWithAnyDeadlineBy(@Param("dateLimit") LocalDate dateLimit);
 }
@@ -0,0 +1,36 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.enums.TipoScadenza;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface AtletaRepositoryCustom {
+
+    /**
+     * Keyset page ordered by (cognome, nome, id). Rows strictly after the
+     * (afterCognome, afterNome, afterId) key are returned; pass nulls for the
+     * first page. The search term is optional and matches name or surname.
+     */
+    List<Atleta> findPage(String search, String afterCognome, String afterNome, Long afterId, int limit);
+
+    /**
+     * All matching athletes in (cognome, nome, id) order, read through a cursor
+     * with the given JDBC fetch size. Rows are loaded read-only; the stream must
+     * be consumed and closed inside a transaction.
+     */
+    Stream<Atleta> stream(String search, int fetchSize);
+
+    /**
+     * Sets one deadline on every athlete matching all the given criteria, in a
+     * single UPDATE; null criteria are ignored. Window bounds apply to the
+     * current value of the same deadline. Athletes already at the new value
+     * are left alone; the others get a new version. Returns the number of
+     * athletes changed.
+     */
+    int updateScadenza(TipoScadenza tipo, LocalDate nuovaScadenza, Collection<Long> ids, boolean soloAttivi,
+                       LocalDate scadenzaDal, LocalDate scadenzaAl, boolean includiSenzaScadenza);
+}
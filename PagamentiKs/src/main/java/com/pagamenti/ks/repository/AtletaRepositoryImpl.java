@@ -0,0 +1,119 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.enums.TipoScadenza;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class AtletaRepositoryImpl implements AtletaRepositoryCustom {
+
+    /**
+     * Null names sort as empty strings so the keyset comparison stays total.
+     * Must match the expression index {@code idx_atleti_ordinamento}
+     * (see {@code add_atleti_keyset_index.sql}), or every page is a full sort.
+     */
+    private static final String CHIAVE_ORDINAMENTO = "COALESCE(a.cognome, ''), COALESCE(a.nome, ''), a.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Atleta> findPage(String search, String afterCognome, String afterNome, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT a FROM Atleta a WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        aggiungiRicerca(jpql, params, search);
+        if (afterCognome != null && afterNome != null && afterId != null) {
+            // One row-value comparison, so the index range scan starts right after the key
+            jpql.append(" AND (").append(CHIAVE_ORDINAMENTO).append(") > (:afterCognome, :afterNome, :afterId)");
+            params.put("afterCognome", afterCognome);
+            params.put("afterNome", afterNome);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY ").append(CHIAVE_ORDINAMENTO);
+
+        TypedQuery<Atleta> query = entityManager.createQuery(jpql.toString(), Atleta.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<Atleta> stream(String search, int fetchSize) {
+        StringBuilder jpql = new StringBuilder("SELECT a FROM Atleta a WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        aggiungiRicerca(jpql, params, search);
+        jpql.append(" ORDER BY ").append(CHIAVE_ORDINAMENTO);
+
+        TypedQuery<Atleta> query = entityManager.createQuery(jpql.toString(), Atleta.class);
+        params.forEach(query::setParameter);
+        return query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * Matches the columns the athlete list shows, plus the tax code, like the
+     * client-side filter this search replaced.
+     */
+    private static void aggiungiRicerca(StringBuilder jpql, Map<String, Object> params, String search) {
+        if (search != null && !search.isBlank()) {
+            jpql.append(" AND (LOWER(a.cognome) LIKE :search OR LOWER(a.nome) LIKE :search")
+                    .append(" OR LOWER(a.cf) LIKE :search OR LOWER(a.email) LIKE :search OR a.telefono LIKE :search)");
+            params.put("search", "%" + search.trim().toLowerCase() + "%");
+        }
+    }
+
+    @Override
+    public int updateScadenza(TipoScadenza tipo, LocalDate nuovaScadenza, Collection<Long> ids, boolean soloAttivi,
+                              LocalDate scadenzaDal, LocalDate scadenzaAl, boolean includiSenzaScadenza) {
+        String campo = switch (tipo) {
+            case CERTIFICATO -> "a.dataScadenzaCertificato";
+            case TESSERAMENTO_ASC -> "a.scadenzaTesseramentoAsc";
+            case TESSERAMENTO_FIJLKAM -> "a.scadenzaTesseramentoFijlkam";
+        };
+
+        StringBuilder jpql = new StringBuilder("UPDATE Atleta a SET ").append(campo).append(" = :nuovaScadenza, a.version = a.version + 1")
+                .append(" WHERE (").append(campo).append(" IS NULL OR ").append(campo).append(" <> :nuovaScadenza)");
+        Map<String, Object> params = new HashMap<>();
+        params.put("nuovaScadenza", nuovaScadenza);
+
+        if (ids != null) {
+            jpql.append(" AND a.id IN :ids");
+            params.put("ids", ids);
+        }
+        if (soloAttivi) {
+            jpql.append(" AND a.attivo = true");
+        }
+        if (scadenzaDal != null || scadenzaAl != null) {
+            jpql.append(" AND (");
+            if (includiSenzaScadenza) {
+                jpql.append(campo).append(" IS NULL OR ");
+            }
+            jpql.append("(1 = 1");
+            if (scadenzaDal != null) {
+                jpql.append(" AND ").append(campo).append(" >= :scadenzaDal");
+                params.put("scadenzaDal", scadenzaDal);
+            }
+            if (scadenzaAl != null) {
+                jpql.append(" AND ").append(campo).append(" <= :scadenzaAl");
+                params.put("scadenzaAl", scadenzaAl);
+            }
+            jpql.append("))");
+        }
+
+        Query query = entityManager.createQuery(jpql.toString());
+        params.forEach(query::setParameter);
+        return query.executeUpdate();
+    }
+}
@@ -0,0 +1,18 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.model.ChiaveIdempotenza;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ChiaveIdempotenzaRepository extends JpaRepository<ChiaveIdempotenza, String> {
+
+    @Modifying
+    @Query("DELETE FROM ChiaveIdempotenza c WHERE c.scadeIl < :adesso")
+    int deleteScadute(@Param("adesso") LocalDateTime adesso);
+}
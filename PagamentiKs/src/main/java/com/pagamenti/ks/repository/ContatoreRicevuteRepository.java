@@ -0,0 +1,24 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.model.ContatoreRicevute;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ContatoreRicevuteRepository extends JpaRepository<ContatoreRicevute, Integer> {
+
+    @Modifying
+    @Query("UPDATE ContatoreRicevute c SET c.ultimoNumero = c.ultimoNumero + :quantita WHERE c.anno = :anno")
+    int riserva(@Param("anno") Integer anno, @Param("quantita") long quantita);
+
+    /** Fails with a constraint violation if the year's counter already exists. */
+    @Modifying
+    @Query(value = "INSERT INTO contatori_ricevute (anno, ultimo_numero) VALUES (:anno, :quantita)", nativeQuery = true)
+    int crea(@Param("anno") Integer anno, @Param("quantita") long quantita);
+
+    @Query("SELECT c.ultimoNumero FROM ContatoreRicevute c WHERE c.anno = :anno")
+    Long findUltimoNumero(@Param("anno") Integer anno);
+}
@@ -2,19 +2,44 @@ package com.pagamenti.ks.repository;
 
 import com.pagamenti.ks.model.Pagamento;
 import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.projection.PagamentoSenzaRicevutaView;
+import com.pagamenti.ks.repository.projection.Riepilogo730View;
+import com.pagamenti.ks.repository.projection.RiepilogoAtletaView;
+import com.pagamenti.ks.repository.projection.RiepilogoGiornalieroView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface PagamentoRepository extends JpaRepository<Pagamento, Long> {
+public interface PagamentoRepository extends JpaRepository<Pagamento, Long>, PagamentoRepositoryCustom {
     @Query("SELECT p FROM Pagamento p JOIN FETCH p.atleta")
     List<Pagamento> findAllWithAtleta();
     
+    @Query("SELECT p FROM Pagamento p JOIN FETCH p.atleta WHERE p.id = :id")
+    Optional<Pagamento> findByIdWithAtleta(@Param("id") Long id);
+    
+    @Query("SELECT p FROM Pagamento p JOIN FETCH p.atleta WHERE p.id IN :ids")
+    List<Pagamento> findByIdInWithAtleta(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p FROM Pagamento p WHERE p.atleta.id = :atletaId ORDER BY p.data DESC, p.id DESC")
+    List<Pagamento> findLatestByAtletaId(@Param("atletaId") Long atletaId, Pageable pageable);
+    
+    @Query("SELECT p FROM Pagamento p WHERE p.data = " +
+           "(SELECT MAX(p2.data) FROM Pagamento p2 WHERE p2.atleta.id = p.atleta.id)")
+    List<Pagamento> findLatestOfEachAtleta();
+    
+    @Query("SELECT a.id AS atletaId, COUNT(p) AS conteggio, COALESCE(SUM(p.importo), 0) AS totale " +
+           "FROM Atleta a LEFT JOIN a.pagamenti p GROUP BY a.id")
+    List<RiepilogoAtletaView> aggregateByAtleta();
+    
     @Query("SELECT p FROM Pagamento p JOIN FETCH p.atleta WHERE p.atleta.id = :atletaId")
     List<Pagamento> findByAtletaIdWithAtleta(@Param("atletaId") Long atletaId);
     
@@ -26,6 +51,21 @@ public interface PagamentoRepository extends JpaRepository<Pagamento, Long> {
     @Query("SELECT p FROM Pagamento p JOIN FETCH p.atleta WHERE p.data BETWEEN :startDate AND :endDate")
     List<Pagamento> findBetweenDatesWithAtleta(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
+    @Query("SELECT p.id AS id, p.data AS data FROM Pagamento p " +
+           "WHERE p.data BETWEEN :startDate AND :endDate AND p.numeroRicevuta IS NULL ORDER BY p.data, p.id")
+    List<PagamentoSenzaRicevutaView> findSenzaRicevutaBetweenDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    
+    /** Sets the receipt number only if the payment has none, so a number is never replaced. */
+    @Modifying
+    @Query("UPDATE Pagamento p SET p.annoRicevuta = :anno, p.numeroRicevuta = :numero " +
+           "WHERE p.id = :id AND p.numeroRicevuta IS NULL")
+    int assegnaRicevuta(@Param("id") Long id, @Param("anno") Integer anno, @Param("numero") Long numero);
+    
+    @Query("SELECT p.numeroRicevuta FROM Pagamento p WHERE p.id = :id")
+    Long findNumeroRicevuta(@Param("id") Long id);
+    
+    long countByDataBetween(LocalDate startDate, LocalDate endDate);
+    
     @Query("SELECT p FROM Pagamento p WHERE p.data BETWEEN :startDate AND :endDate")
     List<Pagamento> findBetweenDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
     
@@ -55,4 +95,23 @@ public interface PagamentoRepository extends JpaRepository<Pagamento, Long> {
         @Param("startDate") LocalDate startDate, 
         @Param("endDate") LocalDate endDate
     );
+    
+    @Query("SELECT p.data AS giorno, p.tipoPagamento AS tipoPagamento, p.detraibile AS detraibile, " +
+           "COUNT(p) AS conteggio, SUM(p.importo) AS totale " +
+           "FROM Pagamento p GROUP BY p.data, p.tipoPagamento, p.detraibile")
+    List<RiepilogoGiornalieroView> aggregateDaily();
+    
+    @Query("SELECT p.data AS giorno, p.tipoPagamento AS tipoPagamento, p.detraibile AS detraibile, " +
+           "COUNT(p) AS conteggio, SUM(p.importo) AS totale " +
+           "FROM Pagamento p WHERE p.atleta.id = :atletaId GROUP BY p.data, p.tipoPagamento, p.detraibile")
+    List<RiepilogoGiornalieroView> aggregateDailyByAtletaId(@Param("atletaId") Long atletaId);
+
+    @Query("SELECT a.id AS atletaId, a.nome AS nome, a.cognome AS cognome, a.cf AS cf, a.email AS email, " +
+           "a.telefono AS telefono, a.dataIscrizione AS dataIscrizione, a.attivo AS attivo, " +
+           "EXTRACT(YEAR FROM p.data) AS anno, p.detraibile AS detraibile, COUNT(p) AS conteggio, SUM(p.importo) AS totale " +
+           "FROM Atleta a LEFT JOIN Pagamento p ON p.atleta = a AND p.data BETWEEN :startDate AND :endDate " +
+           "GROUP BY a.id, a.nome, a.cognome, a.cf, a.email, a.telefono, a.dataIscrizione, a.attivo, " +
+           "EXTRACT(YEAR FROM p.data), p.detraibile " +
+           "ORDER BY a.cognome, a.nome, a.id")
+    List<Riepilogo730View> aggregate730ByAtleta(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 }
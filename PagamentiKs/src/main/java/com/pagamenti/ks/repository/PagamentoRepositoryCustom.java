@@ -0,0 +1,42 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface PagamentoRepositoryCustom {
+
+    /**
+     * Keyset page ordered by (data DESC, id DESC). Rows strictly after the
+     * (afterData, afterId) key are returned; pass nulls for the first page.
+     * Every filter is optional.
+     */
+    List<Pagamento> findPageWithAtleta(Long atletaId, TipoPagamento tipo,
+                                       LocalDate fromDate, LocalDate toDate,
+                                       LocalDate afterData, Long afterId, int limit);
+
+    /**
+     * Up to {@code limit} payments in the date range with their athlete,
+     * ordered by (data, id), oldest first, starting strictly after the
+     * (afterData, afterId) key; pass nulls for the first block.
+     */
+    List<Pagamento> findNextWithAtleta(LocalDate fromDate, LocalDate toDate,
+                                       LocalDate afterData, Long afterId, int limit);
+
+    /**
+     * All matching payments ordered by (data DESC, id DESC), read through a
+     * cursor with the given JDBC fetch size. Rows are loaded read-only; the
+     * stream must be consumed and closed inside a transaction.
+     */
+    Stream<Pagamento> stream(Long atletaId, TipoPagamento tipo, LocalDate fromDate, LocalDate toDate, int fetchSize);
+
+    /**
+     * Athletes ordered by total amount paid, highest first, computed with one
+     * grouped query and limited in the database. Every filter is optional.
+     */
+    List<TopPagatoreResponse> findTopPayers(LocalDate fromDate, LocalDate toDate, TipoPagamento tipo, int limit);
+}
@@ -0,0 +1,122 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class PagamentoRepositoryImpl implements PagamentoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Pagamento> findPageWithAtleta(Long atletaId, TipoPagamento tipo,
+                                              LocalDate fromDate, LocalDate toDate,
+                                              LocalDate afterData, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Pagamento p JOIN FETCH p.atleta a WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        appendFilters(jpql, params, atletaId, tipo, fromDate, toDate);
+
+        if (afterData != null && afterId != null) {
+            // One row-value comparison, so the idx_pagamenti_data_id scan starts right after the key
+            jpql.append(" AND (p.data, p.id) < (:afterData, :afterId)");
+            params.put("afterData", afterData);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY p.data DESC, p.id DESC");
+
+        TypedQuery<Pagamento> query = entityManager.createQuery(jpql.toString(), Pagamento.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Pagamento> findNextWithAtleta(LocalDate fromDate, LocalDate toDate,
+                                              LocalDate afterData, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Pagamento p JOIN FETCH p.atleta a WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        appendFilters(jpql, params, null, null, fromDate, toDate);
+
+        if (afterData != null && afterId != null) {
+            jpql.append(" AND (p.data, p.id) > (:afterData, :afterId)");
+            params.put("afterData", afterData);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY p.data, p.id");
+
+        TypedQuery<Pagamento> query = entityManager.createQuery(jpql.toString(), Pagamento.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<Pagamento> stream(Long atletaId, TipoPagamento tipo, LocalDate fromDate, LocalDate toDate, int fetchSize) {
+        // No fetch join: the JSON only carries atletaId, which the proxy holds without loading
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Pagamento p WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        appendFilters(jpql, params, atletaId, tipo, fromDate, toDate);
+        jpql.append(" ORDER BY p.data DESC, p.id DESC");
+
+        TypedQuery<Pagamento> query = entityManager.createQuery(jpql.toString(), Pagamento.class);
+        params.forEach(query::setParameter);
+        return query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    private void appendFilters(StringBuilder jpql, Map<String, Object> params, Long atletaId, TipoPagamento tipo,
+                               LocalDate fromDate, LocalDate toDate) {
+        if (atletaId != null) {
+            jpql.append(" AND p.atleta.id = :atletaId");
+            params.put("atletaId", atletaId);
+        }
+        if (tipo != null) {
+            jpql.append(" AND p.tipoPagamento = :tipo");
+            params.put("tipo", tipo);
+        }
+        if (fromDate != null) {
+            jpql.append(" AND p.data >= :fromDate");
+            params.put("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            jpql.append(" AND p.data <= :toDate");
+            params.put("toDate", toDate);
+        }
+    }
+
+    @Override
+    public List<TopPagatoreResponse> findTopPayers(LocalDate fromDate, LocalDate toDate, TipoPagamento tipo, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT new com.pagamenti.ks.dto.response.TopPagatoreResponse(" +
+                "a.id, a.nome, a.cognome, SUM(p.importo), COUNT(p)) " +
+                "FROM Pagamento p JOIN p.atleta a WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (fromDate != null) {
+            jpql.append(" AND p.data >= :fromDate");
+            params.put("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            jpql.append(" AND p.data <= :toDate");
+            params.put("toDate", toDate);
+        }
+        if (tipo != null) {
+            jpql.append(" AND p.tipoPagamento = :tipo");
+            params.put("tipo", tipo);
+        }
+        jpql.append(" GROUP BY a.id, a.nome, a.cognome ORDER BY SUM(p.importo) DESC, a.id");
+
+        TypedQuery<TopPagatoreResponse> query = entityManager.createQuery(jpql.toString(), TopPagatoreResponse.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,69 @@
+package com.pagamenti.ks.repository;
+
+import com.pagamenti.ks.model.RiepilogoGiornaliero;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.projection.RicavoAggregatoView;
+import com.pagamenti.ks.repository.projection.TotalePerTipoView;
+import com.pagamenti.ks.repository.projection.TotaleView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RiepilogoGiornalieroRepository extends JpaRepository<RiepilogoGiornaliero, Long> {
+
+    /**
+     * Creates the day's empty row for the type and deductibility unless it
+     * exists. A concurrent creation makes this wait for it and then do
+     * nothing, instead of failing. No conflict target, as in
+     * {@link RiepilogoAtletaRepository#creaSeManca}: H2 does not accept one.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO riepilogo_pagamenti_giornaliero (giorno, tipo_pagamento, detraibile, conteggio, totale) " +
+                   "VALUES (:giorno, :tipo, :detraibile, 0, 0) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int creaSeManca(
+        @Param("giorno") LocalDate giorno,
+        @Param("tipo") String tipo,
+        @Param("detraibile") Boolean detraibile
+    );
+
+    @Modifying
+    @Query("UPDATE RiepilogoGiornaliero r SET r.conteggio = r.conteggio + :conteggio, r.totale = r.totale + :importo " +
+           "WHERE r.giorno = :giorno AND r.tipoPagamento = :tipo AND r.detraibile = :detraibile")
+    int applyDelta(
+        @Param("giorno") LocalDate giorno,
+        @Param("tipo") TipoPagamento tipo,
+        @Param("detraibile") Boolean detraibile,
+        @Param("conteggio") long conteggio,
+        @Param("importo") double importo
+    );
+
+    @Query("SELECT EXTRACT(YEAR FROM r.giorno) AS anno, EXTRACT(MONTH FROM r.giorno) AS mese, " +
+           "r.tipoPagamento AS tipoPagamento, r.detraibile AS detraibile, " +
+           "SUM(r.totale) AS totale, SUM(r.conteggio) AS conteggio " +
+           "FROM RiepilogoGiornaliero r WHERE r.giorno BETWEEN :startDate AND :endDate " +
+           "GROUP BY EXTRACT(YEAR FROM r.giorno), EXTRACT(MONTH FROM r.giorno), r.tipoPagamento, r.detraibile")
+    List<RicavoAggregatoView> aggregateMonthly(
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate
+    );
+
+    @Query("SELECT r.tipoPagamento AS tipoPagamento, SUM(r.conteggio) AS conteggio, SUM(r.totale) AS totale " +
+           "FROM RiepilogoGiornaliero r WHERE r.giorno BETWEEN :startDate AND :endDate GROUP BY r.tipoPagamento")
+    List<TotalePerTipoView> aggregateByTipoPagamento(
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate
+    );
+
+    @Query("SELECT COALESCE(SUM(r.conteggio), 0) AS conteggio, COALESCE(SUM(r.totale), 0) AS totale " +
+           "FROM RiepilogoGiornaliero r WHERE r.giorno BETWEEN :startDate AND :endDate")
+    TotaleView sumBetween(
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate
+    );
+}
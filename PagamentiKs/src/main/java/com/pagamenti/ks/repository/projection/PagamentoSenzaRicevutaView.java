@@ -0,0 +1,11 @@
+package com.pagamenti.ks.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * A payment that has not been given a receipt number yet.
+ */
+public interface PagamentoSenzaRicevutaView {
+    Long getId();
+    LocalDate getData();
+}
@@ -0,0 +1,15 @@
+package com.pagamenti.ks.repository.projection;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+
+/**
+ * Revenue of one (year, month, payment type, deductible) group.
+ */
+public interface RicavoAggregatoView {
+    Integer getAnno();
+    Integer getMese();
+    TipoPagamento getTipoPagamento();
+    Boolean getDetraibile();
+    Double getTotale();
+    Long getConteggio();
+}
@@ -0,0 +1,23 @@
+package com.pagamenti.ks.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * One athlete with the count and amount of their payments of one (year,
+ * deductible) group. Athletes without payments in the period come back once,
+ * with null year and deductible and a zero count.
+ */
+public interface Riepilogo730View {
+    Long getAtletaId();
+    String getNome();
+    String getCognome();
+    String getCf();
+    String getEmail();
+    String getTelefono();
+    LocalDate getDataIscrizione();
+    Boolean getAttivo();
+    Integer getAnno();
+    Boolean getDetraibile();
+    Long getConteggio();
+    Double getTotale();
+}
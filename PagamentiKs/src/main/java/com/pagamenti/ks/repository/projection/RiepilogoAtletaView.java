@@ -0,0 +1,10 @@
+package com.pagamenti.ks.repository.projection;
+
+/**
+ * Count and amount of all the payments of one athlete.
+ */
+public interface RiepilogoAtletaView {
+    Long getAtletaId();
+    Long getConteggio();
+    Double getTotale();
+}
@@ -0,0 +1,16 @@
+package com.pagamenti.ks.repository.projection;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+
+import java.time.LocalDate;
+
+/**
+ * Count and amount of the payments of one (day, payment type, deductible) group.
+ */
+public interface RiepilogoGiornalieroView {
+    LocalDate getGiorno();
+    TipoPagamento getTipoPagamento();
+    Boolean getDetraibile();
+    Long getConteggio();
+    Double getTotale();
+}
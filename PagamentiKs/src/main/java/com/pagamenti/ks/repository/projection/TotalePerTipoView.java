@@ -0,0 +1,12 @@
+package com.pagamenti.ks.repository.projection;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+
+/**
+ * Count and amount of the payments of one payment type.
+ */
+public interface TotalePerTipoView {
+    TipoPagamento getTipoPagamento();
+    Long getConteggio();
+    Double getTotale();
+}
@@ -0,0 +1,9 @@
+package com.pagamenti.ks.repository.projection;
+
+/**
+ * Count and amount of a set of payments.
+ */
+public interface TotaleView {
+    Long getConteggio();
+    Double getTotale();
+}
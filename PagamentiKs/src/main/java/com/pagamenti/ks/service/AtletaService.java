@@ -1,39 +1,132 @@
 package com.pagamenti.ks.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamenti.ks.dto.request.RinnovoScadenzeRequest;
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.dto.response.RinnovoScadenzeResponse;
+import com.pagamenti.ks.dto.response.ScadenzaAtletaResponse;
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ResourceNotFoundException;
 import com.pagamenti.ks.model.Atleta;
 import com.pagamenti.ks.repository.AtletaRepository;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class AtletaService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int STREAM_FETCH_SIZE = 500;
+    private static final int ID_PER_RINNOVO = 1000;
+    // Activation goes through disable/enable, which also keep disableDate
+    private static final Set<String> CAMPI_MODIFICABILI = Set.of("nome", "cognome", "cf", "dataNascita", "indirizzo",
+            "telefono", "email", "dataIscrizione", "dataScadenzaCertificato", "scadenzaTesseramentoAsc",
+            "scadenzaTesseramentoFijlkam", "note");
+
     private final AtletaRepository atletaRepository;
+    private final RiepilogoService riepilogoService;
+    private final RiepilogoAtletaService riepilogoAtletaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
 
-    public AtletaService(AtletaRepository atletaRepository) {
+    public AtletaService(AtletaRepository atletaRepository, RiepilogoService riepilogoService,
+                         RiepilogoAtletaService riepilogoAtletaService,
+                         ApplicationEventPublisher eventPublisher, EntityManager entityManager,
+                         ObjectMapper objectMapper) {
         this.atletaRepository = atletaRepository;
+        this.riepilogoService = riepilogoService;
+        this.riepilogoAtletaService = riepilogoAtletaService;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
     }
 
     public List<Atleta> findAll() {
         return atletaRepository.findAll();
     }
 
+    /**
+     * Hands every matching athlete to the action in surname order without
+     * materializing the result: rows come through a JDBC cursor and each one is
+     * detached once handled. The payments collection is not loaded.
+     */
+    @Transactional(readOnly = true)
+    public long forEach(String search, Consumer<Atleta> action) {
+        long count = 0;
+        try (Stream<Atleta> rows = atletaRepository.stream(search, STREAM_FETCH_SIZE)) {
+            Iterator<Atleta> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Atleta atleta = iterator.next();
+                action.accept(atleta);
+                entityManager.detach(atleta);
+                count++;
+            }
+        }
+        return count;
+    }
+
     public Optional<Atleta> findById(Long id) {
         return atletaRepository.findById(id);
     }
 
+    public CursorPage<Atleta> findPage(String search, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        String afterCognome = null;
+        String afterNome = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorPage.decodeCursor(cursor, 3);
+            afterCognome = keys[0];
+            afterNome = keys[1];
+            try {
+                afterId = Long.valueOf(keys[2]);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Cursore non valido: " + cursor);
+            }
+        }
+
+        // One extra row tells us whether another page exists without a COUNT query
+        List<Atleta> rows = atletaRepository.findPage(search, afterCognome, afterNome, afterId, pageSize + 1);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            Atleta last = rows.get(pageSize - 1);
+            nextCursor = CursorPage.encodeCursor(last.getCognome(), last.getNome(), last.getId());
+        }
+        return new CursorPage<>(rows, nextCursor, pageSize);
+    }
+
     public Atleta save(Atleta atleta) {
         if (atleta.getDataIscrizione() == null) {
             atleta.setDataIscrizione(LocalDate.now());
         }
-        return atletaRepository.save(atleta);
+        boolean nuovo = atleta.getId() == null;
+        Atleta saved = atletaRepository.save(atleta);
+        if (nuovo) {
+            riepilogoAtletaService.crea(saved.getId());
+        }
+        eventPublisher.publishEvent(DatiModificatiEvent.atleta(saved.getId()));
+        return saved;
     }
 
     private static final Logger logger = LoggerFactory.getLogger(AtletaService.class);
@@ -46,6 +139,7 @@ public class AtletaService {
         return atletaRepository.findById(id)
                 .map(atleta -> {
                     logger.info("Atleta trovato nel DB prima dell'aggiornamento: {}", atleta);
+                    MergePatch.verificaVersione(atletaDetails.getVersion(), atleta.getVersion());
 
                     // Log dei valori prima dell'aggiornamento
                     logger.info("Valore scadenzaTesseramentoAsc in ingresso: {}", atletaDetails.getScadenzaTesseramentoAsc());
@@ -77,6 +171,7 @@ public class AtletaService {
 
                     Atleta atletaAggiornato = atletaRepository.save(atleta);
                     logger.info("Atleta dopo il salvataggio: {}", atletaAggiornato);
+                    eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
 
                     return atletaAggiornato;
                 })
@@ -86,8 +181,64 @@ public class AtletaService {
                 });
     }
 
+    /**
+     * Applies a JSON Merge Patch: only the fields sent are changed, and only
+     * the changed columns are written. A {@code version} member, when sent,
+     * must match the current one.
+     *
+     * @throws ResourceNotFoundException if the athlete does not exist
+     * @throws BadRequestException if the patch is not valid
+     * @throws com.pagamenti.ks.exception.ConflictException if the version is stale
+     */
+    public Atleta patch(Long id, JsonNode patch) {
+        Atleta atleta = atletaRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Atleta", "id", id));
+        MergePatch.applica(objectMapper, atleta, atleta.getVersion(), patch, CAMPI_MODIFICABILI);
+        Atleta saved = atletaRepository.saveAndFlush(atleta);
+        eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
+        return saved;
+    }
+
+    /**
+     * Sets a deadline for a selection of athletes with set-based updates
+     * instead of one {@link #update} per athlete. Ids are sent a thousand per
+     * statement; the other criteria narrow every statement.
+     *
+     * @throws BadRequestException if no selection criterion is given
+     */
+    public RinnovoScadenzeResponse rinnovaScadenze(RinnovoScadenzeRequest request) {
+        boolean soloAttivi = Boolean.TRUE.equals(request.getSoloAttivi());
+        List<Long> ids = request.getAtletaIds();
+        if (ids == null && !soloAttivi && request.getScadenzaDal() == null && request.getScadenzaAl() == null) {
+            throw new BadRequestException("Indicare almeno un criterio: atletaIds, soloAttivi, scadenzaDal o scadenzaAl");
+        }
+        boolean includiSenzaScadenza = Boolean.TRUE.equals(request.getIncludiSenzaScadenza());
+        int aggiornati = 0;
+        if (ids == null) {
+            aggiornati = atletaRepository.updateScadenza(request.getTipo(), request.getNuovaScadenza(), null, soloAttivi,
+                    request.getScadenzaDal(), request.getScadenzaAl(), includiSenzaScadenza);
+        } else {
+            for (int i = 0; i < ids.size(); i += ID_PER_RINNOVO) {
+                aggiornati += atletaRepository.updateScadenza(request.getTipo(), request.getNuovaScadenza(),
+                        ids.subList(i, Math.min(i + ID_PER_RINNOVO, ids.size())), soloAttivi,
+                        request.getScadenzaDal(), request.getScadenzaAl(), includiSenzaScadenza);
+            }
+        }
+        logger.info("Rinnovata scadenza {} al {} per {} atleti", request.getTipo(), request.getNuovaScadenza(), aggiornati);
+        if (aggiornati > 0) {
+            eventPublisher.publishEvent(DatiModificatiEvent.atleti());
+        }
+        return new RinnovoScadenzeResponse(request.getTipo(), request.getNuovaScadenza(), aggiornati);
+    }
+
     public void deleteById(Long id) {
-        atletaRepository.deleteById(id);
+        atletaRepository.findById(id).ifPresent(atleta -> {
+            // Payments are removed by cascade, so take them out of the revenue rollup first
+            riepilogoService.annullaPagamentiAtleta(atleta.getId());
+            riepilogoAtletaService.elimina(atleta.getId());
+            atletaRepository.delete(atleta);
+            eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
+        });
     }
 
     public List<Atleta> search(String searchTerm) {
@@ -99,6 +250,7 @@ public class AtletaService {
                 .map(atleta -> {
                     atleta.setAttivo(false);
                     atleta.setDisableDate(LocalDate.now());
+                    eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
                     return atletaRepository.save(atleta);
                 })
                 .orElseThrow(() -> new RuntimeException("Atleta non trovato con id: " + id));
@@ -109,54 +261,48 @@ public class AtletaService {
                 .map(atleta -> {
                     atleta.setAttivo(true);
                     atleta.setDisableDate(null);
+                    eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
                     return atletaRepository.save(atleta);
                 })
                 .orElseThrow(() -> new RuntimeException("Atleta non trovato con id: " + id));
     }
 
     public List<Atleta> findActiveAthletes() {
-        return atletaRepository.findAll().stream()
-                .filter(atleta -> Boolean.TRUE.equals(atleta.isAttivo()))
-                .toList();
+        return atletaRepository.findByAttivoTrue();
+    }
+
+    public long countAll() {
+        return atletaRepository.count();
+    }
+
+    public long countActiveAthletes() {
+        return atletaRepository.countByAttivoTrue();
     }
 
     public List<Atleta> findAthletesWithExpiringCertificate(int daysBefore) {
-        LocalDate today = LocalDate.now();
-        LocalDate dateLimit = LocalDate.now().plusDays(daysBefore);
-        return atletaRepository.findAll().stream()
-                .filter(atleta -> Boolean.TRUE.equals(atleta.isAttivo()) &&
-                        atleta.getDataScadenzaCertificato() != null &&
-                        !atleta.getDataScadenzaCertificato().isAfter(dateLimit))
-                .toList();
+        return atletaRepository.findActiveWithCertificateExpiringBy(LocalDate.now().plusDays(daysBefore));
+    }
+
+    public long countAthletesWithExpiringCertificate(int daysBefore) {
+        return atletaRepository.countActiveWithCertificateExpiringBy(LocalDate.now().plusDays(daysBefore));
     }
 
     public List<Atleta> findAthletesWithExpiringMembership(int daysBefore) {
-        LocalDate today = LocalDate.now();
-        LocalDate dateLimit = LocalDate.now().plusDays(daysBefore);
-        return atletaRepository.findAll().stream()
-                .filter(atleta -> Boolean.TRUE.equals(atleta.isAttivo()) &&
-                        atleta.getScadenzaTesseramentoAsc() != null &&
-                        !atleta.getScadenzaTesseramentoAsc().isAfter(dateLimit))
-                .toList();
+        return findAthletesWithExpiringAscMembership(daysBefore);
     }
 
     public List<Atleta> findAthletesWithExpiringAscMembership(int daysBefore) {
-        LocalDate today = LocalDate.now();
-        LocalDate dateLimit = LocalDate.now().plusDays(daysBefore);
-        return atletaRepository.findAll().stream()
-                .filter(atleta -> Boolean.TRUE.equals(atleta.isAttivo()) &&
-                        atleta.getScadenzaTesseramentoAsc() != null &&
-                        !atleta.getScadenzaTesseramentoAsc().isAfter(dateLimit))
-                .toList();
+        return atletaRepository.findActiveWithAscMembershipExpiringBy(LocalDate.now().plusDays(daysBefore));
     }
 
     public List<Atleta> findAthletesWithExpiringFijlkamMembership(int daysBefore) {
-        LocalDate today = LocalDate.now();
+        return atletaRepository.findActiveWithFijlkamMembershipExpiringBy(LocalDate.now().plusDays(daysBefore));
+    }
+
+    public List<ScadenzaAtletaResponse> findAthletesWithAnyDeadline(int daysBefore) {
         LocalDate dateLimit = LocalDate.now().plusDays(daysBefore);
-        return atletaRepository.findAll().stream()
-                .filter(atleta -> Boolean.TRUE.equals(atleta.isAttivo()) &&
-                        atleta.getScadenzaTesseramentoFijlkam() != null &&
-                        !atleta.getScadenzaTesseramentoFijlkam().isAfter(dateLimit))
+        return atletaRepository.findActiveWithAnyDeadlineBy(dateLimit).stream()
+                .map(scadenza -> scadenza.withDeadlinesDueBy(dateLimit))
                 .toList();
     }
 }
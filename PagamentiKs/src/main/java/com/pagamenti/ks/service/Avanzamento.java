@@ -0,0 +1,17 @@
+package com.pagamenti.ks.service;
+
+/**
+ * Progress of a long document generation, reported by the generating thread.
+ * An implementation may throw an unchecked exception to stop the work.
+ */
+@FunctionalInterface
+public interface Avanzamento {
+
+    Avanzamento NESSUNO = (completati, totale) -> {};
+
+    /**
+     * @param completati items written so far
+     * @param totale items expected in total
+     */
+    void aggiorna(int completati, int totale);
+}
@@ -0,0 +1,200 @@
+package com.pagamenti.ks.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads a CSV file one record at a time, so imports never hold the whole file
+ * in memory. The first record is the header; the delimiter is {@code ;} if
+ * the header contains one (as exported by Excel with Italian settings),
+ * otherwise {@code ,}. Fields may be quoted with {@code "}, and quoted fields
+ * may contain delimiters, doubled quotes and line breaks.
+ */
+class CsvReader implements Closeable {
+
+    private static final List<DateTimeFormatter> FORMATI_DATA = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            // Strict, so that 31/02 is an error rather than 29/02
+            DateTimeFormatter.ofPattern("d/M/uuuu").withResolverStyle(ResolverStyle.STRICT));
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> colonne = new HashMap<>();
+    private char delimitatore = ',';
+    private long record;
+
+    CsvReader(Reader reader) throws IOException {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        String header = this.reader.readLine();
+        if (header == null) {
+            return;
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        if (header.indexOf(';') >= 0) {
+            delimitatore = ';';
+        }
+        List<String> nomi = parse(header);
+        for (int i = 0; i < nomi.size(); i++) {
+            colonne.put(nomi.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /** Whether the header has the column, compared ignoring case. */
+    boolean hasColonna(String nome) {
+        return colonne.containsKey(nome.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The next record, or null at the end of the file. Blank lines are
+     * skipped but still counted, so record numbers match the lines of a file
+     * without line breaks inside fields.
+     */
+    Record next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            record++;
+        } while (line.isBlank());
+        StringBuilder logica = new StringBuilder(line);
+        // An odd number of quotes means a quoted field continues on the next line
+        while (quoteCount(logica) % 2 != 0) {
+            String continuation = reader.readLine();
+            if (continuation == null) {
+                break;
+            }
+            logica.append('\n').append(continuation);
+        }
+        return new Record(record, parse(logica.toString()));
+    }
+
+    /**
+     * An ISO or {@code dd/MM/yyyy} date, or null if the value is null.
+     *
+     * @throws IllegalArgumentException if the value is not a date
+     */
+    static LocalDate parseData(String valore) {
+        if (valore == null) {
+            return null;
+        }
+        for (DateTimeFormatter formato : FORMATI_DATA) {
+            try {
+                return LocalDate.parse(valore, formato);
+            } catch (DateTimeParseException ignored) {
+                // Try the next format
+            }
+        }
+        throw new IllegalArgumentException("Data non valida: " + valore);
+    }
+
+    /**
+     * si/no (also true/false, 1/0) as a boolean, or null if the value is null.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    static Boolean parseBoolean(String valore) {
+        if (valore == null) {
+            return null;
+        }
+        return switch (valore.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "si", "sì", "s" -> Boolean.TRUE;
+            case "false", "0", "no", "n" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException("Valore non valido: " + valore + " (usare si/no)");
+        };
+    }
+
+    private static long quoteCount(CharSequence text) {
+        return text.chars().filter(c -> c == '"').count();
+    }
+
+    private List<String> parse(String line) {
+        List<String> campi = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimitatore) {
+                campi.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campi.add(campo.toString());
+        return campi;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /** One record, with its fields looked up by header name. */
+    final class Record {
+
+        private final long numero;
+        private final List<String> campi;
+
+        private Record(long numero, List<String> campi) {
+            this.numero = numero;
+            this.campi = campi;
+        }
+
+        long getNumero() {
+            return numero;
+        }
+
+        /** The trimmed field, or null if the column is missing or the field empty. */
+        String get(String colonna) {
+            Integer indice = colonne.get(colonna.toLowerCase(Locale.ROOT));
+            if (indice == null || indice >= campi.size()) {
+                return null;
+            }
+            String valore = campi.get(indice).trim();
+            return valore.isEmpty() ? null : valore;
+        }
+
+        /**
+         * The field as an ISO or {@code dd/MM/yyyy} date, or null if empty.
+         *
+         * @throws IllegalArgumentException if the field is not a date
+         */
+        LocalDate getData(String colonna) {
+            return parseData(get(colonna));
+        }
+
+        /**
+         * The field as si/no (also true/false, 1/0), or null if empty.
+         *
+         * @throws IllegalArgumentException for any other value
+         */
+        Boolean getBoolean(String colonna) {
+            return parseBoolean(get(colonna));
+        }
+    }
+}
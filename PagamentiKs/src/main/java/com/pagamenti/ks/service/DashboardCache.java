@@ -0,0 +1,139 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the last computed dashboard snapshot. Writes to athletes or payments
+ * mark it stale after commit; a stale or expired snapshot is still served while
+ * a single background refresh recomputes it (stale-while-revalidate).
+ */
+@Component
+public class DashboardCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardCache.class);
+
+    private record Snapshot(Map<String, Object> stats, long computedAt, long version) {}
+
+    private final long ttlMillis;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dashboard-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public DashboardCache(@Value("${dashboard.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public Map<String, Object> get(Supplier<Map<String, Object>> loader) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return loadCold(loader);
+        }
+        if (isFresh(current)) {
+            hits.incrementAndGet();
+        } else {
+            staleHits.incrementAndGet();
+            refreshAsync(loader);
+        }
+        return current.stats();
+    }
+
+    private synchronized Map<String, Object> loadCold(Supplier<Map<String, Object>> loader) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current.stats();
+        }
+        misses.incrementAndGet();
+        return compute(loader).stats();
+    }
+
+    private void refreshAsync(Supplier<Map<String, Object>> loader) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                compute(loader);
+            } catch (RuntimeException e) {
+                logger.warn("Aggiornamento dashboard fallito, resta in uso lo snapshot precedente", e);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private Snapshot compute(Supplier<Map<String, Object>> loader) {
+        // Read the version first: a write committed during the computation leaves the result stale
+        long startVersion = version.get();
+        Snapshot computed = new Snapshot(Collections.unmodifiableMap(new HashMap<>(loader.get())), System.currentTimeMillis(), startVersion);
+        snapshot = computed;
+        refreshes.incrementAndGet();
+        return computed;
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current.version() == version.get()
+                && System.currentTimeMillis() - current.computedAt() < ttlMillis;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDatiModificati(DatiModificatiEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        invalidations.incrementAndGet();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        long fresh = hits.get();
+        long stale = staleHits.get();
+        long total = fresh + stale + misses.get();
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("ageMs", current != null ? System.currentTimeMillis() - current.computedAt() : null);
+        metrics.put("fresh", current != null && isFresh(current));
+        metrics.put("ttlMs", ttlMillis);
+        metrics.put("hits", fresh);
+        metrics.put("staleHits", stale);
+        metrics.put("misses", misses.get());
+        metrics.put("hitRatio", total > 0 ? (double) (fresh + stale) / total : 0.0);
+        metrics.put("invalidations", invalidations.get());
+        metrics.put("refreshes", refreshes.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
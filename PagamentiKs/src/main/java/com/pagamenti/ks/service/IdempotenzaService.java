@@ -0,0 +1,215 @@
+package com.pagamenti.ks.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.UnprocessableEntityException;
+import com.pagamenti.ks.model.ChiaveIdempotenza;
+import com.pagamenti.ks.repository.ChiaveIdempotenzaRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a create request at most once per {@code Idempotency-Key}. The key,
+ * a fingerprint of the request and the response are stored in the same
+ * transaction as whatever the request creates; a retry with the same key and
+ * request gets the stored response back instead of creating it again. Keys
+ * expire after {@code pagamenti.idempotenza.durata-ore}.
+ * <p>
+ * Recent keys are also kept in a bounded in-memory LRU, so the usual retry a
+ * few seconds later costs no query. Two requests racing with the same key
+ * both try to insert it: the database makes the second wait for the first to
+ * commit, then its insert fails, its own work is rolled back and it replays
+ * the first response.
+ */
+@Service
+public class IdempotenzaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotenzaService.class);
+
+    public static final int MAX_LUNGHEZZA_CHIAVE = 255;
+
+    /** The response, and whether it was replayed rather than produced now. */
+    public record Risultato<T>(T valore, boolean ripetuto) {}
+
+    private record Registrazione(String impronta, String risposta, LocalDateTime scadeIl) {}
+
+    private final ChiaveIdempotenzaRepository chiaveIdempotenzaRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final Duration durata;
+    private final LinkedHashMap<String, Registrazione> recenti;
+    private final ScheduledExecutorService pulizia;
+
+    public IdempotenzaService(ChiaveIdempotenzaRepository chiaveIdempotenzaRepository, ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${pagamenti.idempotenza.durata-ore:24}") long durataOre,
+                              @Value("${pagamenti.idempotenza.cache-size:1000}") int cacheSize) {
+        this.chiaveIdempotenzaRepository = chiaveIdempotenzaRepository;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.durata = Duration.ofHours(durataOre);
+        int massimo = Math.max(1, cacheSize);
+        this.recenti = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Registrazione> eldest) {
+                return size() > massimo;
+            }
+        };
+        this.pulizia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "idempotency-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pulizia.scheduleWithFixedDelay(this::eliminaScadute, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pulizia.shutdownNow();
+    }
+
+    /**
+     * Runs the operation unless the key was already used for the same request,
+     * in which case the stored response is returned. The operation runs in a
+     * transaction that also records the key; if it throws, nothing is recorded
+     * and a retry runs it again.
+     *
+     * @param ambito    endpoint the key is used on, part of the fingerprint
+     * @param richiesta request body, part of the fingerprint
+     * @throws BadRequestException if the key is blank or longer than {@value #MAX_LUNGHEZZA_CHIAVE}
+     * @throws UnprocessableEntityException if the key was used for a different request
+     */
+    public <T> Risultato<T> esegui(String chiave, String ambito, Object richiesta, Class<T> tipo, Supplier<T> operazione) {
+        if (chiave.isBlank() || chiave.length() > MAX_LUNGHEZZA_CHIAVE) {
+            throw new BadRequestException("Idempotency-Key deve avere da 1 a " + MAX_LUNGHEZZA_CHIAVE + " caratteri");
+        }
+        String impronta = impronta(ambito, richiesta);
+        Registrazione registrata = trova(chiave);
+        if (registrata != null) {
+            return ripeti(chiave, registrata, impronta, tipo);
+        }
+        Registrazione nuova;
+        T valore;
+        try {
+            Object[] esito = transaction.execute(status -> {
+                LocalDateTime adesso = LocalDateTime.now();
+                ChiaveIdempotenza esistente = chiaveIdempotenzaRepository.findById(chiave).orElse(null);
+                if (esistente != null) {
+                    if (!esistente.getScadeIl().isBefore(adesso)) {
+                        // Committed since the lookup above
+                        return new Object[] {registrazione(esistente), null};
+                    }
+                    chiaveIdempotenzaRepository.delete(esistente);
+                    chiaveIdempotenzaRepository.flush();
+                }
+                T creato = operazione.get();
+                String risposta = serializza(creato);
+                // Through the repository, so a duplicate key surfaces as DataIntegrityViolationException
+                chiaveIdempotenzaRepository.saveAndFlush(
+                        new ChiaveIdempotenza(chiave, impronta, risposta, adesso, adesso.plus(durata)));
+                return new Object[] {new Registrazione(impronta, risposta, adesso.plus(durata)), creato};
+            });
+            nuova = (Registrazione) esito[0];
+            valore = tipo.cast(esito[1]);
+        } catch (DataIntegrityViolationException e) {
+            // Another request with the same key committed first
+            registrata = trova(chiave);
+            if (registrata == null) {
+                throw e;
+            }
+            return ripeti(chiave, registrata, impronta, tipo);
+        }
+        if (valore == null) {
+            return ripeti(chiave, nuova, impronta, tipo);
+        }
+        synchronized (recenti) {
+            recenti.put(chiave, nuova);
+        }
+        return new Risultato<>(valore, false);
+    }
+
+    private Registrazione trova(String chiave) {
+        LocalDateTime adesso = LocalDateTime.now();
+        Registrazione registrata;
+        synchronized (recenti) {
+            registrata = recenti.get(chiave);
+        }
+        if (registrata == null) {
+            registrata = chiaveIdempotenzaRepository.findById(chiave).map(IdempotenzaService::registrazione).orElse(null);
+            if (registrata != null) {
+                synchronized (recenti) {
+                    recenti.put(chiave, registrata);
+                }
+            }
+        }
+        return registrata != null && !registrata.scadeIl().isBefore(adesso) ? registrata : null;
+    }
+
+    private static Registrazione registrazione(ChiaveIdempotenza chiave) {
+        return new Registrazione(chiave.getImpronta(), chiave.getRisposta(), chiave.getScadeIl());
+    }
+
+    private <T> Risultato<T> ripeti(String chiave, Registrazione registrata, String impronta, Class<T> tipo) {
+        if (!registrata.impronta().equals(impronta)) {
+            throw new UnprocessableEntityException("Idempotency-Key già usata per una richiesta diversa");
+        }
+        logger.info("Replaying the response stored for idempotency key {}", chiave);
+        try {
+            return new Risultato<>(objectMapper.readValue(registrata.risposta(), tipo), true);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Risposta memorizzata non leggibile per la chiave " + chiave, e);
+        }
+    }
+
+    private String impronta(String ambito, Object richiesta) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ambito.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(richiesta));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Impronta della richiesta non calcolabile", e);
+        }
+    }
+
+    private String serializza(Object valore) {
+        try {
+            return objectMapper.writeValueAsString(valore);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Risposta non serializzabile", e);
+        }
+    }
+
+    void eliminaScadute() {
+        try {
+            Integer eliminate = transaction.execute(status ->
+                    chiaveIdempotenzaRepository.deleteScadute(LocalDateTime.now()));
+            if (eliminate != null && eliminate > 0) {
+                logger.info("Deleted {} expired idempotency keys", eliminate);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Idempotency key cleanup failed", e);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.ImportAtletiResponse;
+import com.pagamenti.ks.dto.response.ImportAtletiResponse.EsitoRiga;
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk athlete import from a CSV file, matching rows to existing athletes on
+ * the codice fiscale. The CSV is read one record at a time and written in
+ * batches, each in its own short transaction, so memory stays flat however
+ * long the file is and no connection or lock is held between batches while
+ * the rest of the API is in use. Only one import runs at a time.
+ * <p>
+ * The match uses an in-memory index of every tax code in the table, loaded
+ * once at the start and kept current as the import creates athletes: a row
+ * whose tax code is known updates that athlete with the fields it fills in,
+ * any other row creates a new one. Two rows of the same file with the same tax
+ * code are a mistake in the file, so the second one is rejected.
+ */
+@Service
+public class ImportAtletiService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportAtletiService.class);
+
+    /** Persons (with omocodia letters in place of digits) or 11-digit temporary codes. */
+    private static final Pattern CODICE_FISCALE = Pattern.compile(
+            "[A-Z]{6}[0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{2}[A-Z][0-9LMNPQRSTUV]{3}[A-Z]|[0-9]{11}");
+
+    private static final String INSERT_SQL = "INSERT INTO atleti (nome, cognome, cf, datanascita, indirizzo, telefono, " +
+            "email, dataiscrizione, datascadenzacertificato, scadenzatesseramentoasc, scadenza_tesseramento_fijlkam, " +
+            "note, attivo) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)";
+    // Empty fields leave the stored value alone
+    private static final String UPDATE_SQL = "UPDATE atleti SET nome = COALESCE(?, nome), cognome = COALESCE(?, cognome), " +
+            "datanascita = COALESCE(?, datanascita), indirizzo = COALESCE(?, indirizzo), " +
+            "telefono = COALESCE(?, telefono), email = COALESCE(?, email), " +
+            "dataiscrizione = COALESCE(?, dataiscrizione), " +
+            "datascadenzacertificato = COALESCE(?, datascadenzacertificato), " +
+            "scadenzatesseramentoasc = COALESCE(?, scadenzatesseramentoasc), " +
+            "scadenza_tesseramento_fijlkam = COALESCE(?, scadenza_tesseramento_fijlkam), " +
+            "note = COALESCE(?, note), version = version + 1 WHERE id = ?";
+    private static final String RIEPILOGO_SQL =
+            "INSERT INTO riepilogo_pagamenti_atleta (atleta_id, conteggio, totale) VALUES (?, 0, 0)";
+
+    private record Riga(long numero, String cf, String nome, String cognome, LocalDate dataNascita, String indirizzo,
+                        String telefono, String email, LocalDate dataIscrizione, LocalDate dataScadenzaCertificato,
+                        LocalDate scadenzaTesseramentoAsc, LocalDate scadenzaTesseramentoFijlkam, String note) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final Semaphore inCorso = new Semaphore(1);
+
+    public ImportAtletiService(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${atleti.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Imports the athletes of a CSV file with a header naming the columns
+     * {@code cf}, {@code nome}, {@code cognome} and optionally
+     * {@code dataNascita}, {@code indirizzo}, {@code telefono}, {@code email},
+     * {@code dataIscrizione}, {@code dataScadenzaCertificato},
+     * {@code scadenzaTesseramentoAsc}, {@code scadenzaTesseramentoFijlkam}
+     * and {@code note}. Dates are ISO or {@code dd/MM/yyyy}. Batches already
+     * written stay written if a later one fails; its rows are reported as
+     * rejected.
+     *
+     * @throws BadRequestException if required columns are missing
+     * @throws ConflictException if another athlete import is running
+     */
+    public ImportAtletiResponse importaCsv(Reader input) throws IOException {
+        if (!inCorso.tryAcquire()) {
+            throw new ConflictException("Un'importazione di atleti è già in corso");
+        }
+        try {
+            return importa(input);
+        } finally {
+            inCorso.release();
+        }
+    }
+
+    private ImportAtletiResponse importa(Reader input) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportAtletiResponse esito = new ImportAtletiResponse();
+        try (CsvReader csv = new CsvReader(input)) {
+            for (String colonna : List.of("cf", "nome", "cognome")) {
+                if (!csv.hasColonna(colonna)) {
+                    throw new BadRequestException("Colonna mancante nel CSV: " + colonna);
+                }
+            }
+            Map<String, Long> indice = caricaIndice();
+            // Rows of this file already seen, by tax code: the value is the row number
+            Map<String, Long> nelFile = new HashMap<>();
+            List<Riga> batch = new ArrayList<>(batchSize);
+            long lette = 0;
+            CsvReader.Record record;
+            while ((record = csv.next()) != null) {
+                lette++;
+                Riga riga;
+                try {
+                    riga = leggi(record);
+                } catch (IllegalArgumentException e) {
+                    esito.addEsito(EsitoRiga.scartato(record.getNumero(), normalizzaCf(record.get("cf")), e.getMessage()));
+                    continue;
+                }
+                Long precedente = nelFile.putIfAbsent(riga.cf(), riga.numero());
+                if (precedente != null) {
+                    esito.addEsito(EsitoRiga.scartato(riga.numero(), riga.cf(),
+                            "Codice fiscale già presente alla riga " + precedente));
+                } else if (!indice.containsKey(riga.cf()) && (riga.nome() == null || riga.cognome() == null)) {
+                    esito.addEsito(EsitoRiga.scartato(riga.numero(), riga.cf(), "Nome e cognome obbligatori per un nuovo atleta"));
+                } else {
+                    batch.add(riga);
+                    if (batch.size() == batchSize) {
+                        scrivi(batch, indice, esito);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                scrivi(batch, indice, esito);
+            }
+            esito.setRighe(lette);
+        }
+        esito.getEsiti().sort((a, b) -> Long.compare(a.getRiga(), b.getRiga()));
+        esito.setDurataMs(System.currentTimeMillis() - start);
+        logger.info("Imported athletes: {} created, {} updated, {} rejected in {} ms",
+                esito.getCreati(), esito.getAggiornati(), esito.getScartati(), esito.getDurataMs());
+        return esito;
+    }
+
+    /**
+     * Tax code to athlete id for the whole table, read in one pass. If the
+     * table already holds duplicates, rows match the oldest athlete.
+     */
+    private Map<String, Long> caricaIndice() {
+        Map<String, Long> indice = new HashMap<>();
+        jdbcTemplate.query("SELECT id, cf FROM atleti WHERE cf IS NOT NULL ORDER BY id", rs -> {
+            String cf = normalizzaCf(rs.getString(2));
+            if (cf != null) {
+                indice.putIfAbsent(cf, rs.getLong(1));
+            }
+        });
+        return indice;
+    }
+
+    private static String normalizzaCf(String cf) {
+        if (cf == null) {
+            return null;
+        }
+        String normalizzato = cf.replaceAll("\\s", "").toUpperCase(Locale.ROOT);
+        return normalizzato.isEmpty() ? null : normalizzato;
+    }
+
+    private static Riga leggi(CsvReader.Record record) {
+        String cf = normalizzaCf(record.get("cf"));
+        if (cf == null) {
+            throw new IllegalArgumentException("Codice fiscale obbligatorio");
+        }
+        if (!CODICE_FISCALE.matcher(cf).matches()) {
+            throw new IllegalArgumentException("Codice fiscale non valido: " + cf);
+        }
+        return new Riga(record.getNumero(), cf, record.get("nome"), record.get("cognome"),
+                record.getData("dataNascita"), record.get("indirizzo"), record.get("telefono"), record.get("email"),
+                record.getData("dataIscrizione"), record.getData("dataScadenzaCertificato"),
+                record.getData("scadenzaTesseramentoAsc"), record.getData("scadenzaTesseramentoFijlkam"),
+                record.get("note"));
+    }
+
+    private void scrivi(List<Riga> batch, Map<String, Long> indice, ImportAtletiResponse esito) {
+        List<Riga> nuovi = new ArrayList<>();
+        List<Riga> esistenti = new ArrayList<>();
+        for (Riga riga : batch) {
+            (indice.containsKey(riga.cf()) ? esistenti : nuovi).add(riga);
+        }
+        Map<String, Long> creati;
+        try {
+            creati = transaction.execute(status -> {
+                aggiorna(esistenti, indice);
+                return inserisci(nuovi);
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Athlete import batch of {} rows failed", batch.size(), e);
+            for (Riga riga : batch) {
+                esito.addEsito(EsitoRiga.scartato(riga.numero(), riga.cf(),
+                        "Errore di scrittura del blocco: " + e.getMostSpecificCause().getMessage()));
+            }
+            return;
+        }
+        for (Riga riga : esistenti) {
+            Long id = indice.get(riga.cf());
+            esito.addEsito(new EsitoRiga(riga.numero(), riga.cf(), ImportAtletiResponse.Esito.AGGIORNATO, id, null));
+            eventPublisher.publishEvent(DatiModificatiEvent.atleta(id));
+        }
+        for (Riga riga : nuovi) {
+            Long id = creati.get(riga.cf());
+            indice.put(riga.cf(), id);
+            esito.addEsito(new EsitoRiga(riga.numero(), riga.cf(), ImportAtletiResponse.Esito.CREATO, id, null));
+        }
+        if (!nuovi.isEmpty()) {
+            eventPublisher.publishEvent(DatiModificatiEvent.atleti());
+        }
+    }
+
+    private void aggiorna(List<Riga> righe, Map<String, Long> indice) {
+        if (righe.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, righe, righe.size(), (ps, riga) -> {
+            ps.setString(1, riga.nome());
+            ps.setString(2, riga.cognome());
+            ps.setObject(3, riga.dataNascita());
+            ps.setString(4, riga.indirizzo());
+            ps.setString(5, riga.telefono());
+            ps.setString(6, riga.email());
+            ps.setObject(7, riga.dataIscrizione());
+            ps.setObject(8, riga.dataScadenzaCertificato());
+            ps.setObject(9, riga.scadenzaTesseramentoAsc());
+            ps.setObject(10, riga.scadenzaTesseramentoFijlkam());
+            ps.setString(11, riga.note());
+            ps.setLong(12, indice.get(riga.cf()));
+        });
+    }
+
+    /**
+     * Inserts the new athletes with their empty payment summaries, and
+     * returns their ids by tax code, read back in one query since batch
+     * inserts do not return generated keys.
+     */
+    private Map<String, Long> inserisci(List<Riga> righe) {
+        if (righe.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        LocalDate oggi = LocalDate.now();
+        jdbcTemplate.batchUpdate(INSERT_SQL, righe, righe.size(), (ps, riga) -> {
+            ps.setString(1, riga.nome());
+            ps.setString(2, riga.cognome());
+            ps.setString(3, riga.cf());
+            ps.setObject(4, riga.dataNascita());
+            ps.setString(5, riga.indirizzo());
+            ps.setString(6, riga.telefono());
+            ps.setString(7, riga.email());
+            ps.setObject(8, riga.dataIscrizione() != null ? riga.dataIscrizione() : oggi);
+            ps.setObject(9, riga.dataScadenzaCertificato());
+            ps.setObject(10, riga.scadenzaTesseramentoAsc());
+            ps.setObject(11, riga.scadenzaTesseramentoFijlkam());
+            ps.setString(12, riga.note());
+        });
+        List<String> cfs = righe.stream().map(Riga::cf).toList();
+        String segnaposti = String.join(", ", Collections.nCopies(cfs.size(), "?"));
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, cf FROM atleti WHERE cf IN (" + segnaposti + ") ORDER BY id",
+                rs -> { ids.put(rs.getString(2), rs.getLong(1)); }, cfs.toArray());
+        jdbcTemplate.batchUpdate(RIEPILOGO_SQL, new ArrayList<>(ids.values()), ids.size(),
+                (ps, id) -> ps.setLong(1, id));
+        return ids;
+    }
+}
@@ -0,0 +1,313 @@
+package com.pagamenti.ks.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamenti.ks.dto.request.PagamentoImportRequest;
+import com.pagamenti.ks.dto.response.ImportResponse;
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.AtletaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bulk payment import from a JSON array or a CSV file. Rows are validated one
+ * by one and rejected rows are reported without stopping the import. The
+ * athletes referenced are checked with one query per thousand ids, and valid
+ * rows are written with JDBC batch inserts, bypassing the persistence
+ * context; the revenue rollup and the athlete summaries are then updated once
+ * per group instead of once per payment.
+ * <p>
+ * Both formats are read row by row before the transaction starts, so no
+ * connection is held while a client uploads a large file and an oversized
+ * upload is refused as soon as it passes the row limit.
+ */
+@Service
+public class ImportPagamentiService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportPagamentiService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO pagamenti " +
+            "(atleta_id, data, importo, tipo_pagamento, detraibile, note) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int ID_PER_QUERY = 1000;
+
+    /** A valid row, ready to be inserted. */
+    private record Riga(long numero, Long atletaId, LocalDate data, double importo, TipoPagamento tipo,
+                        boolean detraibile, String note) {}
+
+    private record Gruppo(LocalDate giorno, TipoPagamento tipo, boolean detraibile) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtletaRepository atletaRepository;
+    private final RiepilogoService riepilogoService;
+    private final RiepilogoAtletaService riepilogoAtletaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final int maxRighe;
+
+    public ImportPagamentiService(JdbcTemplate jdbcTemplate, AtletaRepository atletaRepository,
+                                  RiepilogoService riepilogoService, RiepilogoAtletaService riepilogoAtletaService,
+                                  ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${pagamenti.import.batch-size:500}") int batchSize,
+                                  @Value("${pagamenti.import.max-righe:20000}") int maxRighe) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.atletaRepository = atletaRepository;
+        this.riepilogoService = riepilogoService;
+        this.riepilogoAtletaService = riepilogoAtletaService;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRighe = maxRighe;
+    }
+
+    /**
+     * Imports the payments of a JSON array, read one element at a time as it
+     * arrives; rows are numbered from 1. Fields are read like the CSV columns,
+     * so a malformed date or amount rejects only its row.
+     *
+     * @throws BadRequestException if the body is not a JSON array or there
+     *         are more than {@code pagamenti.import.max-righe} rows
+     */
+    public ImportResponse importa(InputStream input) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResponse esito = new ImportResponse();
+        List<Riga> righe = new ArrayList<>();
+        long lette = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException("Atteso un array JSON di pagamenti");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new BadRequestException("Array JSON incompleto");
+                }
+                if (++lette > maxRighe) {
+                    throw new BadRequestException("Troppe righe: massimo " + maxRighe + " per importazione");
+                }
+                JsonNode nodo = parser.readValueAsTree();
+                PagamentoImportRequest pagamento;
+                try {
+                    pagamento = leggi(nodo);
+                } catch (IllegalArgumentException e) {
+                    esito.addErrore(lette, e.getMessage());
+                    continue;
+                }
+                aggiungi(righe, lette, pagamento, esito);
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("JSON non valido: " + e.getOriginalMessage());
+        }
+        esito.setRighe(lette);
+        return scrivi(righe, esito, start);
+    }
+
+    /**
+     * Imports the payments of a CSV file with a header naming the columns
+     * {@code atletaId}, {@code data}, {@code importo}, {@code tipoPagamento}
+     * and optionally {@code detraibile} and {@code note}. Dates are ISO or
+     * {@code dd/MM/yyyy}; amounts may use a decimal comma. Rows are numbered
+     * from 1 after the header.
+     *
+     * @throws BadRequestException if required columns are missing or there
+     *         are more than {@code pagamenti.import.max-righe} rows
+     */
+    public ImportResponse importaCsv(Reader input) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResponse esito = new ImportResponse();
+        List<Riga> righe = new ArrayList<>();
+        long lette = 0;
+        try (CsvReader csv = new CsvReader(input)) {
+            for (String colonna : List.of("atletaId", "data", "importo", "tipoPagamento")) {
+                if (!csv.hasColonna(colonna)) {
+                    throw new BadRequestException("Colonna mancante nel CSV: " + colonna);
+                }
+            }
+            CsvReader.Record record;
+            while ((record = csv.next()) != null) {
+                if (++lette > maxRighe) {
+                    throw new BadRequestException("Troppe righe: massimo " + maxRighe + " per importazione");
+                }
+                PagamentoImportRequest pagamento;
+                try {
+                    pagamento = leggi(record);
+                } catch (IllegalArgumentException e) {
+                    esito.addErrore(record.getNumero(), e.getMessage());
+                    continue;
+                }
+                aggiungi(righe, record.getNumero(), pagamento, esito);
+            }
+        }
+        esito.setRighe(lette);
+        return scrivi(righe, esito, start);
+    }
+
+    private static PagamentoImportRequest leggi(CsvReader.Record record) {
+        return leggi(record::get);
+    }
+
+    private static PagamentoImportRequest leggi(JsonNode nodo) {
+        if (nodo.isNull()) {
+            return null;
+        }
+        if (!nodo.isObject()) {
+            throw new IllegalArgumentException("Riga non valida: atteso un oggetto");
+        }
+        return leggi(campo -> testo(nodo, campo));
+    }
+
+    private static PagamentoImportRequest leggi(Function<String, String> campi) {
+        PagamentoImportRequest pagamento = new PagamentoImportRequest();
+        String atletaId = campi.apply("atletaId");
+        if (atletaId != null) {
+            try {
+                pagamento.setAtletaId(Long.valueOf(atletaId));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("atletaId non valido: " + atletaId);
+            }
+        }
+        pagamento.setData(CsvReader.parseData(campi.apply("data")));
+        pagamento.setImporto(parseImporto(campi.apply("importo")));
+        pagamento.setTipoPagamento(campi.apply("tipoPagamento"));
+        pagamento.setDetraibile(CsvReader.parseBoolean(campi.apply("detraibile")));
+        pagamento.setNote(campi.apply("note"));
+        return pagamento;
+    }
+
+    /** The field as trimmed text, like a CSV field; null if missing, null or empty. */
+    private static String testo(JsonNode nodo, String campo) {
+        JsonNode valore = nodo.get(campo);
+        if (valore == null || valore.isNull()) {
+            return null;
+        }
+        if (!valore.isValueNode()) {
+            throw new IllegalArgumentException(campo + " non valido: " + valore);
+        }
+        String testo = valore.asText().trim();
+        return testo.isEmpty() ? null : testo;
+    }
+
+    private static Double parseImporto(String valore) {
+        if (valore == null) {
+            return null;
+        }
+        // 1.234,50 as written with Italian settings
+        String numero = valore.replace("€", "").trim();
+        if (numero.indexOf(',') >= 0) {
+            numero = numero.replace(".", "").replace(',', '.');
+        }
+        try {
+            return Double.valueOf(numero);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Importo non valido: " + valore);
+        }
+    }
+
+    private static void aggiungi(List<Riga> righe, long numero, PagamentoImportRequest pagamento, ImportResponse esito) {
+        if (pagamento == null) {
+            esito.addErrore(numero, "Riga vuota");
+            return;
+        }
+        TipoPagamento tipo = TipoPagamento.fromValue(pagamento.getTipoPagamento());
+        String errore = null;
+        if (pagamento.getAtletaId() == null) {
+            errore = "atletaId obbligatorio";
+        } else if (pagamento.getData() == null) {
+            errore = "Data obbligatoria";
+        } else if (pagamento.getImporto() == null || !(pagamento.getImporto() > 0)) {
+            errore = "L'importo deve essere maggiore di zero";
+        } else if (tipo == null) {
+            errore = "Tipo di pagamento non valido: " + pagamento.getTipoPagamento() + " (CONTANTI, BONIFICO)";
+        }
+        if (errore != null) {
+            esito.addErrore(numero, errore);
+            return;
+        }
+        righe.add(new Riga(numero, pagamento.getAtletaId(), pagamento.getData(), pagamento.getImporto(), tipo,
+                !Boolean.FALSE.equals(pagamento.getDetraibile()), pagamento.getNote()));
+    }
+
+    private ImportResponse scrivi(List<Riga> righe, ImportResponse esito, long start) {
+        List<Riga> valide = transaction.execute(status -> {
+            List<Riga> conAtleta = filtraAtletiEsistenti(righe, esito);
+            jdbcTemplate.batchUpdate(INSERT_SQL, conAtleta, batchSize, (ps, riga) -> {
+                ps.setLong(1, riga.atletaId());
+                ps.setObject(2, riga.data());
+                ps.setDouble(3, riga.importo());
+                ps.setString(4, riga.tipo().name());
+                ps.setBoolean(5, riga.detraibile());
+                ps.setString(6, riga.note());
+            });
+            aggiornaRiepiloghi(conAtleta);
+            return conAtleta;
+        });
+        esito.getErrori().sort((a, b) -> Long.compare(a.getRiga(), b.getRiga()));
+        esito.setImportati(valide.size());
+        esito.setDurataMs(System.currentTimeMillis() - start);
+        logger.info("Imported {} payments ({} rejected) in {} ms", esito.getImportati(), esito.getScartati(), esito.getDurataMs());
+        return esito;
+    }
+
+    private List<Riga> filtraAtletiEsistenti(List<Riga> righe, ImportResponse esito) {
+        List<Long> ids = righe.stream().map(Riga::atletaId).distinct().toList();
+        Set<Long> esistenti = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += ID_PER_QUERY) {
+            esistenti.addAll(atletaRepository.findExistingIds(ids.subList(i, Math.min(i + ID_PER_QUERY, ids.size()))));
+        }
+        List<Riga> valide = new ArrayList<>(righe.size());
+        for (Riga riga : righe) {
+            if (esistenti.contains(riga.atletaId())) {
+                valide.add(riga);
+            } else {
+                esito.addErrore(riga.numero(), "Atleta non trovato con id: " + riga.atletaId());
+            }
+        }
+        return valide;
+    }
+
+    private void aggiornaRiepiloghi(List<Riga> righe) {
+        Map<Gruppo, double[]> perGruppo = new LinkedHashMap<>();
+        Map<Long, double[]> perAtleta = new HashMap<>();
+        for (Riga riga : righe) {
+            double[] gruppo = perGruppo.computeIfAbsent(new Gruppo(riga.data(), riga.tipo(), riga.detraibile()), g -> new double[2]);
+            gruppo[0]++;
+            gruppo[1] += riga.importo();
+            double[] atleta = perAtleta.computeIfAbsent(riga.atletaId(), a -> new double[2]);
+            atleta[0]++;
+            atleta[1] += riga.importo();
+        }
+        perGruppo.forEach((gruppo, totali) ->
+                riepilogoService.registra(gruppo.giorno(), gruppo.tipo(), gruppo.detraibile(), (long) totali[0], totali[1]));
+        perAtleta.forEach((atletaId, totali) -> {
+            riepilogoAtletaService.registra(atletaId, (long) totali[0], totali[1]);
+            eventPublisher.publishEvent(DatiModificatiEvent.pagamentiAtleta(atletaId));
+        });
+    }
+}
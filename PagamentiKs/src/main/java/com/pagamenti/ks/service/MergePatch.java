@@ -0,0 +1,78 @@
+package com.pagamenti.ks.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ConflictException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Applies a JSON Merge Patch (RFC 7396) to a managed entity: members present
+ * in the patch are written through the entity's setters, {@code null}
+ * clearing the field, and absent members are left alone. Only the listed
+ * fields may be patched. Entities are flat, so no member needs a recursive
+ * merge. With dynamic updates on the entity, Hibernate then writes only the
+ * columns that actually changed.
+ */
+final class MergePatch {
+
+    static final String VERSION = "version";
+
+    private MergePatch() {}
+
+    /**
+     * Checks the optional {@code version} member against the entity's
+     * current version, then applies the other members.
+     *
+     * @throws BadRequestException if the patch is not an object, names a
+     *         field that cannot be patched, or has a value of the wrong type
+     * @throws ConflictException if the version sent is not the current one
+     */
+    static <T> T applica(ObjectMapper objectMapper, T entita, Long versioneCorrente, JsonNode patch,
+                         Set<String> campiModificabili) {
+        if (patch == null || !patch.isObject()) {
+            throw new BadRequestException("Il patch deve essere un oggetto JSON");
+        }
+        JsonNode versione = patch.get(VERSION);
+        if (versione != null && !versione.isNull()) {
+            if (!versione.canConvertToLong()) {
+                throw new BadRequestException("version non valida: " + versione);
+            }
+            verificaVersione(versione.asLong(), versioneCorrente);
+        }
+        Iterator<String> nomi = patch.fieldNames();
+        while (nomi.hasNext()) {
+            String nome = nomi.next();
+            if (!VERSION.equals(nome) && !campiModificabili.contains(nome)) {
+                throw new BadRequestException("Campo non modificabile: " + nome);
+            }
+        }
+        ObjectNode campi = ((ObjectNode) patch).deepCopy();
+        campi.remove(VERSION);
+        try {
+            return objectMapper.readerForUpdating(entita).readValue(campi);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Patch non valido: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new BadRequestException("Patch non valido: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the version a client sent back, if any, against the current one.
+     *
+     * @throws ConflictException if they differ
+     */
+    static void verificaVersione(Long inviata, Long corrente) {
+        if (inviata != null && !Objects.equals(inviata, corrente)) {
+            throw new ConflictException("Il record è stato modificato da un altro utente (versione attuale "
+                    + corrente + ", inviata " + inviata + ")");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.repository.ContatoreRicevuteRepository;
+import com.pagamenti.ks.repository.PagamentoRepository;
+import com.pagamenti.ks.repository.projection.PagamentoSenzaRicevutaView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receipt numbers, one sequence per year of the payment date. A payment gets
+ * its number the first time a receipt is issued and keeps it on every reprint.
+ * <p>
+ * The per-year counter row is only touched to reserve a block of numbers
+ * (hi/lo): single receipts draw from the block kept in memory, a receipt book
+ * reserves exactly what it needs in one update. Numbers of a block still unused
+ * when the application stops are skipped, so a sequence may have gaps but
+ * never duplicates.
+ */
+@Service
+public class NumerazioneRicevuteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NumerazioneRicevuteService.class);
+
+    /** Numbers reserved in memory for one year: {@code prossimo..ultimo}. */
+    private static final class Blocco {
+        private long prossimo = 1;
+        private long ultimo = 0;
+    }
+
+    private final ContatoreRicevuteRepository contatoreRepository;
+    private final PagamentoRepository pagamentoRepository;
+    private final TransactionTemplate newTransaction;
+    private final long dimensioneBlocco;
+    private final Map<Integer, Blocco> blocchi = new ConcurrentHashMap<>();
+
+    public NumerazioneRicevuteService(ContatoreRicevuteRepository contatoreRepository,
+                                      PagamentoRepository pagamentoRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${ricevute.numerazione.blocco:50}") long dimensioneBlocco) {
+        this.contatoreRepository = contatoreRepository;
+        this.pagamentoRepository = pagamentoRepository;
+        // Reservations and assignments commit on their own, whatever the caller is doing
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dimensioneBlocco = Math.max(1, dimensioneBlocco);
+    }
+
+    /**
+     * Makes sure the payment has a receipt number, assigning the next one of
+     * its year if needed, and sets it on the given instance.
+     *
+     * @return the receipt number as printed, e.g. {@code 012/2024}
+     */
+    public String assegna(Pagamento pagamento) {
+        if (pagamento.getNumeroRicevuta() == null) {
+            int anno = pagamento.getData().getYear();
+            long numero = prossimoNumero(anno);
+            Long assegnato = newTransaction.execute(status ->
+                    pagamentoRepository.assegnaRicevuta(pagamento.getId(), anno, numero) > 0
+                            ? Long.valueOf(numero)
+                            // Numbered meanwhile by another request: keep that number
+                            : pagamentoRepository.findNumeroRicevuta(pagamento.getId()));
+            pagamento.setAnnoRicevuta(anno);
+            pagamento.setNumeroRicevuta(assegnato);
+        }
+        return formatta(pagamento);
+    }
+
+    /**
+     * Numbers every payment in the range that has none yet, in date order.
+     * Each year involved costs one counter update, however many payments.
+     *
+     * @return number of payments numbered
+     */
+    public int assegnaMancanti(LocalDate startDate, LocalDate endDate) {
+        List<PagamentoSenzaRicevutaView> senzaNumero = pagamentoRepository.findSenzaRicevutaBetweenDates(startDate, endDate);
+        if (senzaNumero.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, List<PagamentoSenzaRicevutaView>> perAnno = new LinkedHashMap<>();
+        for (PagamentoSenzaRicevutaView pagamento : senzaNumero) {
+            perAnno.computeIfAbsent(pagamento.getData().getYear(), anno -> new ArrayList<>()).add(pagamento);
+        }
+        int assegnati = 0;
+        for (Map.Entry<Integer, List<PagamentoSenzaRicevutaView>> anno : perAnno.entrySet()) {
+            List<PagamentoSenzaRicevutaView> pagamenti = anno.getValue();
+            long ultimo = riserva(anno.getKey(), pagamenti.size());
+            long primo = ultimo - pagamenti.size() + 1;
+            Integer updated = newTransaction.execute(status -> {
+                int count = 0;
+                for (int i = 0; i < pagamenti.size(); i++) {
+                    count += pagamentoRepository.assegnaRicevuta(pagamenti.get(i).getId(), anno.getKey(), primo + i);
+                }
+                return count;
+            });
+            assegnati += updated;
+        }
+        logger.info("Assigned {} receipt numbers for {} - {}", assegnati, startDate, endDate);
+        return assegnati;
+    }
+
+    /** Receipt number as printed, or null if the payment has not been numbered. */
+    public static String formatta(Pagamento pagamento) {
+        if (pagamento.getNumeroRicevuta() == null) {
+            return null;
+        }
+        return String.format("%03d/%d", pagamento.getNumeroRicevuta(), pagamento.getAnnoRicevuta());
+    }
+
+    private long prossimoNumero(int anno) {
+        Blocco blocco = blocchi.computeIfAbsent(anno, a -> new Blocco());
+        // Only requests for the same year wait, and only while a new block is reserved
+        synchronized (blocco) {
+            if (blocco.prossimo > blocco.ultimo) {
+                blocco.ultimo = riserva(anno, dimensioneBlocco);
+                blocco.prossimo = blocco.ultimo - dimensioneBlocco + 1;
+            }
+            return blocco.prossimo++;
+        }
+    }
+
+    /**
+     * Moves the year's counter forward by {@code quantita} in a short
+     * transaction of its own.
+     *
+     * @return the last number reserved
+     */
+    private long riserva(int anno, long quantita) {
+        try {
+            return newTransaction.execute(status -> riservaInTransazione(anno, quantita));
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created the year's counter first
+            return newTransaction.execute(status -> riservaInTransazione(anno, quantita));
+        }
+    }
+
+    private long riservaInTransazione(int anno, long quantita) {
+        if (contatoreRepository.riserva(anno, quantita) > 0) {
+            return contatoreRepository.findUltimoNumero(anno);
+        }
+        contatoreRepository.crea(anno, quantita);
+        return quantita;
+    }
+}
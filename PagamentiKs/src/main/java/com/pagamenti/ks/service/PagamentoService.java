@@ -1,38 +1,193 @@
 package com.pagamenti.ks.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.exception.ResourceNotFoundException;
 import com.pagamenti.ks.model.Atleta;
 import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoAtleta;
 import com.pagamenti.ks.model.enums.TipoPagamento;
 import com.pagamenti.ks.repository.AtletaRepository;
 import com.pagamenti.ks.repository.PagamentoRepository;
+import com.pagamenti.ks.repository.projection.Riepilogo730View;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class PagamentoService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int STREAM_FETCH_SIZE = 500;
+    private static final int BLOCCO_LETTURA = 500;
+    // The athlete and the receipt number are not editable
+    private static final Set<String> CAMPI_MODIFICABILI = Set.of("importo", "data", "dataPagamento",
+            "tipoPagamento", "metodoPagamento", "detraibile", "note");
+
     private final PagamentoRepository pagamentoRepository;
     private final AtletaRepository atletaRepository;
+    private final RiepilogoService riepilogoService;
+    private final RiepilogoAtletaService riepilogoAtletaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public PagamentoService(PagamentoRepository pagamentoRepository, AtletaRepository atletaRepository) {
+    public PagamentoService(PagamentoRepository pagamentoRepository, AtletaRepository atletaRepository,
+                            RiepilogoService riepilogoService, RiepilogoAtletaService riepilogoAtletaService,
+                            ApplicationEventPublisher eventPublisher, EntityManager entityManager,
+                            ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
         this.pagamentoRepository = pagamentoRepository;
         this.atletaRepository = atletaRepository;
+        this.riepilogoService = riepilogoService;
+        this.riepilogoAtletaService = riepilogoAtletaService;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     public List<Pagamento> findAll() {
         return pagamentoRepository.findAllWithAtleta();
     }
 
+    /**
+     * Hands every matching payment to the action, newest first, without
+     * materializing the result: rows come through a JDBC cursor and each one is
+     * detached once handled, so memory stays flat whatever the range.
+     */
+    @Transactional(readOnly = true)
+    public long forEach(Long atletaId, TipoPagamento tipo, LocalDate fromDate, LocalDate toDate,
+                        Consumer<Pagamento> action) {
+        return forEachDetached(pagamentoRepository.stream(atletaId, tipo, fromDate, toDate, STREAM_FETCH_SIZE), action);
+    }
+
+    /**
+     * Like {@link #forEach} but oldest first and with the athlete loaded, for
+     * documents that print athlete data next to each payment. The range is read
+     * in keyset blocks, each in its own short read-only transaction, so a slow
+     * action (a PDF page per payment) holds no connection between blocks.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long forEachWithAtleta(LocalDate startDate, LocalDate endDate, Consumer<Pagamento> action) {
+        long count = 0;
+        LocalDate afterData = null;
+        Long afterId = null;
+        List<Pagamento> blocco;
+        do {
+            LocalDate data = afterData;
+            Long id = afterId;
+            blocco = readOnlyTransaction.execute(status ->
+                    pagamentoRepository.findNextWithAtleta(startDate, endDate, data, id, BLOCCO_LETTURA));
+            for (Pagamento pagamento : blocco) {
+                action.accept(pagamento);
+                count++;
+            }
+            if (!blocco.isEmpty()) {
+                Pagamento ultimo = blocco.get(blocco.size() - 1);
+                afterData = ultimo.getData();
+                afterId = ultimo.getId();
+            }
+        } while (blocco.size() == BLOCCO_LETTURA);
+        return count;
+    }
+
+    private long forEachDetached(Stream<Pagamento> stream, Consumer<Pagamento> action) {
+        long count = 0;
+        try (Stream<Pagamento> rows = stream) {
+            Iterator<Pagamento> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Pagamento pagamento = iterator.next();
+                action.accept(pagamento);
+                entityManager.detach(pagamento);
+                count++;
+            }
+        }
+        return count;
+    }
+
     public Optional<Pagamento> findById(Long id) {
-        return pagamentoRepository.findAllWithAtleta().stream()
-                .filter(p -> p.getId().equals(id))
-                .findFirst();
+        return pagamentoRepository.findByIdWithAtleta(id);
+    }
+
+    public List<Pagamento> findByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return pagamentoRepository.findByIdInWithAtleta(ids);
+    }
+
+    public CursorPage<Pagamento> findPage(Long atletaId, TipoPagamento tipo, LocalDate fromDate, LocalDate toDate,
+                                          String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        LocalDate afterData = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorPage.decodeCursor(cursor, 2);
+            try {
+                afterData = LocalDate.parse(keys[0]);
+                afterId = Long.valueOf(keys[1]);
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Cursore non valido: " + cursor);
+            }
+        }
+
+        // One extra row tells us whether another page exists without a COUNT query
+        List<Pagamento> rows = pagamentoRepository.findPageWithAtleta(
+                atletaId, tipo, fromDate, toDate, afterData, afterId, pageSize + 1);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            Pagamento last = rows.get(pageSize - 1);
+            nextCursor = CursorPage.encodeCursor(last.getData(), last.getId());
+        }
+        return new CursorPage<>(rows, nextCursor, pageSize);
+    }
+
+    /**
+     * Latest payment of the athlete (by date, then by registration), with the
+     * athlete loaded; found through the athlete's payment summary.
+     */
+    public Optional<Pagamento> findUltimoPagamento(Long atletaId) {
+        return riepilogoAtletaService.find(atletaId)
+                .map(RiepilogoAtleta::getUltimoPagamentoId)
+                .flatMap(pagamentoRepository::findByIdWithAtleta);
+    }
+
+    public Optional<RiepilogoAtleta> findRiepilogoByAtleta(Long atletaId) {
+        return riepilogoAtletaService.find(atletaId);
+    }
+
+    /**
+     * Payment summaries (count, total, latest payment) of the athletes, keyed
+     * by athlete id, in one query.
+     */
+    public Map<Long, RiepilogoAtleta> findRiepiloghiByAtleti(Collection<Long> atletaIds) {
+        return riepilogoAtletaService.findByAtleti(atletaIds);
     }
 
     public Pagamento save(Pagamento pagamento) {
@@ -42,7 +197,18 @@ public class PagamentoService {
             return createPagamento(pagamento.getAtleta().getId(), pagamento);
         } else {
             // Otherwise, save directly (for cases where athlete might not be set)
-            return pagamentoRepository.save(pagamento);
+            Optional<Pagamento> previous = pagamento.getId() != null
+                    ? pagamentoRepository.findById(pagamento.getId()) : Optional.empty();
+            previous.ifPresent(riepilogoService::annulla);
+            previous.ifPresent(riepilogoAtletaService::annulla);
+            Pagamento saved = pagamentoRepository.save(pagamento);
+            riepilogoService.registra(saved);
+            riepilogoAtletaService.registra(saved);
+            if (previous.isPresent()) {
+                riepilogoAtletaService.ricalcolaUltimo(saved.getAtletaId());
+            }
+            eventPublisher.publishEvent(DatiModificatiEvent.pagamento(saved.getId(), saved.getAtletaId()));
+            return saved;
         }
     }
 
@@ -54,22 +220,76 @@ public class PagamentoService {
         pagamento.setAtleta(atleta);
         
         // Save the payment - cascade will handle the relationship
-        return pagamentoRepository.save(pagamento);
+        Pagamento saved = pagamentoRepository.save(pagamento);
+        riepilogoService.registra(saved);
+        riepilogoAtletaService.registra(saved);
+        eventPublisher.publishEvent(DatiModificatiEvent.pagamento(saved.getId(), atletaId));
+        return saved;
     }
 
     public Pagamento update(Long id, Pagamento pagamentoDetails) {
         return pagamentoRepository.findById(id)
                 .map(pagamento -> {
+                    MergePatch.verificaVersione(pagamentoDetails.getVersion(), pagamento.getVersion());
+                    riepilogoService.annulla(pagamento);
+                    riepilogoAtletaService.annulla(pagamento);
                     pagamento.setImporto(pagamentoDetails.getImporto());
                     pagamento.setData(pagamentoDetails.getData());
-                    pagamento.setMetodoPagamento(pagamentoDetails.getMetodoPagamento());
-                    return pagamentoRepository.save(pagamento);
+                    // tipoPagamento is also set by the legacy metodoPagamento field
+                    if (pagamentoDetails.getTipoPagamento() != null) {
+                        pagamento.setTipoPagamento(pagamentoDetails.getTipoPagamento());
+                    }
+                    if (pagamentoDetails.getDetraibile() != null) {
+                        pagamento.setDetraibile(pagamentoDetails.getDetraibile());
+                    }
+                    pagamento.setNote(pagamentoDetails.getNote());
+                    Pagamento saved = pagamentoRepository.save(pagamento);
+                    riepilogoService.registra(saved);
+                    riepilogoAtletaService.registra(saved);
+                    // The date may have moved: another payment can now be the latest
+                    riepilogoAtletaService.ricalcolaUltimo(saved.getAtletaId());
+                    eventPublisher.publishEvent(DatiModificatiEvent.pagamento(id, saved.getAtletaId()));
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Pagamento non trovato con id: " + id));
     }
 
+    /**
+     * Applies a JSON Merge Patch: only the fields sent are changed, and only
+     * the changed columns are written. A {@code version} member, when sent,
+     * must match the current one. The rollups are moved like for
+     * {@link #update}.
+     *
+     * @throws ResourceNotFoundException if the payment does not exist
+     * @throws BadRequestException if the patch is not valid or clears a required field
+     * @throws com.pagamenti.ks.exception.ConflictException if the version is stale
+     */
+    public Pagamento patch(Long id, JsonNode patch) {
+        Pagamento pagamento = pagamentoRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Pagamento", "id", id));
+        riepilogoService.annulla(pagamento);
+        riepilogoAtletaService.annulla(pagamento);
+        MergePatch.applica(objectMapper, pagamento, pagamento.getVersion(), patch, CAMPI_MODIFICABILI);
+        if (pagamento.getImporto() == null || pagamento.getData() == null
+                || pagamento.getTipoPagamento() == null || pagamento.getDetraibile() == null) {
+            throw new BadRequestException("importo, data, tipoPagamento e detraibile non possono essere vuoti");
+        }
+        Pagamento saved = pagamentoRepository.saveAndFlush(pagamento);
+        riepilogoService.registra(saved);
+        riepilogoAtletaService.registra(saved);
+        riepilogoAtletaService.ricalcolaUltimo(saved.getAtletaId());
+        eventPublisher.publishEvent(DatiModificatiEvent.pagamento(id, saved.getAtletaId()));
+        return saved;
+    }
+
     public void deleteById(Long id) {
-        pagamentoRepository.deleteById(id);
+        pagamentoRepository.findById(id).ifPresent(pagamento -> {
+            riepilogoService.annulla(pagamento);
+            riepilogoAtletaService.annulla(pagamento);
+            pagamentoRepository.delete(pagamento);
+            riepilogoAtletaService.ricalcolaUltimo(pagamento.getAtletaId());
+            eventPublisher.publishEvent(DatiModificatiEvent.pagamento(id, pagamento.getAtletaId()));
+        });
     }
 
     public List<Pagamento> findByAtleta(Long atletaId) {
@@ -80,13 +300,33 @@ public class PagamentoService {
         return pagamentoRepository.findBetweenDatesWithAtleta(startDate, endDate);
     }
 
+    public long countByDateRange(LocalDate startDate, LocalDate endDate) {
+        return pagamentoRepository.countByDataBetween(startDate, endDate);
+    }
+
+    public Double getTotalBetween(LocalDate startDate, LocalDate endDate) {
+        return riepilogoService.sumBetween(startDate, endDate).getTotale();
+    }
+
     public List<Pagamento> findByMetodoPagamento(String metodoPagamento) {
         TipoPagamento tipoPagamento = TipoPagamento.fromValue(metodoPagamento);
         return pagamentoRepository.findByTipoPagamentoWithAtleta(tipoPagamento);
     }
 
     public Double getTotalPaymentsByAtleta(Long atletaId) {
-        return pagamentoRepository.getTotalPagamentiByAtletaId(atletaId);
+        return riepilogoAtletaService.find(atletaId).map(RiepilogoAtleta::getTotale).orElse(null);
+    }
+
+    public List<TopPagatoreResponse> findTopPayers(LocalDate fromDate, LocalDate toDate, TipoPagamento tipo, int limit) {
+        if (fromDate == null && toDate == null && tipo == null) {
+            // Lifetime totals are kept per athlete: no need to aggregate the payments
+            return riepilogoAtletaService.findTopPayers(limit);
+        }
+        return pagamentoRepository.findTopPayers(fromDate, toDate, tipo, limit);
+    }
+
+    public List<Riepilogo730View> aggregate730ByAtleta(LocalDate startDate, LocalDate endDate) {
+        return pagamentoRepository.aggregate730ByAtleta(startDate, endDate);
     }
 
     public List<Pagamento> findRecentPayments(int days) {
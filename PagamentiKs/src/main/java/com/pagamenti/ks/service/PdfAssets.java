@@ -0,0 +1,162 @@
+package com.pagamenti.ks.service;
+
+import com.itextpdf.text.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.Deflater;
+
+/**
+ * Images embedded in the generated PDFs, decoded once and kept ready to embed.
+ * The PNGs are parsed by iText and their pixel and alpha data deflated up front,
+ * so a document only copies the pre-encoded streams instead of decoding and
+ * compressing the images again. {@link #reload()} re-reads the files.
+ */
+@Component
+public class PdfAssets {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfAssets.class);
+
+    private static final String INTESTAZIONE = "Intestazione.png";
+    private static final String FIRMA = "firma.png";
+
+    private record Snapshot(Image intestazione, Image firma, String version) {}
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+
+    private volatile Snapshot snapshot;
+
+    public PdfAssets(ResourceLoader resourceLoader,
+                     @Value("${pdf.assets.location:classpath:images/}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location.endsWith("/") ? location : location + "/";
+        reload();
+    }
+
+    /**
+     * Re-reads the images from the configured location. Documents already being
+     * generated keep the images they started with.
+     *
+     * @return the new assets version
+     */
+    public synchronized String reload() {
+        MessageDigest digest = sha256();
+        Image intestazione = load(INTESTAZIONE, digest);
+        Image firma = load(FIRMA, digest);
+        String version = HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        snapshot = new Snapshot(intestazione, firma, version);
+        logger.info("PDF assets loaded from {} (version {})", location, version);
+        return version;
+    }
+
+    /** Header image for a new document, or null if it could not be loaded. */
+    public Image getIntestazione() {
+        return copyOf(snapshot.intestazione());
+    }
+
+    /** Signature image for a new document, or null if it could not be loaded. */
+    public Image getFirma() {
+        return copyOf(snapshot.firma());
+    }
+
+    /** Changes whenever the image files change; part of any cached PDF's identity. */
+    public String getVersion() {
+        return snapshot.version();
+    }
+
+    private Image load(String name, MessageDigest digest) {
+        Resource resource = resourceLoader.getResource(location + name);
+        try (InputStream in = resource.getInputStream()) {
+            byte[] bytes = in.readAllBytes();
+            digest.update(bytes);
+            return preEncode(Image.getInstance(bytes));
+        } catch (Exception e) {
+            logger.warn("PDF asset {} not available: {}", resource.getDescription(), e.getMessage());
+            digest.update(name.getBytes());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces a decoded raw image with one whose data is already deflated, so
+     * the writer embeds it as-is. Images iText keeps in their original encoding
+     * (e.g. JPEG) are returned unchanged.
+     */
+    private static Image preEncode(Image decoded) throws Exception {
+        if (!decoded.isImgRaw() || decoded.isDeflated()) {
+            return decoded;
+        }
+        Image encoded = deflated(decoded);
+        Image mask = decoded.getImageMask();
+        if (mask != null && !isOpaque(mask)) {
+            Image encodedMask = mask.isImgRaw() && !mask.isDeflated() ? deflated(mask) : mask;
+            encodedMask.makeMask();
+            encoded.setImageMask(encodedMask);
+            encoded.setSmask(decoded.isSmask());
+        }
+        return encoded;
+    }
+
+    /** An 8-bit alpha channel with every pixel at 255 adds bytes and changes nothing. */
+    private static boolean isOpaque(Image mask) {
+        if (!mask.isImgRaw() || mask.isDeflated() || mask.getBpc() != 8) {
+            return false;
+        }
+        for (byte alpha : mask.getRawData()) {
+            if (alpha != (byte) 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Image deflated(Image raw) throws Exception {
+        Image image = Image.getInstance((int) raw.getWidth(), (int) raw.getHeight(),
+                raw.getColorspace(), raw.getBpc(), deflate(raw.getRawData()), raw.getTransparency());
+        image.setDeflated(true);
+        image.setDpi(raw.getDpiX(), raw.getDpiY());
+        if (raw.hasICCProfile()) {
+            image.tagICC(raw.getICCProfile());
+        }
+        return image;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Image copyOf(Image prototype) {
+        // Shallow copy: shares the encoded data, keeps scaling and alignment per document
+        return prototype != null ? Image.getInstance(prototype) : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
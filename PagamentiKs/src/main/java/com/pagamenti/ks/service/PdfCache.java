@@ -0,0 +1,388 @@
+package com.pagamenti.ks.service;
+
+import com.itextpdf.text.DocumentException;
+import com.pagamenti.ks.event.DatiModificatiEvent;
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache for generated receipts and 730 statements. Each file is named
+ * after a hash of everything printed in it (payment and athlete data, layout
+ * and image versions), so a changed payment simply gets a new entry; the hash
+ * doubles as the HTTP ETag. Entries are evicted least recently used first once
+ * the folder exceeds its size limit, and dropped as soon as a write to the
+ * underlying athlete or payment commits.
+ */
+@Component
+public class PdfCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfCache.class);
+
+    private static final String RICEVUTA = "ricevuta";
+    private static final String RESOCONTO_730 = "730";
+    private static final Pattern FILE_NAME = Pattern.compile("(ricevuta|730)-(\\d+)-(\\d*)-([0-9a-f]+)\\.pdf");
+
+    /** Identity of a cached document; pagamentoId is null for 730 statements. */
+    public record Key(String tipo, long atletaId, Long pagamentoId, String hash) {
+
+        String fileName() {
+            return tipo + "-" + atletaId + "-" + (pagamentoId != null ? pagamentoId : "") + "-" + hash + ".pdf";
+        }
+
+        public String etag() {
+            return "\"" + hash + "\"";
+        }
+    }
+
+    @FunctionalInterface
+    public interface PdfGenerator {
+        void write(OutputStream out) throws IOException, DocumentException;
+    }
+
+    private record Entry(Key key, long size) {}
+
+    private final Path directory;
+    private final long maxBytes;
+    private final PdfAssets pdfAssets;
+
+    // Access-ordered: iteration starts from the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PdfCache(@Value("${pdf.cache.dir:${java.io.tmpdir}/pagamentiks-pdf-cache}") String directory,
+                    @Value("${pdf.cache.max-size-mb:200}") long maxSizeMb,
+                    PdfAssets pdfAssets) throws IOException {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.pdfAssets = pdfAssets;
+        Files.createDirectories(this.directory);
+        loadIndex();
+    }
+
+    public Key ricevutaKey(Pagamento pagamento, Atleta atleta) {
+        String content = String.join("|", RICEVUTA, PdfService.LAYOUT_VERSION, pdfAssets.getVersion(),
+                String.valueOf(pagamento.getId()), NumerazioneRicevuteService.formatta(pagamento),
+                String.valueOf(pagamento.getImporto()),
+                String.valueOf(pagamento.getData()), atletaContent(atleta));
+        return new Key(RICEVUTA, atleta.getId(), pagamento.getId(), sha256(content));
+    }
+
+    public Key resoconto730Key(Atleta atleta, List<Pagamento> pagamenti, int anno) {
+        StringBuilder content = new StringBuilder(String.join("|", RESOCONTO_730, PdfService.LAYOUT_VERSION,
+                pdfAssets.getVersion(), String.valueOf(anno), atletaContent(atleta)));
+        pagamenti.stream()
+                .sorted(Comparator.comparing(Pagamento::getId))
+                .forEach(p -> content.append('|').append(p.getId())
+                        .append(':').append(p.getImporto())
+                        .append(':').append(p.getDetraibile()));
+        return new Key(RESOCONTO_730, atleta.getId(), null, sha256(content.toString()));
+    }
+
+    private static String atletaContent(Atleta atleta) {
+        return atleta.getId() + "|" + atleta.getNome() + "|" + atleta.getCognome() + "|" + atleta.getCf();
+    }
+
+    /**
+     * Writes the cached document for the key to the stream. On a miss the
+     * document is rendered straight into the stream and into the cache file at
+     * the same time; a failure to write the cache only costs the next request a
+     * render.
+     */
+    public void write(Key key, PdfGenerator generator, OutputStream out) throws IOException, DocumentException {
+        if (copy(key, out)) {
+            hits.incrementAndGet();
+            return;
+        }
+        misses.incrementAndGet();
+        Path tmp = directory.resolve(key.fileName() + "." + UUID.randomUUID() + ".tmp");
+        TeeOutputStream tee = new TeeOutputStream(out, tmp);
+        try {
+            generator.write(tee);
+        } catch (IOException | DocumentException | RuntimeException e) {
+            // Client gone or rendering failed: the partial file is useless
+            tee.closeFile();
+            deleteQuietly(tmp);
+            throw e;
+        }
+        tee.closeFile();
+        if (tee.isFileComplete()) {
+            store(key, tmp, tee.getFileSize());
+        } else {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private boolean copy(Key key, OutputStream out) throws IOException {
+        String fileName = key.fileName();
+        synchronized (this) {
+            if (entries.get(fileName) == null) {
+                return false;
+            }
+        }
+        try {
+            Files.copy(directory.resolve(fileName), out);
+            return true;
+        } catch (NoSuchFileException e) {
+            // Evicted between the lookup and the read, before anything was written
+            synchronized (this) {
+                remove(fileName);
+            }
+            return false;
+        }
+    }
+
+    private void store(Key key, Path tmp, long size) {
+        String fileName = key.fileName();
+        try {
+            Files.move(tmp, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not cache {}: {}", fileName, e.getMessage());
+            deleteQuietly(tmp);
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(fileName, new Entry(key, size));
+            totalBytes += size - (previous != null ? previous.size() : 0);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> candidate = eldest.next();
+                if (candidate.getKey().equals(fileName)) {
+                    continue;
+                }
+                totalBytes -= candidate.getValue().size();
+                eldest.remove();
+                evicted.add(candidate.getKey());
+            }
+        }
+        evictions.addAndGet(evicted.size());
+        evicted.forEach(this::deleteFile);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Leftover temporary files are removed at the next start
+        }
+    }
+
+    /**
+     * Sends everything to the response and copies it to the cache file. Once
+     * the file cannot be written it is given up on; the response is not
+     * affected.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final Path path;
+        private OutputStream file;
+        private boolean fileFailed;
+        private long fileSize;
+
+        private TeeOutputStream(OutputStream out, Path path) {
+            this.out = out;
+            this.path = path;
+            try {
+                this.file = new BufferedOutputStream(Files.newOutputStream(path), 16 * 1024);
+            } catch (IOException e) {
+                this.fileFailed = true;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (!fileFailed) {
+                try {
+                    file.write(b);
+                    fileSize++;
+                } catch (IOException e) {
+                    fileFailed = true;
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (!fileFailed) {
+                try {
+                    file.write(b, off, len);
+                    fileSize += len;
+                } catch (IOException e) {
+                    fileFailed = true;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /** Closes only the cache file: the response stream belongs to the caller. */
+        void closeFile() {
+            if (file == null) {
+                return;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                fileFailed = true;
+            }
+        }
+
+        boolean isFileComplete() {
+            return !fileFailed && Files.exists(path);
+        }
+
+        long getFileSize() {
+            return fileSize;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDatiModificati(DatiModificatiEvent event) {
+        if (event.getEntita() == DatiModificatiEvent.Entita.ATLETA) {
+            if (event.getId() == null) {
+                // New athletes or renewed deadlines: nothing printed changed
+                return;
+            }
+            // Name and tax code appear on every document of the athlete
+            invalidate(entry -> Objects.equals(entry.key().atletaId(), event.getId()));
+        } else {
+            invalidate(entry -> (event.getId() != null && Objects.equals(entry.key().pagamentoId(), event.getId()))
+                    || (RESOCONTO_730.equals(entry.key().tipo())
+                        && Objects.equals(entry.key().atletaId(), event.getAtletaId())));
+        }
+    }
+
+    private void invalidate(Predicate<Entry> stale) {
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            entries.values().stream()
+                    .filter(stale)
+                    .map(entry -> entry.key().fileName())
+                    .forEach(removed::add);
+            removed.forEach(this::remove);
+        }
+        invalidations.addAndGet(removed.size());
+        removed.forEach(this::deleteFile);
+    }
+
+    private void remove(String fileName) {
+        Entry entry = entries.remove(fileName);
+        if (entry != null) {
+            totalBytes -= entry.size();
+        }
+    }
+
+    private void deleteFile(String fileName) {
+        try {
+            Files.deleteIfExists(directory.resolve(fileName));
+        } catch (IOException e) {
+            logger.warn("Could not delete cached PDF {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    /** Rebuilds the index from the files left by a previous run, oldest first. */
+    private void loadIndex() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        List<Path> cached = new ArrayList<>();
+        for (Path file : files) {
+            if (FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+                cached.add(file);
+            } else {
+                // Leftover temporary file of an interrupted write
+                Files.deleteIfExists(file);
+            }
+        }
+        cached.sort(Comparator.comparing(PdfCache::lastModified));
+        for (Path file : cached) {
+            Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+            m.matches();
+            Long pagamentoId = m.group(3).isEmpty() ? null : Long.valueOf(m.group(3));
+            Key key = new Key(m.group(1), Long.parseLong(m.group(2)), pagamentoId, m.group(4));
+            long size = Files.size(file);
+            entries.put(key.fileName(), new Entry(key, size));
+            totalBytes += size;
+        }
+        logger.info("PDF cache at {}: {} files, {} KB", directory, entries.size(), totalBytes / 1024);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> metrics = new HashMap<>();
+        synchronized (this) {
+            metrics.put("files", entries.size());
+            metrics.put("sizeBytes", totalBytes);
+        }
+        metrics.put("maxSizeBytes", maxBytes);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.get());
+        metrics.put("hitRatio", total > 0 ? (double) hitCount / total : 0.0);
+        metrics.put("evictions", evictions.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
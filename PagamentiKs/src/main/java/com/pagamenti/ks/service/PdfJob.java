@@ -0,0 +1,130 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.enums.StatoJobPdf;
+import com.pagamenti.ks.model.enums.TipoJobPdf;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A document generated in the background by {@link PdfJobService}. State is
+ * written by the worker thread and read by any request, so every field that
+ * changes after creation is volatile or atomic; {@link #getVersione()} grows
+ * on each change so watchers can tell whether there is anything new to send.
+ */
+public class PdfJob implements Avanzamento {
+
+    private final String id;
+    private final TipoJobPdf tipo;
+    private final String fileName;
+    private final String contentType;
+    private final Instant creato = Instant.now();
+
+    private volatile StatoJobPdf stato = StatoJobPdf.IN_CODA;
+    private volatile int completati;
+    private volatile int totale;
+    private volatile String errore;
+    private volatile Instant avviato;
+    private volatile Instant terminato;
+    private volatile Path file;
+    private volatile long dimensione;
+    private volatile boolean annullamentoRichiesto;
+    private final AtomicLong versione = new AtomicLong();
+    private volatile Future<?> future;
+
+    PdfJob(String id, TipoJobPdf tipo, String fileName, String contentType) {
+        this.id = id;
+        this.tipo = tipo;
+        this.fileName = fileName;
+        this.contentType = contentType;
+    }
+
+    /** Called on the worker thread; stops the generation once the job is cancelled. */
+    @Override
+    public void aggiorna(int completati, int totale) {
+        if (annullamentoRichiesto || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Job " + id + " annullato");
+        }
+        this.completati = completati;
+        this.totale = totale;
+        versione.incrementAndGet();
+    }
+
+    synchronized boolean avvia() {
+        if (stato != StatoJobPdf.IN_CODA) {
+            return false;
+        }
+        avviato = Instant.now();
+        return cambiaStato(StatoJobPdf.IN_ESECUZIONE);
+    }
+
+    synchronized void completa(Path file, long dimensione) {
+        this.file = file;
+        this.dimensione = dimensione;
+        this.completati = Math.max(completati, totale);
+        cambiaStato(StatoJobPdf.COMPLETATO);
+    }
+
+    synchronized void fallisci(String errore) {
+        this.errore = errore;
+        cambiaStato(annullamentoRichiesto ? StatoJobPdf.ANNULLATO : StatoJobPdf.FALLITO);
+    }
+
+    /**
+     * Stops a queued or running job.
+     *
+     * @return false if the job had already ended
+     */
+    synchronized boolean annulla() {
+        if (stato.isTerminato()) {
+            return false;
+        }
+        annullamentoRichiesto = true;
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (stato == StatoJobPdf.IN_CODA) {
+            // Never started: the worker will not report back
+            cambiaStato(StatoJobPdf.ANNULLATO);
+        }
+        return true;
+    }
+
+    private boolean cambiaStato(StatoJobPdf nuovo) {
+        stato = nuovo;
+        if (nuovo.isTerminato()) {
+            terminato = Instant.now();
+        }
+        versione.incrementAndGet();
+        return true;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    public String getId() { return id; }
+    public TipoJobPdf getTipo() { return tipo; }
+    public String getFileName() { return fileName; }
+    public String getContentType() { return contentType; }
+    public Instant getCreato() { return creato; }
+    public StatoJobPdf getStato() { return stato; }
+    public int getCompletati() { return completati; }
+    public int getTotale() { return totale; }
+    public String getErrore() { return errore; }
+    public Instant getAvviato() { return avviato; }
+    public Instant getTerminato() { return terminato; }
+    public long getDimensione() { return dimensione; }
+    public long getVersione() { return versione.get(); }
+}
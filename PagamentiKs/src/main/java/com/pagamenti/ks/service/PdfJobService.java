@@ -0,0 +1,247 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.enums.TipoJobPdf;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Runs year-end batches (all 730 statements, a receipt book) in the background
+ * so they hold neither a request thread nor, for longer than their own
+ * queries, a database connection. A few workers take jobs from a short queue;
+ * when the queue is full new jobs are refused instead of piling up. Results
+ * are written to files that are deleted {@code pdf.jobs.retention-minutes}
+ * after the job ends.
+ */
+@Service
+public class PdfJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfJobService.class);
+
+    private static final String APPLICATION_PDF = "application/pdf";
+    private static final String APPLICATION_ZIP = "application/zip";
+    /** A job result ({@code <job id>}) or a result being written ({@code <job id>.part}). */
+    private static final Pattern FILE_JOB = Pattern.compile(
+            "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}(\\.part)?");
+
+    @FunctionalInterface
+    private interface Generazione {
+        void scrivi(OutputStream out, Avanzamento avanzamento) throws IOException;
+    }
+
+    private final Resoconto730Service resoconto730Service;
+    private final RicevutaService ricevutaService;
+    private final Path directory;
+    private final Duration conservazione;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService pulizia;
+    private final Map<String, PdfJob> jobs = new ConcurrentHashMap<>();
+
+    public PdfJobService(Resoconto730Service resoconto730Service, RicevutaService ricevutaService,
+                         @Value("${pdf.jobs.dir:${java.io.tmpdir}/pagamentiks-pdf-jobs}") String directory,
+                         @Value("${pdf.jobs.threads:2}") int threads,
+                         @Value("${pdf.jobs.queue-size:10}") int queueSize,
+                         @Value("${pdf.jobs.retention-minutes:60}") long retentionMinutes) throws IOException {
+        this.resoconto730Service = resoconto730Service;
+        this.ricevutaService = ricevutaService;
+        this.directory = Paths.get(directory);
+        this.conservazione = Duration.ofMinutes(retentionMinutes);
+        Files.createDirectories(this.directory);
+        eliminaFileOrfani();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "pdf-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.pulizia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pdf-job-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pulizia.scheduleWithFixedDelay(this::eliminaScaduti, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pulizia.shutdownNow();
+        workers.shutdownNow();
+        jobs.values().forEach(this::eliminaFile);
+    }
+
+    /**
+     * Queues the 730 statements of every active athlete for the year, as a ZIP.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public PdfJob avviaResoconti730(int anno) {
+        return avvia(TipoJobPdf.RESOCONTI_730, "resoconti_730_" + anno + ".zip", APPLICATION_ZIP,
+                (out, avanzamento) -> resoconto730Service.writeResoconti730Zip(anno, out, avanzamento));
+    }
+
+    /**
+     * Queues a receipt book for the payments in the range.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public PdfJob avviaLibroRicevute(LocalDate fromDate, LocalDate toDate) {
+        return avvia(TipoJobPdf.LIBRO_RICEVUTE, "ricevute_" + fromDate + "_" + toDate + ".pdf", APPLICATION_PDF,
+                (out, avanzamento) -> ricevutaService.writeLibroRicevute(fromDate, toDate, out, avanzamento));
+    }
+
+    private PdfJob avvia(TipoJobPdf tipo, String fileName, String contentType, Generazione generazione) {
+        PdfJob job = new PdfJob(UUID.randomUUID().toString(), tipo, fileName, contentType);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(workers.submit(() -> esegui(job, generazione)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        logger.info("PDF job {} ({}) queued", job.getId(), tipo);
+        return job;
+    }
+
+    private void esegui(PdfJob job, Generazione generazione) {
+        if (!job.avvia()) {
+            return;
+        }
+        Path file = directory.resolve(job.getId() + ".part");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                generazione.scrivi(out, job);
+            }
+            Path risultato = directory.resolve(job.getId());
+            Files.move(file, risultato);
+            job.completa(risultato, Files.size(risultato));
+            logger.info("PDF job {} ({}) completed: {} items, {} KB in {} ms", job.getId(), job.getTipo(),
+                    job.getCompletati(), job.getDimensione() / 1024,
+                    Duration.between(job.getAvviato(), job.getTerminato()).toMillis());
+        } catch (Exception e) {
+            job.fallisci(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            logger.warn("PDF job {} ({}) ended as {}: {}", job.getId(), job.getTipo(), job.getStato(), job.getErrore());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Removed with the other leftovers at the next start
+            }
+        }
+    }
+
+    public Optional<PdfJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<PdfJob> findAll() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(PdfJob::getCreato).reversed())
+                .toList();
+    }
+
+    /** The finished document, or empty if the job has not completed. */
+    public Optional<Path> getRisultato(PdfJob job) {
+        Path file = job.getFile();
+        return file != null && Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Cancels a queued or running job, or forgets an ended one and deletes its
+     * result.
+     *
+     * @return false if there is no such job
+     */
+    public boolean annullaOElimina(String id) {
+        PdfJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        if (job.annulla()) {
+            if (job.getFuture() != null) {
+                // Frees the queue slot of a job that never started
+                workers.remove((Runnable) job.getFuture());
+            }
+            logger.info("PDF job {} ({}) cancelled", id, job.getTipo());
+        } else {
+            jobs.remove(id);
+            eliminaFile(job);
+        }
+        return true;
+    }
+
+    public Map<String, Object> getMetrics() {
+        return Map.of(
+                "workers", workers.getMaximumPoolSize(),
+                "active", workers.getActiveCount(),
+                "queued", workers.getQueue().size(),
+                "queueCapacity", workers.getQueue().size() + workers.getQueue().remainingCapacity(),
+                "jobs", jobs.size());
+    }
+
+    void eliminaScaduti() {
+        Instant limite = Instant.now().minus(conservazione);
+        jobs.values().removeIf(job -> {
+            Instant terminato = job.getTerminato();
+            if (job.getStato().isTerminato() && terminato != null && terminato.isBefore(limite)) {
+                eliminaFile(job);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void eliminaFile(PdfJob job) {
+        Path file = job.getFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete result of PDF job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Results of a previous run can no longer be downloaded: jobs live in
+     * memory. Only files named after a job id are deleted, in case the
+     * directory is shared with something else.
+     */
+    private void eliminaFileOrfani() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                if (Files.isRegularFile(file) && FILE_JOB.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
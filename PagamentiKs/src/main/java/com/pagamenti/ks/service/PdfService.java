@@ -7,13 +7,10 @@ import com.itextpdf.text.pdf.PdfWriter;
 import com.pagamenti.ks.model.Atleta;
 import com.pagamenti.ks.model.Pagamento;
 import org.springframework.stereotype.Service;
-import org.springframework.core.io.ClassPathResource;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.Year;
 import java.time.format.DateTimeFormatter;
@@ -22,6 +19,9 @@ import java.util.List;
 @Service
 public class PdfService {
 
+    /** Bump whenever the layout of a document changes, so cached PDFs are regenerated. */
+    public static final String LAYOUT_VERSION = "1";
+
     private static final String ASSOCIAZIONE_NOME = "A.S.D. KARATE-SAN";
     private static final String ASSOCIAZIONE_SEDE = "Via Galileo Galilei 67 - 20831 Seregno (MB)";
     private static final String ASSOCIAZIONE_CF = "91125000157";
@@ -29,49 +29,99 @@ public class PdfService {
     private static final String ASSOCIAZIONE_WEBSITE = "www.karate-san.it";
     private static final String ASSOCIAZIONE_TEL = "339-3909002";
 
-    public byte[] generateRicevuta(Pagamento pagamento, Atleta atleta, String numeroRicevuta) throws IOException, DocumentException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        
+    // Fonts are immutable once built and shared by every document
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
+    private static final Font NORMAL_FONT = new Font(Font.FontFamily.HELVETICA, 12, Font.NORMAL);
+    private static final Font BOLD_FONT = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+    private static final Font HEADER_FALLBACK_FONT = new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD);
+    private static final Font RESOCONTO_BOLD_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
+    private static final Font RESOCONTO_NORMAL_FONT = FontFactory.getFont(FontFactory.HELVETICA, 11);
+    private static final Font RESOCONTO_SMALL_FONT = FontFactory.getFont(FontFactory.HELVETICA, 9);
+
+    private final PdfAssets pdfAssets;
+
+    public PdfService(PdfAssets pdfAssets) {
+        this.pdfAssets = pdfAssets;
+    }
+
+    /** Re-reads header and signature images; returns the new assets version. */
+    public String reloadAssets() {
+        return pdfAssets.reload();
+    }
+
+    /**
+     * Writes a receipt to the stream as iText completes each object, so the
+     * document is never held in memory. The stream is left open.
+     */
+    public void writeRicevuta(Pagamento pagamento, Atleta atleta, String numeroRicevuta,
+                              OutputStream outputStream) throws DocumentException {
+        Document document = openDocument(outputStream);
+        writeRicevutaPage(document, pdfAssets.getIntestazione(), pagamento, atleta, numeroRicevuta);
+        document.close();
+    }
+
+    private static Document openDocument(OutputStream outputStream) throws DocumentException {
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, outputStream);
-        
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        // Leave the response stream open: it belongs to the caller
+        writer.setCloseStream(false);
         document.open();
+        return document;
+    }
+
+    /**
+     * Opens a single PDF that collects many receipts, one per page, written to
+     * the stream as pages are completed. The header image is embedded once and
+     * every page refers to the same image object.
+     */
+    public LibroRicevute openLibroRicevute(OutputStream outputStream) throws DocumentException {
+        return new LibroRicevute(outputStream, pdfAssets.getIntestazione());
+    }
+
+    public static final class LibroRicevute implements AutoCloseable {
+
+        private final Document document;
+        private final Image intestazione;
+        private int ricevute;
+
+        private LibroRicevute(OutputStream outputStream, Image intestazione) throws DocumentException {
+            this.document = openDocument(outputStream);
+            this.intestazione = intestazione;
+        }
+
+        public void addRicevuta(Pagamento pagamento, Atleta atleta, String numeroRicevuta) throws DocumentException {
+            if (ricevute > 0) {
+                document.newPage();
+            }
+            writeRicevutaPage(document, intestazione, pagamento, atleta, numeroRicevuta);
+            ricevute++;
+        }
+
+        public int getRicevute() {
+            return ricevute;
+        }
 
-        // Font definitions
-        Font titleFont = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
-        Font normalFont = new Font(Font.FontFamily.HELVETICA, 12, Font.NORMAL);
-        Font boldFont = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
-        Font smallFont = new Font(Font.FontFamily.HELVETICA, 10, Font.NORMAL);
+        @Override
+        public void close() throws DocumentException {
+            if (ricevute == 0) {
+                // iText refuses to close a document without pages
+                document.add(new Paragraph("Nessuna ricevuta nel periodo selezionato", NORMAL_FONT));
+            }
+            document.close();
+        }
+    }
 
+    private static void writeRicevutaPage(Document document, Image logo, Pagamento pagamento, Atleta atleta,
+                                          String numeroRicevuta) throws DocumentException {
         // Header con logo reale - full width
         PdfPTable headerTable = new PdfPTable(1);
         headerTable.setWidthPercentage(100);
         
         PdfPCell logoCell;
         
-        try {
-            // Carica il logo A.S.D. KARATE-SAN
-            ClassPathResource logoResource = new ClassPathResource("images/Intestazione.png");
-            System.out.println("Loading logo from: " + logoResource.getPath());
-            
-            if (!logoResource.exists()) {
-                System.out.println("Logo file not found: " + logoResource.getPath());
-                throw new IOException("Logo file not found: " + logoResource.getPath());
-            }
-            
-            InputStream logoInputStream = logoResource.getInputStream();
-            System.out.println("Logo input stream opened successfully");
-            
-            BufferedImage logoImage = ImageIO.read(logoInputStream);
-            System.out.println("Logo image loaded: " + (logoImage != null ? "success" : "failed") + " - size: " + 
-                (logoImage != null ? logoImage.getWidth() + "x" + logoImage.getHeight() : "N/A"));
-            
-            if (logoImage == null) {
-                System.out.println("Failed to read logo image");
-                throw new IOException("Failed to read logo image");
-            }
-            
-            com.itextpdf.text.Image logoPdf = com.itextpdf.text.Image.getInstance(logoImage, null);
+        if (logo != null) {
+            // Copia per pagina: condivide l'immagine già incorporata, cambia solo la scala
+            Image logoPdf = Image.getInstance(logo);
             
             // Scala il logo per adattarsi alla larghezza della pagina (A4 width ~ 525px)
             float maxWidth = 525;
@@ -86,14 +136,9 @@ public class PdfService {
             logoCell.setHorizontalAlignment(Element.ALIGN_CENTER);
             logoCell.setVerticalAlignment(Element.ALIGN_TOP);
             logoCell.setPadding(0);
-            
-            System.out.println("Logo added to PDF successfully");
-        } catch (Exception e) {
-            System.out.println("Error loading logo: " + e.getMessage());
-            e.printStackTrace();
-            
+        } else {
             // Fallback a testo se l'immagine non è disponibile
-            logoCell = new PdfPCell(new Phrase("A.S.D. KARATE-SAN\n\n(Intestazione non disponibile)", new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD)));
+            logoCell = new PdfPCell(new Phrase("A.S.D. KARATE-SAN\n\n(Intestazione non disponibile)", HEADER_FALLBACK_FONT));
             logoCell.setBorder(Rectangle.NO_BORDER);
             logoCell.setHorizontalAlignment(Element.ALIGN_CENTER);
             logoCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
@@ -109,22 +154,22 @@ public class PdfService {
 
         // Titolo e numero ricevuta centrati
         Paragraph titleParagraph = new Paragraph();
-        titleParagraph.add(new Chunk("RICEVUTA", titleFont));
-        titleParagraph.add(new Chunk(" numero ", normalFont));
-        titleParagraph.add(new Chunk(numeroRicevuta, boldFont));
-        titleParagraph.add(new Chunk(" del ", normalFont));
-        titleParagraph.add(new Chunk(pagamento.getData().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), boldFont));
+        titleParagraph.add(new Chunk("RICEVUTA", TITLE_FONT));
+        titleParagraph.add(new Chunk(" numero ", NORMAL_FONT));
+        titleParagraph.add(new Chunk(numeroRicevuta, BOLD_FONT));
+        titleParagraph.add(new Chunk(" del ", NORMAL_FONT));
+        titleParagraph.add(new Chunk(pagamento.getData().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), BOLD_FONT));
         titleParagraph.setAlignment(Element.ALIGN_CENTER);
         titleParagraph.setSpacingAfter(30);
         document.add(titleParagraph);
 
         // Corpo della ricevuta
         Paragraph corpo = new Paragraph();
-        corpo.add(new Chunk("Con la presente si attesta che ", normalFont));
-        corpo.add(new Chunk(atleta.getNome() + " " + atleta.getCognome(), boldFont));
-        corpo.add(new Chunk(" con CF " + (atleta.getCf() != null ? atleta.getCf() : "N/D"), normalFont));
-        corpo.add(new Chunk(" ha effettuato il pagamento di €", normalFont));
-        corpo.add(new Chunk(String.format("%.2f", pagamento.getImporto()), boldFont));
+        corpo.add(new Chunk("Con la presente si attesta che ", NORMAL_FONT));
+        corpo.add(new Chunk(atleta.getNome() + " " + atleta.getCognome(), BOLD_FONT));
+        corpo.add(new Chunk(" con CF " + (atleta.getCf() != null ? atleta.getCf() : "N/D"), NORMAL_FONT));
+        corpo.add(new Chunk(" ha effettuato il pagamento di €", NORMAL_FONT));
+        corpo.add(new Chunk(String.format("%.2f", pagamento.getImporto()), BOLD_FONT));
         corpo.setAlignment(Element.ALIGN_JUSTIFIED);
         corpo.setSpacingAfter(50);
         document.add(corpo);
@@ -135,7 +180,7 @@ public class PdfService {
         infoTable.setSpacingBefore(30);
         
         // Intestazione tabella
-        PdfPCell infoHeaderCell = new PdfPCell(new Phrase("INFORMAZIONI DI CONTATTO", boldFont));
+        PdfPCell infoHeaderCell = new PdfPCell(new Phrase("INFORMAZIONI DI CONTATTO", BOLD_FONT));
         infoHeaderCell.setColspan(2);
         infoHeaderCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
         infoHeaderCell.setHorizontalAlignment(Element.ALIGN_CENTER);
@@ -143,47 +188,40 @@ public class PdfService {
         infoTable.addCell(infoHeaderCell);
 
         // Dati associazione
-        addInfoTableRow(infoTable, "Sede legale:", ASSOCIAZIONE_SEDE, normalFont);
-        addInfoTableRow(infoTable, "Codice Fiscale:", ASSOCIAZIONE_CF, normalFont);
-        addInfoTableRow(infoTable, "Mail:", ASSOCIAZIONE_EMAIL, normalFont);
-        addInfoTableRow(infoTable, "Website:", ASSOCIAZIONE_WEBSITE, normalFont);
-        addInfoTableRow(infoTable, "Tel:", ASSOCIAZIONE_TEL, normalFont);
+        addInfoTableRow(infoTable, "Sede legale:", ASSOCIAZIONE_SEDE, NORMAL_FONT);
+        addInfoTableRow(infoTable, "Codice Fiscale:", ASSOCIAZIONE_CF, NORMAL_FONT);
+        addInfoTableRow(infoTable, "Mail:", ASSOCIAZIONE_EMAIL, NORMAL_FONT);
+        addInfoTableRow(infoTable, "Website:", ASSOCIAZIONE_WEBSITE, NORMAL_FONT);
+        addInfoTableRow(infoTable, "Tel:", ASSOCIAZIONE_TEL, NORMAL_FONT);
 
         document.add(infoTable);
-
-        document.close();
-        
-        return outputStream.toByteArray();
     }
 
+    /** In memory, for callers that render several statements in parallel. */
     public byte[] generateResoconto730(Atleta atleta, List<Pagamento> pagamenti, int anno) throws IOException, DocumentException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, outputStream);
-        
-        document.open();
+        writeResoconto730(atleta, pagamenti, anno, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /** Writes a 730 statement to the stream, which is left open. */
+    public void writeResoconto730(Atleta atleta, List<Pagamento> pagamenti, int anno,
+                                  OutputStream outputStream) throws DocumentException {
+        Document document = openDocument(outputStream);
 
         // Header con intestazione.png centrata
-        Image intestazione;
-        try {
-            ClassPathResource logoResource = new ClassPathResource("images/Intestazione.png");
-            InputStream logoInputStream = logoResource.getInputStream();
-            BufferedImage logoImage = ImageIO.read(logoInputStream);
-            intestazione = Image.getInstance(logoImage, null);
+        Image intestazione = pdfAssets.getIntestazione();
+        if (intestazione != null) {
             intestazione.scaleToFit(PageSize.A4.getWidth(), 120);
             intestazione.setAlignment(Element.ALIGN_TOP);
             document.add(intestazione);
             document.add(Chunk.NEWLINE);
             document.add(Chunk.NEWLINE);
-        } catch (Exception e) {
-            System.out.println("Error loading intestazione.png: " + e.getMessage());
-            intestazione = null;
         }
 
-        Font bold = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
-        Font normal = FontFactory.getFont(FontFactory.HELVETICA, 11);
-        Font small = FontFactory.getFont(FontFactory.HELVETICA, 9);
+        Font bold = RESOCONTO_BOLD_FONT;
+        Font normal = RESOCONTO_NORMAL_FONT;
+        Font small = RESOCONTO_SMALL_FONT;
 
         // Scritta associazione sotto la foto (solo se l'immagine è stata caricata)
         Paragraph associazione = new Paragraph("\n\n\n\n\n\n\n\n\n\n\n\nL'associazione sportiva dilettantistica A.S.D. KARATE-SAN,\ncon sede legale in Seregno, Via Galileo Galilei nr. 67,\ncodice fiscale n. 91125000157", normal);
@@ -231,16 +269,11 @@ public class PdfService {
         document.add(Chunk.NEWLINE);
         
         // Firma
-        try {
-            ClassPathResource firmaResource = new ClassPathResource("images/firma.png");
-            InputStream firmaInputStream = firmaResource.getInputStream();
-            BufferedImage firmaImage = ImageIO.read(firmaInputStream);
-            Image firma = Image.getInstance(firmaImage, null);
+        Image firma = pdfAssets.getFirma();
+        if (firma != null) {
             firma.scaleToFit(120, 50);
             firma.setAlignment(Element.ALIGN_RIGHT);
             document.add(firma);
-        } catch (Exception e) {
-            System.out.println("Firma image not found, skipping signature image: " + e.getMessage());
         }
         
         Paragraph presidente = new Paragraph("A.S.D. KARATE-SAN\nIl Presidente p.t.", small);
@@ -249,8 +282,6 @@ public class PdfService {
         document.add(Chunk.NEWLINE);
 
         document.close();
-        
-        return outputStream.toByteArray();
     }
 
     private void addTableHeader(PdfPTable table, String text, Font font) {
@@ -261,7 +292,7 @@ public class PdfService {
         table.addCell(cell);
     }
 
-    private void addInfoTableRow(PdfPTable table, String label, String value, Font font) {
+    private static void addInfoTableRow(PdfPTable table, String label, String value, Font font) {
         PdfPCell labelCell = new PdfPCell(new Phrase(label, font));
         labelCell.setBorder(Rectangle.NO_BORDER);
         labelCell.setPadding(5);
@@ -1,7 +1,20 @@
 package com.pagamenti.ks.service;
 
+import com.pagamenti.ks.dto.response.Atleta730Response;
+import com.pagamenti.ks.dto.response.AtletaDashboardResponse;
+import com.pagamenti.ks.dto.response.DashboardBundleResponse;
+import com.pagamenti.ks.dto.response.RicavoMensileResponse;
+import com.pagamenti.ks.dto.response.Riepilogo730Response;
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
 import com.pagamenti.ks.model.Atleta;
-import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoAtleta;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.projection.RicavoAggregatoView;
+import com.pagamenti.ks.repository.projection.Riepilogo730View;
+import com.pagamenti.ks.repository.projection.TotalePerTipoView;
+import com.pagamenti.ks.repository.projection.TotaleView;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -9,58 +22,209 @@ import java.time.LocalDate;
 import java.time.Year;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 public class ReportService {
 
+    private static final int MAX_TOP_PAYERS = 100;
+    private static final int BUNDLE_QUEUE_CAPACITY = 64;
+    // Sports expenses for children: TUIR art. 15, c. 1, lett. i-quinquies
+    private static final double LIMITE_DETRAIBILE_730 = 210.0;
+    private static final double ALIQUOTA_DETRAZIONE_730 = 0.19;
+
     private final AtletaService atletaService;
     private final PagamentoService pagamentoService;
+    private final RiepilogoService riepilogoService;
+    private final RiepilogoAtletaService riepilogoAtletaService;
+    private final DashboardCache dashboardCache;
+    private final ExecutorService bundleExecutor;
 
-    public ReportService(AtletaService atletaService, PagamentoService pagamentoService) {
+    public ReportService(AtletaService atletaService, PagamentoService pagamentoService,
+                         RiepilogoService riepilogoService, RiepilogoAtletaService riepilogoAtletaService,
+                         DashboardCache dashboardCache,
+                         @Value("${dashboard.bundle.threads:4}") int bundleThreads) {
         this.atletaService = atletaService;
         this.pagamentoService = pagamentoService;
+        this.riepilogoService = riepilogoService;
+        this.riepilogoAtletaService = riepilogoAtletaService;
+        this.dashboardCache = dashboardCache;
+        // Bounded pool and queue: when saturated the request thread runs the task itself
+        AtomicInteger threadCount = new AtomicInteger();
+        this.bundleExecutor = new ThreadPoolExecutor(bundleThreads, bundleThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BUNDLE_QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(r, "dashboard-bundle-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bundleExecutor.shutdownNow();
     }
 
     public Map<String, Object> getDashboardStats() {
+        return dashboardCache.get(this::computeDashboardStats);
+    }
+
+    /**
+     * Stats, yearly revenue and the three expiring lists with each athlete's
+     * latest payment. The independent parts run concurrently on the bundle pool;
+     * latest payments are then read from the payment summaries of all listed
+     * athletes in one query.
+     */
+    public DashboardBundleResponse getDashboardBundle(int days, List<Integer> revenueYears) {
+        CompletableFuture<Map<String, Object>> stats = supplyAsync(this::getDashboardStats);
+        CompletableFuture<Map<Integer, Double>> revenue = supplyAsync(() -> getRevenueByYear(revenueYears));
+        CompletableFuture<Long> totalPayments = supplyAsync(() -> riepilogoService.sumBetween(null, null).getConteggio());
+        CompletableFuture<List<Atleta>> certificates = supplyAsync(() -> atletaService.findAthletesWithExpiringCertificate(days));
+        CompletableFuture<List<Atleta>> ascMemberships = supplyAsync(() -> atletaService.findAthletesWithExpiringAscMembership(days));
+        CompletableFuture<List<Atleta>> fijlkamMemberships = supplyAsync(() -> atletaService.findAthletesWithExpiringFijlkamMembership(days));
+
+        try {
+            Set<Long> atletaIds = new HashSet<>();
+            for (CompletableFuture<List<Atleta>> list : List.of(certificates, ascMemberships, fijlkamMemberships)) {
+                list.join().forEach(atleta -> atletaIds.add(atleta.getId()));
+            }
+            Map<Long, RiepilogoAtleta> latestPayments = pagamentoService.findRiepiloghiByAtleti(atletaIds);
+
+            DashboardBundleResponse bundle = new DashboardBundleResponse();
+            bundle.setStats(stats.join());
+            bundle.setRevenueByYear(revenue.join());
+            bundle.setTotalPayments(totalPayments.join() != null ? totalPayments.join() : 0L);
+            bundle.setExpiringCertificates(toDashboardAthletes(certificates.join(), latestPayments));
+            bundle.setExpiringAscMemberships(toDashboardAthletes(ascMemberships.join(), latestPayments));
+            bundle.setExpiringFijlkamMemberships(toDashboardAthletes(fijlkamMemberships.join(), latestPayments));
+            return bundle;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, bundleExecutor);
+    }
+
+    private Map<Integer, Double> getRevenueByYear(List<Integer> years) {
+        Map<Integer, Double> revenueByYear = new LinkedHashMap<>();
+        for (Integer year : years) {
+            Double total = riepilogoService.sumBetween(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31)).getTotale();
+            revenueByYear.put(year, total != null ? total : 0.0);
+        }
+        return revenueByYear;
+    }
+
+    private List<AtletaDashboardResponse> toDashboardAthletes(List<Atleta> athletes, Map<Long, RiepilogoAtleta> latestPayments) {
+        return athletes.stream()
+                .map(atleta -> AtletaDashboardResponse.from(atleta).withUltimoPagamento(latestPayments.get(atleta.getId())))
+                .toList();
+    }
+
+    public Map<String, Object> getDashboardCacheMetrics() {
+        return dashboardCache.getMetrics();
+    }
+
+    private Map<String, Object> computeDashboardStats() {
         Map<String, Object> stats = new HashMap<>();
         
-        List<Atleta> allAthletes = atletaService.findAll();
-        List<Atleta> activeAthletes = atletaService.findActiveAthletes();
-        List<Pagamento> recentPayments = pagamentoService.findRecentPayments(30);
-        
-        stats.put("totalAthletes", allAthletes.size());
-        stats.put("activeAthletes", activeAthletes.size());
-        stats.put("inactiveAthletes", allAthletes.size() - activeAthletes.size());
-        stats.put("recentPayments", recentPayments.size());
+        long totalAthletes = atletaService.countAll();
+        long activeAthletes = atletaService.countActiveAthletes();
+        // Same window as findRecentPayments(30): payments strictly after the cutoff day
+        TotaleView recentPayments = riepilogoService.sumBetween(LocalDate.now().minusDays(30).plusDays(1), null);
         
-        Double totalRecentPayments = recentPayments.stream()
-                .mapToDouble(Pagamento::getImporto)
-                .sum();
-        stats.put("totalRecentPayments", totalRecentPayments);
+        stats.put("totalAthletes", totalAthletes);
+        stats.put("activeAthletes", activeAthletes);
+        stats.put("inactiveAthletes", totalAthletes - activeAthletes);
+        stats.put("recentPayments", recentPayments.getConteggio());
+        stats.put("totalRecentPayments", recentPayments.getTotale());
         
-        List<Atleta> expiringCertificates = atletaService.findAthletesWithExpiringCertificate(30);
-        stats.put("expiringCertificates", expiringCertificates.size());
+        stats.put("expiringCertificates", atletaService.countAthletesWithExpiringCertificate(30));
         
         return stats;
     }
 
     public Map<String, Double> getMonthlyRevenue(int year) {
-        Map<String, Double> monthlyRevenue = new HashMap<>();
-        
-        for (int month = 1; month <= 12; month++) {
-            LocalDate startDate = LocalDate.of(year, month, 1);
-            LocalDate endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
-            
-            Double monthlyTotal = pagamentoService.findByDateRange(startDate, endDate).stream()
-                    .mapToDouble(p -> p.getImporto() != null ? p.getImporto() : 0.0)
-                    .sum();
-            monthlyRevenue.put(getMonthName(month), monthlyTotal);
+        Map<String, Double> monthlyRevenue = new LinkedHashMap<>();
+        
+        for (RicavoMensileResponse mese : getMonthlyRevenueSeries(year, year)) {
+            monthlyRevenue.put(mese.getNomeMese(), mese.getTotale());
         }
         
         return monthlyRevenue;
     }
 
+    /**
+     * Monthly revenue for every month of the given years, read with a single
+     * grouped query on the daily rollup. Months without payments are returned
+     * with zero totals.
+     */
+    public List<RicavoMensileResponse> getMonthlyRevenueSeries(int fromYear, int toYear) {
+        List<RicavoMensileResponse> series = new ArrayList<>();
+        Map<Integer, RicavoMensileResponse> byMonth = new HashMap<>();
+        for (int year = fromYear; year <= toYear; year++) {
+            for (int month = 1; month <= 12; month++) {
+                RicavoMensileResponse mese = new RicavoMensileResponse(year, month, getMonthName(month));
+                series.add(mese);
+                byMonth.put(year * 100 + month, mese);
+            }
+        }
+        
+        LocalDate startDate = LocalDate.of(fromYear, 1, 1);
+        LocalDate endDate = LocalDate.of(toYear, 12, 31);
+        for (RicavoAggregatoView row : riepilogoService.aggregateMonthly(startDate, endDate)) {
+            RicavoMensileResponse mese = byMonth.get(row.getAnno() * 100 + row.getMese());
+            if (mese != null) {
+                mese.add(row.getTipoPagamento(), row.getDetraibile(),
+                        row.getTotale() != null ? row.getTotale() : 0.0,
+                        row.getConteggio() != null ? row.getConteggio() : 0L);
+            }
+        }
+        
+        return series;
+    }
+
+    /**
+     * Deductible and non-deductible totals of every athlete for the given
+     * years, from a single grouped query. Deductible amounts are capped per
+     * athlete and year; athletes with no payments in a year are flagged.
+     */
+    public Riepilogo730Response getRiepilogo730(List<Integer> anni) {
+        List<Integer> anniOrdinati = anni.stream().distinct().sorted().toList();
+        Riepilogo730Response riepilogo = new Riepilogo730Response(anniOrdinati,
+                LIMITE_DETRAIBILE_730, ALIQUOTA_DETRAZIONE_730);
+
+        // One query per run of consecutive years, so 2015,2024 does not read the years in between.
+        // Every query lists every athlete, in the same order, so the first one fixes the order.
+        Map<Long, Atleta730Response> perAtleta = new LinkedHashMap<>();
+        int inizio = 0;
+        for (int i = 1; i <= anniOrdinati.size(); i++) {
+            if (i == anniOrdinati.size() || anniOrdinati.get(i) != anniOrdinati.get(i - 1) + 1) {
+                LocalDate startDate = LocalDate.of(anniOrdinati.get(inizio), 1, 1);
+                LocalDate endDate = LocalDate.of(anniOrdinati.get(i - 1), 12, 31);
+                for (Riepilogo730View row : pagamentoService.aggregate730ByAtleta(startDate, endDate)) {
+                    perAtleta.computeIfAbsent(row.getAtletaId(), id -> new Atleta730Response(row, anniOrdinati)).add(row);
+                }
+                inizio = i;
+            }
+        }
+        perAtleta.values().forEach(riepilogo::addAtleta);
+        return riepilogo;
+    }
+
     public Map<String, Object> getAthleteStats() {
         Map<String, Object> stats = new HashMap<>();
         
@@ -88,40 +252,36 @@ public class ReportService {
         return stats;
     }
 
-    public List<Map<String, Object>> getTopPayingAthletes(int limit) {
-        List<Atleta> athletes = atletaService.findAll();
-        
-        return athletes.stream()
-                .map(atleta -> {
-                    Map<String, Object> athleteData = new HashMap<>();
-                    athleteData.put("atleta", atleta);
-                    athleteData.put("totalPaid", pagamentoService.getTotalPaymentsByAtleta(atleta.getId()));
-                    return athleteData;
-                })
-                .sorted((a, b) -> Double.compare((Double) b.get("totalPaid"), (Double) a.get("totalPaid")))
-                .limit(limit)
-                .collect(Collectors.toList());
-    }
-
-    public Map<String, Object> getPaymentMethodStats() {
-        List<Pagamento> allPayments = pagamentoService.findAll();
-        
-        Map<String, Long> paymentMethodCounts = allPayments.stream()
-                .filter(pagamento -> pagamento.getMetodoPagamento() != null)
-                .collect(Collectors.groupingBy(
-                        Pagamento::getMetodoPagamento,
-                        Collectors.counting()
-                ));
+    public List<TopPagatoreResponse> getTopPayingAthletes(int limit, LocalDate fromDate, LocalDate toDate, TipoPagamento tipo) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_TOP_PAYERS));
+        return pagamentoService.findTopPayers(fromDate, toDate, tipo, boundedLimit);
+    }
+
+    public int rebuildRevenueRollup() {
+        int rows = riepilogoService.ricostruisci();
+        dashboardCache.invalidate();
+        return rows;
+    }
+
+    public int rebuildAthleteSummaries() {
+        return riepilogoAtletaService.ricostruisci();
+    }
+
+    public Map<String, Object> getPaymentMethodStats(LocalDate fromDate, LocalDate toDate) {
+        Map<String, Long> paymentMethodCounts = new LinkedHashMap<>();
+        Map<String, Double> paymentMethodTotals = new LinkedHashMap<>();
+        for (TipoPagamento tipo : TipoPagamento.values()) {
+            paymentMethodCounts.put(tipo.name(), 0L);
+            paymentMethodTotals.put(tipo.name(), 0.0);
+        }
         
-        Map<String, Double> paymentMethodTotals = allPayments.stream()
-                .filter(pagamento -> pagamento.getMetodoPagamento() != null)
-                .collect(Collectors.groupingBy(
-                        Pagamento::getMetodoPagamento,
-                        Collectors.mapping(
-                                Pagamento::getImporto,
-                                Collectors.summingDouble(Double::doubleValue)
-                        )
-                ));
+        for (TotalePerTipoView row : riepilogoService.aggregateByTipoPagamento(fromDate, toDate)) {
+            if (row.getTipoPagamento() == null) {
+                continue;
+            }
+            paymentMethodCounts.put(row.getTipoPagamento().name(), row.getConteggio() != null ? row.getConteggio() : 0L);
+            paymentMethodTotals.put(row.getTipoPagamento().name(), row.getTotale() != null ? row.getTotale() : 0.0);
+        }
         
         Map<String, Object> stats = new HashMap<>();
         stats.put("counts", paymentMethodCounts);
@@ -0,0 +1,144 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Bulk 730 statements. Not transactional on purpose: the data is read up front
+ * with short queries, then rendering and writing the archive can take minutes
+ * without holding a connection.
+ */
+@Service
+public class Resoconto730Service {
+
+    private static final Logger logger = LoggerFactory.getLogger(Resoconto730Service.class);
+
+    private record Resoconto(Atleta atleta, byte[] pdf) {}
+
+    private final AtletaService atletaService;
+    private final PagamentoService pagamentoService;
+    private final PdfService pdfService;
+    private final ExecutorService renderPool;
+    private final int maxInFlight;
+
+    public Resoconto730Service(AtletaService atletaService, PagamentoService pagamentoService, PdfService pdfService,
+                               @Value("${pdf.bulk.threads:0}") int threads) {
+        this.atletaService = atletaService;
+        this.pagamentoService = pagamentoService;
+        this.pdfService = pdfService;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "pdf-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Finished PDFs wait in memory only until written, so cap what one archive keeps pending
+        this.maxInFlight = poolSize * 2;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    /**
+     * Writes a ZIP with the 730 statement of every active athlete for the year.
+     * The year's payments are loaded with one query and grouped by athlete;
+     * statements are rendered in parallel and each one is added to the archive
+     * as soon as it is ready, so the archive is never held in memory.
+     *
+     * @return number of statements written
+     */
+    public int writeResoconti730Zip(int anno, OutputStream out) throws IOException {
+        return writeResoconti730Zip(anno, out, Avanzamento.NESSUNO);
+    }
+
+    /**
+     * As {@link #writeResoconti730Zip(int, OutputStream)}, reporting each
+     * statement added to the archive.
+     */
+    public int writeResoconti730Zip(int anno, OutputStream out, Avanzamento avanzamento) throws IOException {
+        List<Atleta> atleti = atletaService.findActiveAthletes();
+        Map<Long, List<Pagamento>> pagamentiPerAtleta = pagamentoService
+                .findByDateRange(LocalDate.of(anno, 1, 1), LocalDate.of(anno, 12, 31))
+                .stream()
+                .collect(Collectors.groupingBy(Pagamento::getAtletaId));
+
+        long start = System.currentTimeMillis();
+        CompletionService<Resoconto> completion = new ExecutorCompletionService<>(renderPool);
+        Iterator<Atleta> pending = atleti.iterator();
+        // Renders submitted and not yet written, cancelled if the archive is abandoned
+        Set<Future<Resoconto>> inCorso = new HashSet<>();
+        int submitted = 0;
+        int written = 0;
+
+        avanzamento.aggiorna(0, atleti.size());
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // PDF streams are already deflated; compressing them again gains little
+        zip.setLevel(Deflater.BEST_SPEED);
+        try {
+            while (written < atleti.size()) {
+                while (pending.hasNext() && submitted - written < maxInFlight) {
+                    Atleta atleta = pending.next();
+                    List<Pagamento> pagamenti = pagamentiPerAtleta.getOrDefault(atleta.getId(), List.of());
+                    inCorso.add(completion.submit(() -> new Resoconto(atleta, pdfService.generateResoconto730(atleta, pagamenti, anno))));
+                    submitted++;
+                }
+                Future<Resoconto> pronto = completion.take();
+                inCorso.remove(pronto);
+                Resoconto resoconto = pronto.get();
+                zip.putNextEntry(new ZipEntry(entryName(resoconto.atleta(), anno)));
+                zip.write(resoconto.pdf());
+                zip.closeEntry();
+                written++;
+                avanzamento.aggiorna(written, atleti.size());
+            }
+            zip.finish();
+            zip.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("730 archive generation interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("730 generation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            // A cancelled or failed job must not leave statements rendering for nothing
+            inCorso.forEach(future -> future.cancel(true));
+        }
+
+        logger.info("Generated {} 730 statements for {} in {} ms", written, anno, System.currentTimeMillis() - start);
+        return written;
+    }
+
+    private static String entryName(Atleta atleta, int anno) {
+        // The id keeps names unique when two athletes share name and surname
+        String nome = (atleta.getCognome() + "_" + atleta.getNome()).replaceAll("[^\\p{L}\\p{N}_-]+", "_");
+        return "resoconto_730_" + nome + "_" + anno + "_" + atleta.getId() + ".pdf";
+    }
+}
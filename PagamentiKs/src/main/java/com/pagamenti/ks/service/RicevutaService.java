@@ -0,0 +1,72 @@
+package com.pagamenti.ks.service;
+
+import com.itextpdf.text.DocumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Receipts for many payments at once. Rows are read in blocks, each in its own
+ * short transaction, and written straight into the PDF, so neither the
+ * payments nor the document are held in memory and no connection is held
+ * while pages are rendered.
+ */
+@Service
+public class RicevutaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RicevutaService.class);
+
+    private final PagamentoService pagamentoService;
+    private final PdfService pdfService;
+    private final NumerazioneRicevuteService numerazioneRicevute;
+
+    public RicevutaService(PagamentoService pagamentoService, PdfService pdfService,
+                           NumerazioneRicevuteService numerazioneRicevute) {
+        this.pagamentoService = pagamentoService;
+        this.pdfService = pdfService;
+        this.numerazioneRicevute = numerazioneRicevute;
+    }
+
+    /**
+     * Writes one PDF with a receipt per page for every payment in the range,
+     * oldest first. Payments without a receipt number are numbered first, in
+     * date order, with one reservation per year.
+     *
+     * @return number of receipts written
+     */
+    public int writeLibroRicevute(LocalDate fromDate, LocalDate toDate, OutputStream out) throws IOException {
+        return writeLibroRicevute(fromDate, toDate, out, Avanzamento.NESSUNO);
+    }
+
+    /**
+     * As {@link #writeLibroRicevute(LocalDate, LocalDate, OutputStream)},
+     * reporting each receipt written; the total is counted before starting.
+     */
+    public int writeLibroRicevute(LocalDate fromDate, LocalDate toDate, OutputStream out,
+                                  Avanzamento avanzamento) throws IOException {
+        long start = System.currentTimeMillis();
+        int totale = avanzamento == Avanzamento.NESSUNO ? 0 : (int) pagamentoService.countByDateRange(fromDate, toDate);
+        avanzamento.aggiorna(0, totale);
+        numerazioneRicevute.assegnaMancanti(fromDate, toDate);
+        try (PdfService.LibroRicevute libro = pdfService.openLibroRicevute(out)) {
+            pagamentoService.forEachWithAtleta(fromDate, toDate, pagamento -> {
+                try {
+                    // Only a payment added after the numbering pass still needs a number here
+                    libro.addRicevuta(pagamento, pagamento.getAtleta(), numerazioneRicevute.assegna(pagamento));
+                    avanzamento.aggiorna(libro.getRicevute(), Math.max(totale, libro.getRicevute()));
+                } catch (DocumentException e) {
+                    throw new IllegalStateException("Receipt for payment " + pagamento.getId() + " failed", e);
+                }
+            });
+            logger.info("Receipt book {} - {}: {} receipts in {} ms",
+                    fromDate, toDate, libro.getRicevute(), System.currentTimeMillis() - start);
+            return libro.getRicevute();
+        } catch (DocumentException e) {
+            throw new IOException("Receipt book generation failed", e);
+        }
+    }
+}
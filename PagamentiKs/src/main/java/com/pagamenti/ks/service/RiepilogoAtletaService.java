@@ -0,0 +1,172 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.TopPagatoreResponse;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoAtleta;
+import com.pagamenti.ks.repository.AtletaRepository;
+import com.pagamenti.ks.repository.PagamentoRepository;
+import com.pagamenti.ks.repository.RiepilogoAtletaRepository;
+import com.pagamenti.ks.repository.projection.RiepilogoAtletaView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maintains one summary row per athlete (payment count, lifetime total,
+ * latest payment) so that "latest payment" and "total paid" are primary-key
+ * reads. Like the daily rollup of {@link RiepilogoService}, every payment
+ * write must call {@link #registra(Pagamento)} / {@link #annulla(Pagamento)}
+ * inside its own transaction; updates and deletions then call
+ * {@link #ricalcolaUltimo(Long)}, since they may remove the latest payment.
+ */
+@Service
+@Transactional
+public class RiepilogoAtletaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiepilogoAtletaService.class);
+
+    private final RiepilogoAtletaRepository riepilogoAtletaRepository;
+    private final PagamentoRepository pagamentoRepository;
+    private final AtletaRepository atletaRepository;
+
+    public RiepilogoAtletaService(RiepilogoAtletaRepository riepilogoAtletaRepository,
+                                  PagamentoRepository pagamentoRepository,
+                                  AtletaRepository atletaRepository) {
+        this.riepilogoAtletaRepository = riepilogoAtletaRepository;
+        this.pagamentoRepository = pagamentoRepository;
+        this.atletaRepository = atletaRepository;
+    }
+
+    /** Creates the empty summary of a new athlete. */
+    public void crea(Long atletaId) {
+        riepilogoAtletaRepository.creaSeManca(atletaId);
+    }
+
+    public void elimina(Long atletaId) {
+        riepilogoAtletaRepository.findById(atletaId).ifPresent(riepilogoAtletaRepository::delete);
+    }
+
+    public void registra(Pagamento pagamento) {
+        Long atletaId = pagamento.getAtletaId();
+        if (atletaId == null) {
+            return;
+        }
+        // Insert-if-missing then add: concurrent first payments never both insert the summary
+        riepilogoAtletaRepository.creaSeManca(atletaId);
+        riepilogoAtletaRepository.applyDelta(atletaId, 1, importo(pagamento));
+        if (pagamento.getData() != null) {
+            riepilogoAtletaRepository.offriUltimo(atletaId, pagamento.getId(), pagamento.getData(), pagamento.getImporto());
+        }
+    }
+
+    /**
+     * Adds payments written without going through {@link #registra(Pagamento)},
+     * as by a bulk import, then reads the latest payment again.
+     */
+    public void registra(Long atletaId, long conteggio, double importo) {
+        riepilogoAtletaRepository.creaSeManca(atletaId);
+        riepilogoAtletaRepository.applyDelta(atletaId, conteggio, importo);
+        ricalcolaUltimo(atletaId);
+    }
+
+    public void annulla(Pagamento pagamento) {
+        Long atletaId = pagamento.getAtletaId();
+        if (atletaId != null && riepilogoAtletaRepository.applyDelta(atletaId, -1, -importo(pagamento)) == 0) {
+            logger.warn("Riepilogo mancante per l'atleta {}: ricostruire il riepilogo", atletaId);
+        }
+    }
+
+    /**
+     * Reads the athlete's latest payment from the payments table again, after
+     * a payment was changed or deleted.
+     */
+    public void ricalcolaUltimo(Long atletaId) {
+        if (atletaId == null) {
+            return;
+        }
+        Pagamento ultimo = findUltimoPagamento(atletaId);
+        riepilogoAtletaRepository.impostaUltimo(atletaId,
+                ultimo != null ? ultimo.getId() : null,
+                ultimo != null ? ultimo.getData() : null,
+                ultimo != null ? ultimo.getImporto() : null);
+    }
+
+    private Pagamento findUltimoPagamento(Long atletaId) {
+        List<Pagamento> ultimo = pagamentoRepository.findLatestByAtletaId(atletaId, PageRequest.of(0, 1));
+        return ultimo.isEmpty() ? null : ultimo.get(0);
+    }
+
+    private static double importo(Pagamento pagamento) {
+        return pagamento.getImporto() != null ? pagamento.getImporto() : 0.0;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<RiepilogoAtleta> find(Long atletaId) {
+        return riepilogoAtletaRepository.findById(atletaId);
+    }
+
+    /** Summaries of the given athletes, keyed by athlete id, in one query. */
+    @Transactional(readOnly = true)
+    public Map<Long, RiepilogoAtleta> findByAtleti(Collection<Long> atletaIds) {
+        Map<Long, RiepilogoAtleta> riepiloghi = new HashMap<>();
+        if (atletaIds == null || atletaIds.isEmpty()) {
+            return riepiloghi;
+        }
+        for (RiepilogoAtleta riepilogo : riepilogoAtletaRepository.findAllById(atletaIds)) {
+            riepiloghi.put(riepilogo.getAtletaId(), riepilogo);
+        }
+        return riepiloghi;
+    }
+
+    /** Athletes with the highest lifetime total, read from the summaries alone. */
+    @Transactional(readOnly = true)
+    public List<TopPagatoreResponse> findTopPayers(int limit) {
+        return riepilogoAtletaRepository.findTopPayers(PageRequest.of(0, limit));
+    }
+
+    /**
+     * Seeds the summaries on first start against an existing history, and
+     * whenever some athlete is missing one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inizializzaSeIncompleto() {
+        if (riepilogoAtletaRepository.count() < atletaRepository.count()) {
+            ricostruisci();
+        }
+    }
+
+    /**
+     * Drops and recomputes every athlete's summary from the payments table.
+     * Returns the number of summaries written.
+     */
+    public int ricostruisci() {
+        riepilogoAtletaRepository.deleteAllInBatch();
+        Map<Long, RiepilogoAtleta> riepiloghi = new HashMap<>();
+        for (RiepilogoAtletaView view : pagamentoRepository.aggregateByAtleta()) {
+            riepiloghi.put(view.getAtletaId(), new RiepilogoAtleta(view.getAtletaId(),
+                    view.getConteggio() != null ? view.getConteggio() : 0L,
+                    view.getTotale() != null ? view.getTotale() : 0.0));
+        }
+        for (Pagamento pagamento : pagamentoRepository.findLatestOfEachAtleta()) {
+            RiepilogoAtleta riepilogo = riepiloghi.get(pagamento.getAtletaId());
+            // Several payments on the same latest day: keep the last registered one
+            if (riepilogo != null && (riepilogo.getUltimoPagamentoId() == null
+                    || riepilogo.getUltimoPagamentoId() < pagamento.getId())) {
+                riepilogo.setUltimoPagamento(pagamento);
+            }
+        }
+        riepilogoAtletaRepository.saveAll(riepiloghi.values());
+        logger.info("Riepilogo pagamenti per atleta ricostruito: {} righe", riepiloghi.size());
+        return riepiloghi.size();
+    }
+}
@@ -0,0 +1,136 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoGiornaliero;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.PagamentoRepository;
+import com.pagamenti.ks.repository.RiepilogoGiornalieroRepository;
+import com.pagamenti.ks.repository.projection.RicavoAggregatoView;
+import com.pagamenti.ks.repository.projection.RiepilogoGiornalieroView;
+import com.pagamenti.ks.repository.projection.TotalePerTipoView;
+import com.pagamenti.ks.repository.projection.TotaleView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Maintains the daily revenue rollup (day, payment type, deductible) so reports
+ * never need to scan the whole payment history. Every payment write must call
+ * {@link #registra(Pagamento)} / {@link #annulla(Pagamento)} inside its own
+ * transaction; {@link #ricostruisci()} rebuilds the table from scratch.
+ */
+@Service
+@Transactional
+public class RiepilogoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiepilogoService.class);
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private final RiepilogoGiornalieroRepository riepilogoRepository;
+    private final PagamentoRepository pagamentoRepository;
+
+    public RiepilogoService(RiepilogoGiornalieroRepository riepilogoRepository, PagamentoRepository pagamentoRepository) {
+        this.riepilogoRepository = riepilogoRepository;
+        this.pagamentoRepository = pagamentoRepository;
+    }
+
+    public void registra(Pagamento pagamento) {
+        applica(pagamento, 1);
+    }
+
+    public void annulla(Pagamento pagamento) {
+        applica(pagamento, -1);
+    }
+
+    /**
+     * Adds a group of payments of the same day, type and deductibility, as
+     * written by a bulk import.
+     */
+    public void registra(LocalDate giorno, TipoPagamento tipo, Boolean detraibile, long conteggio, double importo) {
+        applica(giorno, tipo, detraibile, conteggio, importo);
+    }
+
+    /**
+     * Removes every payment of an athlete from the rollup, before the athlete
+     * and its payments are deleted.
+     */
+    public void annullaPagamentiAtleta(Long atletaId) {
+        for (RiepilogoGiornalieroView gruppo : pagamentoRepository.aggregateDailyByAtletaId(atletaId)) {
+            applica(gruppo.getGiorno(), gruppo.getTipoPagamento(), gruppo.getDetraibile(),
+                    -gruppo.getConteggio(), gruppo.getTotale() != null ? -gruppo.getTotale() : 0.0);
+        }
+    }
+
+    private void applica(Pagamento pagamento, int segno) {
+        double importo = pagamento.getImporto() != null ? pagamento.getImporto() : 0.0;
+        applica(pagamento.getData(), pagamento.getTipoPagamento(), pagamento.getDetraibile(), segno, segno * importo);
+    }
+
+    private void applica(LocalDate giorno, TipoPagamento tipo, Boolean detraibile, long conteggio, double importo) {
+        if (giorno == null || tipo == null || detraibile == null) {
+            return;
+        }
+        if (conteggio > 0) {
+            riepilogoRepository.creaSeManca(giorno, tipo.name(), detraibile);
+        }
+        if (riepilogoRepository.applyDelta(giorno, tipo, detraibile, conteggio, importo) == 0) {
+            logger.warn("Riepilogo mancante per il giorno {} ({}, detraibile={}): ricostruire il riepilogo",
+                    giorno, tipo, detraibile);
+        }
+    }
+
+    /**
+     * Seeds the rollup on first start against an existing payment history.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inizializzaSeVuoto() {
+        if (riepilogoRepository.count() == 0 && pagamentoRepository.count() > 0) {
+            ricostruisci();
+        }
+    }
+
+    /**
+     * Drops and recomputes the whole rollup from the payments table.
+     * Returns the number of rollup rows written.
+     */
+    public int ricostruisci() {
+        riepilogoRepository.deleteAllInBatch();
+        List<RiepilogoGiornaliero> righe = pagamentoRepository.aggregateDaily().stream()
+                .filter(r -> r.getGiorno() != null && r.getTipoPagamento() != null && r.getDetraibile() != null)
+                .map(this::toRiepilogo)
+                .toList();
+        riepilogoRepository.saveAll(righe);
+        logger.info("Riepilogo pagamenti ricostruito: {} righe", righe.size());
+        return righe.size();
+    }
+
+    private RiepilogoGiornaliero toRiepilogo(RiepilogoGiornalieroView view) {
+        return new RiepilogoGiornaliero(view.getGiorno(), view.getTipoPagamento(), view.getDetraibile(),
+                view.getConteggio() != null ? view.getConteggio() : 0L,
+                view.getTotale() != null ? view.getTotale() : 0.0);
+    }
+
+    public List<RicavoAggregatoView> aggregateMonthly(LocalDate startDate, LocalDate endDate) {
+        return riepilogoRepository.aggregateMonthly(startDate, endDate);
+    }
+
+    public List<TotalePerTipoView> aggregateByTipoPagamento(LocalDate startDate, LocalDate endDate) {
+        return riepilogoRepository.aggregateByTipoPagamento(
+                startDate != null ? startDate : MIN_DATE,
+                endDate != null ? endDate : MAX_DATE);
+    }
+
+    public TotaleView sumBetween(LocalDate startDate, LocalDate endDate) {
+        return riepilogoRepository.sumBetween(
+                startDate != null ? startDate : MIN_DATE,
+                endDate != null ? endDate : MAX_DATE);
+    }
+}
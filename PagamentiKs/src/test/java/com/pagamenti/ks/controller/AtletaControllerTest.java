@@ -0,0 +1,80 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.service.AtletaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AtletaControllerTest {
+
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Test
+    void staleVersionIsRejectedWithConflict() throws Exception {
+        Atleta atleta = new Atleta();
+        atleta.setNome("Vera");
+        atleta.setCognome("Versione");
+        atleta.setAttivo(true);
+        Long id = atletaService.save(atleta).getId();
+
+        mockMvc.perform(patch("/api/v1/atleti/" + id).contentType(MERGE_PATCH)
+                        .content("{\"telefono\":\"3330000001\",\"version\":0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.nome").value("Vera"));
+
+        mockMvc.perform(patch("/api/v1/atleti/" + id).contentType(MERGE_PATCH)
+                        .content("{\"telefono\":\"3330000002\",\"version\":0}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/api/v1/atleti/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nome\":\"Vera\",\"cognome\":\"Vecchia\",\"version\":0}"))
+                .andExpect(status().isConflict());
+
+        Atleta salvato = atletaService.findById(id).orElseThrow();
+        assertEquals("3330000001", salvato.getTelefono());
+        assertEquals("Versione", salvato.getCognome());
+        assertEquals(1L, salvato.getVersion());
+    }
+
+    @Test
+    void pageItemsLeaveOutPayments() throws Exception {
+        Atleta atleta = new Atleta();
+        atleta.setNome("Gino");
+        atleta.setCognome("Paginato");
+        atleta.setAttivo(true);
+        atletaService.save(atleta);
+
+        mockMvc.perform(get("/api/v1/atleti/page").param("search", "paginato"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].cognome").value("Paginato"))
+                .andExpect(jsonPath("$.items[0].pagamenti").doesNotExist())
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void malformedCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/atleti/page").param("cursor", "non-valido!"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,145 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.service.AtletaService;
+import com.pagamenti.ks.service.PagamentoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PagamentoControllerTest {
+
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Autowired
+    private PagamentoService pagamentoService;
+
+    @Test
+    void staleVersionIsRejectedWithConflict() throws Exception {
+        Long id = creaPagamento().getId();
+
+        mockMvc.perform(patch("/api/v1/pagamenti/" + id).contentType(MERGE_PATCH)
+                        .content("{\"importo\":45,\"version\":0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.tipoPagamento").value("CONTANTI"));
+
+        mockMvc.perform(patch("/api/v1/pagamenti/" + id).contentType(MERGE_PATCH)
+                        .content("{\"importo\":50,\"version\":0}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/api/v1/pagamenti/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"importo\":55,\"dataPagamento\":\"2024-05-02\",\"tipoPagamento\":\"BONIFICO\",\"version\":0}"))
+                .andExpect(status().isConflict());
+
+        Pagamento salvato = pagamentoService.findById(id).orElseThrow();
+        assertEquals(45.0, salvato.getImporto());
+        assertEquals(TipoPagamento.CONTANTI, salvato.getTipoPagamento());
+        assertEquals(1L, salvato.getVersion());
+    }
+
+    @Test
+    void retryWithTheSameIdempotencyKeyReplaysThePayment() throws Exception {
+        Long atletaId = creaAtleta();
+        String url = "/api/v1/pagamenti/atleta/" + atletaId;
+        String body = "{\"importo\":30,\"data\":\"2024-06-10\",\"tipoPagamento\":\"CONTANTI\"}";
+
+        String prima = mockMvc.perform(post(url).header("Idempotency-Key", "test-replay")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn().getResponse().getContentAsString();
+        String ripetuta = mockMvc.perform(post(url).header("Idempotency-Key", "test-replay")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(prima, ripetuta);
+        LocalDate giorno = LocalDate.of(2024, 6, 10);
+        assertEquals(1, pagamentoService.findByAtletaAndDateRange(atletaId, giorno, giorno).size());
+    }
+
+    @Test
+    void idempotencyKeyReusedForADifferentBodyIsRejected() throws Exception {
+        Long atletaId = creaAtleta();
+        String url = "/api/v1/pagamenti/atleta/" + atletaId;
+
+        mockMvc.perform(post(url).header("Idempotency-Key", "test-altro-corpo").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"importo\":30,\"data\":\"2024-06-11\",\"tipoPagamento\":\"CONTANTI\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post(url).header("Idempotency-Key", "test-altro-corpo").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"importo\":31,\"data\":\"2024-06-11\",\"tipoPagamento\":\"CONTANTI\"}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        LocalDate giorno = LocalDate.of(2024, 6, 11);
+        assertEquals(1, pagamentoService.findByAtletaAndDateRange(atletaId, giorno, giorno).size());
+    }
+
+    @Test
+    void malformedCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/pagamenti/page").param("cursor", "non-valido!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void jsonImportReportsAMalformedDateOnItsRow() throws Exception {
+        Long atletaId = creaAtleta();
+        String body = "[{\"atletaId\":" + atletaId + ",\"data\":\"2024-13-01\",\"importo\":20,\"tipoPagamento\":\"CONTANTI\"}," +
+                "{\"atletaId\":" + atletaId + ",\"data\":\"2024-07-01\",\"importo\":20,\"tipoPagamento\":\"CONTANTI\"}]";
+
+        mockMvc.perform(post("/api/v1/pagamenti/import").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importati").value(1))
+                .andExpect(jsonPath("$.errori[0].riga").value(1))
+                .andExpect(jsonPath("$.errori[0].errore").value("Data non valida: 2024-13-01"));
+    }
+
+    @Test
+    void jsonImportThatIsNotAnArrayIsRejected() throws Exception {
+        mockMvc.perform(post("/api/v1/pagamenti/import").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Long creaAtleta() {
+        Atleta atleta = new Atleta();
+        atleta.setNome("Paolo");
+        atleta.setCognome("Versione");
+        atleta.setAttivo(true);
+        return atletaService.save(atleta).getId();
+    }
+
+    private Pagamento creaPagamento() {
+        Long atletaId = creaAtleta();
+        Pagamento pagamento = new Pagamento();
+        pagamento.setImporto(40.0);
+        pagamento.setData(LocalDate.of(2024, 5, 1));
+        pagamento.setTipoPagamento(TipoPagamento.CONTANTI);
+        return pagamentoService.createPagamento(atletaId, pagamento);
+    }
+}
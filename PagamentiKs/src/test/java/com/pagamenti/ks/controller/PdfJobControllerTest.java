@@ -0,0 +1,37 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.dto.request.PdfJobRequest;
+import com.pagamenti.ks.dto.response.PdfJobResponse;
+import com.pagamenti.ks.model.enums.TipoJobPdf;
+import com.pagamenti.ks.service.PdfJobService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDate;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PdfJobControllerTest {
+
+    @Test
+    void fullQueueAnswersServiceUnavailableWithRetryAfter() {
+        PdfJobService pdfJobService = mock(PdfJobService.class);
+        when(pdfJobService.avviaLibroRicevute(any(), any())).thenThrow(new RejectedExecutionException());
+        PdfJobController controller = new PdfJobController(pdfJobService, mock(PdfJobEvents.class));
+        PdfJobRequest request = new PdfJobRequest();
+        request.setTipo(TipoJobPdf.LIBRO_RICEVUTE);
+        request.setFromDate(LocalDate.of(2024, 1, 1));
+        request.setToDate(LocalDate.of(2024, 12, 31));
+
+        ResponseEntity<PdfJobResponse> response = controller.create(request);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("30", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
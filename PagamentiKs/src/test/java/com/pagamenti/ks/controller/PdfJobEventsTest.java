@@ -0,0 +1,70 @@
+package com.pagamenti.ks.controller;
+
+import com.pagamenti.ks.model.enums.StatoJobPdf;
+import com.pagamenti.ks.service.PdfJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PdfJobEventsTest {
+
+    @Test
+    void slowSubscriberDelaysNobodyElseAndIsDropped() throws Exception {
+        PdfJobEvents pdfJobEvents = new PdfJobEvents(20, 200);
+        CountDownLatch sblocco = new CountDownLatch(1);
+        try {
+            AtomicLong versione = new AtomicLong(1);
+            PdfJob job = mock(PdfJob.class);
+            when(job.getStato()).thenReturn(StatoJobPdf.IN_ESECUZIONE);
+            when(job.getVersione()).thenAnswer(invocation -> versione.get());
+
+            AtomicInteger inviiAlLento = new AtomicInteger();
+            pdfJobEvents.iscrivi(job, new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder builder) throws IOException {
+                    // A client that stopped reading
+                    inviiAlLento.incrementAndGet();
+                    try {
+                        sblocco.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            BlockingQueue<Object> ricevuti = new LinkedBlockingQueue<>();
+            pdfJobEvents.iscrivi(job, new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder builder) {
+                    ricevuti.add(builder.build());
+                }
+            });
+
+            assertNotNull(ricevuti.poll(5, TimeUnit.SECONDS));
+            versione.incrementAndGet();
+            assertNotNull(ricevuti.poll(5, TimeUnit.SECONDS));
+
+            // Past the send timeout the slow subscriber is dropped and gets nothing more
+            Thread.sleep(400);
+            sblocco.countDown();
+            versione.incrementAndGet();
+            assertNotNull(ricevuti.poll(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(1, inviiAlLento.get());
+        } finally {
+            sblocco.countDown();
+            pdfJobEvents.shutdown();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pagamenti.ks.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void paymentMethodStatsRejectYearsOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/v1/reports/payments/method-stats").param("year", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/reports/payments/method-stats").param("year", "99999"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/reports/payments/method-stats").param("year", "2024"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.counts.CONTANTI").exists());
+    }
+
+    @Test
+    void dashboardBundleRejectsYearsAndDaysOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/v1/reports/dashboard/bundle").param("years", "2024", "999999999"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/reports/dashboard/bundle").param("days", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/reports/dashboard/bundle").param("days", "100000"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/reports/dashboard/bundle").param("days", "30").param("years", "2023", "2024"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revenueByYear").exists());
+    }
+}
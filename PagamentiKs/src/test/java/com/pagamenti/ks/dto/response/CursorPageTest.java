@@ -0,0 +1,29 @@
+package com.pagamenti.ks.dto.response;
+
+import com.pagamenti.ks.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorPageTest {
+
+    @Test
+    void cursorRoundTripsItsKeys() {
+        String cursor = CursorPage.encodeCursor("D'Àngelo", null, 42L);
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+        assertArrayEquals(new String[] {"D'Àngelo", "", "42"}, CursorPage.decodeCursor(cursor, 3));
+        assertArrayEquals(new String[] {"2024-05-01", "7"},
+                CursorPage.decodeCursor(CursorPage.encodeCursor(LocalDate.of(2024, 5, 1), 7L), 2));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(BadRequestException.class, () -> CursorPage.decodeCursor("non è base64!", 2));
+        assertThrows(BadRequestException.class, () -> CursorPage.decodeCursor(CursorPage.encodeCursor("a", "b", 1L), 2));
+    }
+}
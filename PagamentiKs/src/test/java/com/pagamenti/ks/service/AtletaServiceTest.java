@@ -0,0 +1,68 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.model.Atleta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AtletaServiceTest {
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Test
+    void pagesSplitAthletesWithTheSameNameWithoutGapsOrRepeats() {
+        List<Long> attesi = new ArrayList<>();
+        // A null first name sorts as an empty one, before the namesakes
+        attesi.add(creaAtleta("Omonimo", null, null, null).getId());
+        for (int i = 0; i < 4; i++) {
+            attesi.add(creaAtleta("Omonimo", "Ugo", null, null).getId());
+        }
+        attesi.add(creaAtleta("Omonimo", "Zeno", null, null).getId());
+
+        List<Long> letti = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Atleta> pagina = atletaService.findPage("omonimo", cursor, 2);
+            pagina.getItems().forEach(a -> letti.add(a.getId()));
+            cursor = pagina.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(attesi, letti);
+    }
+
+    @Test
+    void searchMatchesTaxCodeEmailAndPhone() {
+        Long id = creaAtleta("Ricerca", "Rita", "RCRRTI80A41F205S", "rita.ricerca@example.com").getId();
+
+        assertEquals(List.of(id), ids(atletaService.findPage("rcrrti80", null, 10)));
+        assertEquals(List.of(id), ids(atletaService.findPage("rita.ricerca@", null, 10)));
+        assertEquals(List.of(id), ids(atletaService.findPage("3457778899", null, 10)));
+    }
+
+    private Atleta creaAtleta(String cognome, String nome, String cf, String email) {
+        Atleta atleta = new Atleta();
+        atleta.setCognome(cognome);
+        atleta.setNome(nome);
+        atleta.setCf(cf);
+        atleta.setEmail(email);
+        if (cf != null) {
+            atleta.setTelefono("3457778899");
+        }
+        atleta.setAttivo(true);
+        return atletaService.save(atleta);
+    }
+
+    private static List<Long> ids(CursorPage<Atleta> pagina) {
+        return pagina.getItems().stream().map(Atleta::getId).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Atleta;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers shared by the tests that race several threads against the same rows.
+ */
+final class Concorrenza {
+
+    private static final long ATTESA_SECONDI = 30;
+
+    private Concorrenza() {
+    }
+
+    /**
+     * Task run by {@link #inParallelo}; {@code partenza} blocks until every
+     * thread has reached it, so the critical section can start at the same time.
+     */
+    @FunctionalInterface
+    interface Compito<T> {
+        T esegui(Runnable partenza) throws Exception;
+    }
+
+    /**
+     * Runs the task on {@code threads} threads at once and returns the results
+     * in thread order, rethrowing the first failure.
+     */
+    static <T> List<T> inParallelo(int threads, Compito<T> compito) throws Exception {
+        CyclicBarrier barriera = new CyclicBarrier(threads);
+        Runnable partenza = () -> {
+            try {
+                barriera.await(ATTESA_SECONDI, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        return eseguiTutti(threads, Collections.nCopies(threads, () -> compito.esegui(partenza)));
+    }
+
+    /**
+     * Runs each work unit in its own transaction, all starting together, and keeps
+     * every transaction open for a while after the work so that the others try
+     * to touch the same uncommitted rows.
+     */
+    static void inTransazioniParallele(PlatformTransactionManager transactionManager, int threads, Runnable lavoro)
+            throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        inParallelo(threads, partenza -> {
+            partenza.run();
+            transaction.executeWithoutResult(status -> {
+                lavoro.run();
+                pausa(200);
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Runs the tasks on a pool of {@code threads} threads and returns the results
+     * in submission order, rethrowing the first failure.
+     */
+    static <T> List<T> eseguiTutti(int threads, List<? extends Callable<T>> compiti) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> compito : compiti) {
+                futures.add(executor.submit(compito));
+            }
+            List<T> risultati = new ArrayList<>();
+            for (Future<T> future : futures) {
+                risultati.add(future.get(ATTESA_SECONDI, TimeUnit.SECONDS));
+            }
+            return risultati;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static Long creaAtleta(AtletaService atletaService, String nome, String cognome) {
+        Atleta atleta = new Atleta();
+        atleta.setNome(nome);
+        atleta.setCognome(cognome);
+        atleta.setAttivo(true);
+        return atletaService.save(atleta).getId();
+    }
+
+    private static void pausa(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
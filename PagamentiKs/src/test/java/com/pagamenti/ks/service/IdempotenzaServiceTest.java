@@ -0,0 +1,48 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotenzaServiceTest {
+
+    @Autowired
+    private IdempotenzaService idempotenzaService;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Autowired
+    private PagamentoService pagamentoService;
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOnePayment() throws Exception {
+        Long atletaId = Concorrenza.creaAtleta(atletaService, "Ida", "Idempotenza");
+        LocalDate giorno = LocalDate.of(2024, 6, 1);
+
+        List<IdempotenzaService.Risultato<Pagamento>> risultati = Concorrenza.inParallelo(2,
+                partenza -> idempotenzaService.esegui("test-concorrente", "test", "richiesta", Pagamento.class, () -> {
+                    // Both requests have missed the key and are creating the payment
+                    partenza.run();
+                    Pagamento pagamento = new Pagamento();
+                    pagamento.setImporto(35.0);
+                    pagamento.setData(giorno);
+                    pagamento.setTipoPagamento(TipoPagamento.CONTANTI);
+                    return pagamentoService.createPagamento(atletaId, pagamento);
+                }));
+
+        assertEquals(risultati.get(0).valore().getId(), risultati.get(1).valore().getId());
+        assertEquals(1, risultati.stream().filter(IdempotenzaService.Risultato::ripetuto).count());
+        assertEquals(1, pagamentoService.findByAtletaAndDateRange(atletaId, giorno, giorno).size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.ImportAtletiResponse;
+import com.pagamenti.ks.dto.response.ImportAtletiResponse.Esito;
+import com.pagamenti.ks.dto.response.ImportAtletiResponse.EsitoRiga;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.model.Atleta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ImportAtletiServiceTest {
+
+    @Autowired
+    private ImportAtletiService importAtletiService;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Test
+    void invalidRowsAreReportedAndExistingAthletesKeepEmptyFields() throws Exception {
+        Atleta esistente = new Atleta();
+        esistente.setCf("MRNSRA70A41H501T");
+        esistente.setNome("Sara");
+        esistente.setCognome("Marini");
+        esistente.setTelefono("3331234567");
+        esistente.setAttivo(true);
+        Long esistenteId = atletaService.save(esistente).getId();
+
+        String csv = "cf;nome;cognome;email;dataNascita\n" +
+                "frr lcu 75d04 l219k;Luca;Ferri;;04/04/1975\n" +
+                "RSS123;Mario;Rossi;;\n" +
+                ";Mario;Rossi;;\n" +
+                "FRRLCU75D04L219K;Luca;Ferri;;\n" +
+                "GLLMRC88E05A944J;;Galli;;\n" +
+                "MRNSRA70A41H501T;;;sara@example.com;\n";
+
+        ImportAtletiResponse esito = importAtletiService.importaCsv(new StringReader(csv));
+
+        assertEquals(6, esito.getRighe());
+        assertEquals(1, esito.getCreati());
+        assertEquals(1, esito.getAggiornati());
+        assertEquals(4, esito.getScartati());
+        List<EsitoRiga> esiti = esito.getEsiti();
+        assertEsito(esiti.get(0), 1, "FRRLCU75D04L219K", Esito.CREATO, null);
+        assertEsito(esiti.get(1), 2, "RSS123", Esito.SCARTATO, "Codice fiscale non valido: RSS123");
+        assertEsito(esiti.get(2), 3, null, Esito.SCARTATO, "Codice fiscale obbligatorio");
+        assertEsito(esiti.get(3), 4, "FRRLCU75D04L219K", Esito.SCARTATO, "Codice fiscale già presente alla riga 1");
+        assertEsito(esiti.get(4), 5, "GLLMRC88E05A944J", Esito.SCARTATO, "Nome e cognome obbligatori per un nuovo atleta");
+        assertEsito(esiti.get(5), 6, "MRNSRA70A41H501T", Esito.AGGIORNATO, null);
+        assertEquals(esistenteId, esiti.get(5).getAtletaId());
+
+        Atleta creato = atletaService.findById(esiti.get(0).getAtletaId()).orElseThrow();
+        assertEquals("Ferri", creato.getCognome());
+        assertEquals(LocalDate.of(1975, 4, 4), creato.getDataNascita());
+
+        Atleta aggiornato = atletaService.findById(esistenteId).orElseThrow();
+        assertEquals("Sara", aggiornato.getNome());
+        assertEquals("Marini", aggiornato.getCognome());
+        assertEquals("3331234567", aggiornato.getTelefono());
+        assertEquals("sara@example.com", aggiornato.getEmail());
+    }
+
+    @Test
+    void csvWithoutRequiredColumnIsRejected() {
+        assertThrows(BadRequestException.class,
+                () -> importAtletiService.importaCsv(new StringReader("cf;nome\nCSTFNC92H06D612W;Franco\n")));
+    }
+
+    private static void assertEsito(EsitoRiga esito, long riga, String cf, Esito atteso, String errore) {
+        assertEquals(riga, esito.getRiga());
+        assertEquals(cf, esito.getCf());
+        assertEquals(atteso, esito.getEsito());
+        assertEquals(errore, esito.getErrore());
+    }
+}
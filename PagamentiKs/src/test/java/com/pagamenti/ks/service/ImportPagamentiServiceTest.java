@@ -0,0 +1,141 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.ImportResponse;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.RiepilogoAtleta;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ImportPagamentiServiceTest {
+
+    @Autowired
+    private ImportPagamentiService importPagamentiService;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Autowired
+    private PagamentoService pagamentoService;
+
+    @Autowired
+    private RiepilogoAtletaService riepilogoAtletaService;
+
+    @Test
+    void invalidJsonRowsAreReportedAndSkipped() throws Exception {
+        Long atletaId = creaAtleta();
+        String json = "[" +
+                pagamento(atletaId, "2024-02-01", "40", "CONTANTI") + "," +
+                pagamento(999999L, "2024-02-01", "40", "CONTANTI") + "," +
+                pagamento(atletaId, "2024-02-01", "-1", "CONTANTI") + "," +
+                pagamento(atletaId, "2024-02-01", "40", "ASSEGNO") + "," +
+                "null," +
+                pagamento(atletaId, "2024-02-30", "40", "CONTANTI") + "," +
+                pagamento(atletaId, "01/02/2024", "\"1.234,50\"", "BONIFICO") + "," +
+                "{\"atletaId\":\"abc\",\"data\":\"2024-02-01\",\"importo\":10,\"tipoPagamento\":\"CONTANTI\"}," +
+                "{\"atletaId\":" + atletaId + ",\"data\":[2024,2,1],\"importo\":10,\"tipoPagamento\":\"CONTANTI\"}," +
+                "{\"atletaId\":" + atletaId + ",\"data\":\"2024-02-02\",\"importo\":10,\"tipoPagamento\":\"CONTANTI\",\"detraibile\":false}," +
+                "\"riga\"]";
+
+        ImportResponse esito = importPagamentiService.importa(input(json));
+
+        assertEquals(11, esito.getRighe());
+        assertEquals(3, esito.getImportati());
+        assertEquals(8, esito.getScartati());
+        assertErrore(esito.getErrori().get(0), 2, "Atleta non trovato con id: 999999");
+        assertErrore(esito.getErrori().get(1), 3, "L'importo deve essere maggiore di zero");
+        assertErrore(esito.getErrori().get(2), 4, "Tipo di pagamento non valido: ASSEGNO (CONTANTI, BONIFICO)");
+        assertErrore(esito.getErrori().get(3), 5, "Riga vuota");
+        assertErrore(esito.getErrori().get(4), 6, "Data non valida: 2024-02-30");
+        assertErrore(esito.getErrori().get(5), 8, "atletaId non valido: abc");
+        assertErrore(esito.getErrori().get(6), 9, "data non valido: [2024,2,1]");
+        assertErrore(esito.getErrori().get(7), 11, "Riga non valida: atteso un oggetto");
+
+        RiepilogoAtleta riepilogo = riepilogoAtletaService.find(atletaId).orElseThrow();
+        assertEquals(3L, riepilogo.getConteggio());
+        assertEquals(1284.5, riepilogo.getTotale(), 0.001);
+        assertFalse(pagamentoService.findByAtletaAndDateRange(atletaId,
+                LocalDate.of(2024, 2, 2), LocalDate.of(2024, 2, 2)).get(0).getDetraibile());
+    }
+
+    @Test
+    void jsonBodyThatIsNotAnArrayIsRejected() {
+        assertThrows(BadRequestException.class, () -> importPagamentiService.importa(input("{\"atletaId\":1}")));
+        assertThrows(BadRequestException.class, () -> importPagamentiService.importa(input("[{\"atletaId\":1},")));
+    }
+
+    @Test
+    void invalidCsvRowsAreReportedAndSkipped() throws Exception {
+        Long atletaId = creaAtleta();
+        String csv = "atletaId;data;importo;tipoPagamento;detraibile;note\n" +
+                atletaId + ";05/03/2024;\"1.234,50\";BONIFICO;no;\"prima riga\nseconda riga\"\n" +
+                atletaId + ";31/02/2024;10;CONTANTI;;\n" +
+                atletaId + ";2024-03-06;dieci;CONTANTI;;\n" +
+                "abc;2024-03-06;10;CONTANTI;;\n" +
+                atletaId + ";2024-03-06;10;CONTANTI;forse;\n" +
+                atletaId + ";2024-03-07;10;CONTANTI;si;\n";
+
+        ImportResponse esito = importPagamentiService.importaCsv(new StringReader(csv));
+
+        assertEquals(6, esito.getRighe());
+        assertEquals(2, esito.getImportati());
+        assertEquals(4, esito.getScartati());
+        assertErrore(esito.getErrori().get(0), 2, "Data non valida: 31/02/2024");
+        assertErrore(esito.getErrori().get(1), 3, "Importo non valido: dieci");
+        assertErrore(esito.getErrori().get(2), 4, "atletaId non valido: abc");
+        assertErrore(esito.getErrori().get(3), 5, "Valore non valido: forse (usare si/no)");
+
+        RiepilogoAtleta riepilogo = riepilogoAtletaService.find(atletaId).orElseThrow();
+        assertEquals(2L, riepilogo.getConteggio());
+        assertEquals(1244.5, riepilogo.getTotale(), 0.001);
+        Pagamento bonifico = pagamentoService.findByAtletaAndDateRange(atletaId,
+                LocalDate.of(2024, 3, 5), LocalDate.of(2024, 3, 5)).get(0);
+        assertEquals(TipoPagamento.BONIFICO, bonifico.getTipoPagamento());
+        assertFalse(bonifico.getDetraibile());
+        assertEquals("prima riga\nseconda riga", bonifico.getNote());
+    }
+
+    @Test
+    void csvWithoutRequiredColumnIsRejected() {
+        assertThrows(BadRequestException.class,
+                () -> importPagamentiService.importaCsv(new StringReader("atletaId,data\n1,2024-01-01\n")));
+    }
+
+    private Long creaAtleta() {
+        Atleta atleta = new Atleta();
+        atleta.setNome("Anna");
+        atleta.setCognome("Import");
+        atleta.setAttivo(true);
+        return atletaService.save(atleta).getId();
+    }
+
+    private static String pagamento(Long atletaId, String data, String importo, String tipo) {
+        return "{\"atletaId\":" + atletaId + ",\"data\":\"" + data + "\",\"importo\":" + importo +
+                ",\"tipoPagamento\":\"" + tipo + "\"}";
+    }
+
+    private static InputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertErrore(ImportResponse.ErroreRiga errore, long riga, String messaggio) {
+        assertEquals(riga, errore.getRiga());
+        assertEquals(messaggio, errore.getErrore());
+    }
+}
@@ -0,0 +1,94 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import com.pagamenti.ks.repository.PagamentoRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NumerazioneRicevuteServiceTest {
+
+    @Autowired
+    private NumerazioneRicevuteService numerazioneRicevute;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Autowired
+    private PagamentoService pagamentoService;
+
+    @Autowired
+    private PagamentoRepository pagamentoRepository;
+
+    @Test
+    void concurrentAssignmentsNeverShareANumber() throws Exception {
+        List<Pagamento> pagamenti = creaPagamenti(LocalDate.of(2031, 3, 1), 40);
+        // Every payment is numbered twice, by two different threads
+        List<Callable<String>> assegnazioni = new ArrayList<>();
+        for (int i = 0; i < pagamenti.size() * 2; i++) {
+            Long id = pagamenti.get(i % pagamenti.size()).getId();
+            assegnazioni.add(() -> numerazioneRicevute.assegna(pagamentoRepository.findById(id).orElseThrow()));
+        }
+        List<String> assegnati = Concorrenza.eseguiTutti(8, assegnazioni);
+        Map<Long, Set<String>> numeriPerPagamento = new HashMap<>();
+        for (int i = 0; i < assegnati.size(); i++) {
+            numeriPerPagamento.computeIfAbsent(pagamenti.get(i % pagamenti.size()).getId(), id -> new HashSet<>())
+                    .add(assegnati.get(i));
+        }
+
+        Set<Long> numeri = new HashSet<>();
+        for (Pagamento pagamento : pagamenti) {
+            assertEquals(1, numeriPerPagamento.get(pagamento.getId()).size());
+            Pagamento salvato = pagamentoRepository.findById(pagamento.getId()).orElseThrow();
+            assertNotNull(salvato.getNumeroRicevuta());
+            assertEquals(2031, salvato.getAnnoRicevuta());
+            assertTrue(numeri.add(salvato.getNumeroRicevuta()), "Numero duplicato: " + salvato.getNumeroRicevuta());
+            assertEquals(NumerazioneRicevuteService.formatta(salvato), numeriPerPagamento.get(pagamento.getId()).iterator().next());
+        }
+    }
+
+    @Test
+    void numberIsKeptOnReprintAndUpdate() {
+        Pagamento pagamento = creaPagamenti(LocalDate.of(2032, 6, 1), 1).get(0);
+        String numero = numerazioneRicevute.assegna(pagamentoRepository.findById(pagamento.getId()).orElseThrow());
+
+        assertEquals(numero, numerazioneRicevute.assegna(pagamentoRepository.findById(pagamento.getId()).orElseThrow()));
+
+        Pagamento modifica = new Pagamento();
+        modifica.setImporto(99.0);
+        modifica.setData(LocalDate.of(2032, 6, 2));
+        modifica.setTipoPagamento(TipoPagamento.BONIFICO);
+        pagamentoService.update(pagamento.getId(), modifica);
+        assertEquals(numero, numerazioneRicevute.assegna(pagamentoRepository.findById(pagamento.getId()).orElseThrow()));
+    }
+
+    private List<Pagamento> creaPagamenti(LocalDate data, int quanti) {
+        Long atletaId = Concorrenza.creaAtleta(atletaService, "Mario", "Ricevute");
+        List<Pagamento> pagamenti = new ArrayList<>();
+        for (int i = 0; i < quanti; i++) {
+            Pagamento pagamento = new Pagamento();
+            pagamento.setImporto(10.0);
+            pagamento.setData(data);
+            pagamento.setTipoPagamento(TipoPagamento.CONTANTI);
+            pagamenti.add(pagamentoService.createPagamento(atletaId, pagamento));
+        }
+        return pagamenti;
+    }
+}
@@ -0,0 +1,84 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.dto.response.CursorPage;
+import com.pagamenti.ks.exception.BadRequestException;
+import com.pagamenti.ks.model.Atleta;
+import com.pagamenti.ks.model.Pagamento;
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PagamentoServiceTest {
+
+    @Autowired
+    private PagamentoService pagamentoService;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Test
+    void pagesSplitPaymentsOnTheSameDayWithoutGapsOrRepeats() {
+        Atleta atleta = new Atleta();
+        atleta.setNome("Pia");
+        atleta.setCognome("Pagine");
+        atleta.setAttivo(true);
+        Long atletaId = atletaService.save(atleta).getId();
+        List<Pagamento> creati = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Pagamento pagamento = new Pagamento();
+            pagamento.setImporto(10.0 + i);
+            // Five payments share a day, so page boundaries fall between equal dates
+            pagamento.setData(i < 5 ? LocalDate.of(1999, 7, 7) : LocalDate.of(1999, 7, 6));
+            pagamento.setTipoPagamento(TipoPagamento.CONTANTI);
+            creati.add(pagamentoService.createPagamento(atletaId, pagamento));
+        }
+
+        List<Long> letti = new ArrayList<>();
+        String cursor = null;
+        int pagine = 0;
+        do {
+            CursorPage<Pagamento> pagina = pagamentoService.findPage(atletaId, null, null, null, cursor, 2);
+            pagina.getItems().forEach(p -> letti.add(p.getId()));
+            cursor = pagina.getNextCursor();
+            pagine++;
+        } while (cursor != null);
+
+        List<Long> attesi = creati.stream()
+                .sorted(Comparator.comparing(Pagamento::getData).thenComparing(Pagamento::getId).reversed())
+                .map(Pagamento::getId)
+                .toList();
+        assertEquals(attesi, letti);
+        assertEquals(4, pagine);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        CursorPage<Pagamento> pagina = pagamentoService.findPage(null, null,
+                LocalDate.of(1899, 1, 1), LocalDate.of(1899, 1, 1), null, 10);
+
+        assertEquals(0, pagina.getItems().size());
+        assertFalse(pagina.isHasMore());
+    }
+
+    @Test
+    void cursorWithTheWrongKeysIsRejected() {
+        String cursorAtleti = CursorPage.encodeCursor("Rossi", "Mario", 1L);
+        String dataNonValida = CursorPage.encodeCursor("ieri", 1L);
+
+        assertThrows(BadRequestException.class, () -> pagamentoService.findPage(null, null, null, null, cursorAtleti, 10));
+        assertThrows(BadRequestException.class, () -> pagamentoService.findPage(null, null, null, null, dataNonValida, 10));
+    }
+}
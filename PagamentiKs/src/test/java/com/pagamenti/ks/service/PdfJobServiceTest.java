@@ -0,0 +1,120 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.enums.StatoJobPdf;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class PdfJobServiceTest {
+
+    private static final LocalDate GIORNO = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    private final RicevutaService ricevutaService = mock(RicevutaService.class);
+    private final CountDownLatch avviati = new CountDownLatch(1);
+    private final CountDownLatch rilascio = new CountDownLatch(1);
+    private PdfJobService pdfJobService;
+
+    @AfterEach
+    void shutdown() {
+        rilascio.countDown();
+        pdfJobService.shutdown();
+    }
+
+    @Test
+    void fullQueueRejectsJobsAndCancelledJobsFreeTheirPlace() throws Exception {
+        pdfJobService = creaServizio(60);
+        PdfJob inEsecuzione = pdfJobService.avviaLibroRicevute(GIORNO, GIORNO);
+        assertTrue(avviati.await(5, TimeUnit.SECONDS));
+        PdfJob inCoda = pdfJobService.avviaLibroRicevute(GIORNO, GIORNO);
+
+        assertThrows(RejectedExecutionException.class, () -> pdfJobService.avviaLibroRicevute(GIORNO, GIORNO));
+
+        assertTrue(pdfJobService.annullaOElimina(inCoda.getId()));
+        assertEquals(StatoJobPdf.ANNULLATO, inCoda.getStato());
+        assertEquals(0, pdfJobService.getMetrics().get("queued"));
+        PdfJob nuovo = pdfJobService.avviaLibroRicevute(GIORNO, GIORNO);
+        assertEquals(StatoJobPdf.IN_CODA, nuovo.getStato());
+
+        assertTrue(pdfJobService.annullaOElimina(inEsecuzione.getId()));
+        attendiFine(inEsecuzione);
+        assertEquals(StatoJobPdf.ANNULLATO, inEsecuzione.getStato());
+        assertTrue(pdfJobService.getRisultato(inEsecuzione).isEmpty());
+        assertFalse(Files.exists(directory.resolve(inEsecuzione.getId() + ".part")));
+    }
+
+    @Test
+    void endedJobsAreForgottenAfterTheRetention() throws Exception {
+        pdfJobService = creaServizio(0);
+        rilascio.countDown();
+        PdfJob job = pdfJobService.avviaLibroRicevute(GIORNO, GIORNO);
+        attendiFine(job);
+        assertEquals(StatoJobPdf.COMPLETATO, job.getStato());
+        Path risultato = pdfJobService.getRisultato(job).orElseThrow();
+
+        Thread.sleep(5);
+        pdfJobService.eliminaScaduti();
+
+        assertTrue(pdfJobService.find(job.getId()).isEmpty());
+        assertFalse(Files.exists(risultato));
+    }
+
+    @Test
+    void leftoverJobFilesAreDeletedAtStartButOtherFilesAreKept() throws Exception {
+        Path risultato = Files.createFile(directory.resolve("0f8fad5b-d9cb-469f-a165-70867728950e"));
+        Path parziale = Files.createFile(directory.resolve("7c9e6679-7425-40de-944b-e07fc1f90ae7.part"));
+        Path altro = Files.createFile(directory.resolve("note.txt"));
+
+        pdfJobService = creaServizio(60);
+
+        assertFalse(Files.exists(risultato));
+        assertFalse(Files.exists(parziale));
+        assertTrue(Files.exists(altro));
+    }
+
+    /** One worker and one queue slot; every receipt book runs until {@link #rilascio} opens. */
+    private PdfJobService creaServizio(long conservazioneMinuti) throws IOException {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            Avanzamento avanzamento = invocation.getArgument(3);
+            avviati.countDown();
+            while (rilascio.getCount() > 0) {
+                // Throws once the job is cancelled
+                avanzamento.aggiorna(0, 1);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            out.write("%PDF".getBytes());
+            avanzamento.aggiorna(1, 1);
+            return 1;
+        }).when(ricevutaService).writeLibroRicevute(any(), any(), any(), any());
+        return new PdfJobService(mock(Resoconto730Service.class), ricevutaService, directory.toString(),
+                1, 1, conservazioneMinuti);
+    }
+
+    private static void attendiFine(PdfJob job) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!job.getStato().isTerminato() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+    }
+}
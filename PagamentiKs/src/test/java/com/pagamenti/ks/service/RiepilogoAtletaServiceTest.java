@@ -0,0 +1,43 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.RiepilogoAtleta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RiepilogoAtletaServiceTest {
+
+    private static final int THREADS = 4;
+
+    @Autowired
+    private RiepilogoAtletaService riepilogoAtletaService;
+
+    @Autowired
+    private AtletaService atletaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentFirstPaymentsOfAnAthleteWithoutSummaryAreAllCounted() throws Exception {
+        Long atletaId = Concorrenza.creaAtleta(atletaService, "Luca", "Riepilogo");
+        jdbcTemplate.update("DELETE FROM riepilogo_pagamenti_atleta WHERE atleta_id = ?", atletaId);
+
+        Concorrenza.inTransazioniParallele(transactionManager, THREADS,
+                () -> riepilogoAtletaService.registra(atletaId, 1, 25.0));
+
+        RiepilogoAtleta riepilogo = riepilogoAtletaService.find(atletaId).orElseThrow();
+        assertEquals((long) THREADS, riepilogo.getConteggio());
+        assertEquals(THREADS * 25.0, riepilogo.getTotale(), 0.001);
+    }
+}
@@ -0,0 +1,46 @@
+package com.pagamenti.ks.service;
+
+import com.pagamenti.ks.model.enums.TipoPagamento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RiepilogoServiceTest {
+
+    private static final int THREADS = 4;
+
+    @Autowired
+    private RiepilogoService riepilogoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentFirstPaymentsOfADayAreAllCounted() throws Exception {
+        LocalDate giorno = LocalDate.of(2001, 2, 3);
+
+        Concorrenza.inTransazioniParallele(transactionManager, THREADS,
+                () -> riepilogoService.registra(giorno, TipoPagamento.CONTANTI, true, 1, 10.0));
+
+        List<Map<String, Object>> righe = jdbcTemplate.queryForList(
+                "SELECT conteggio, totale FROM riepilogo_pagamenti_giornaliero " +
+                "WHERE giorno = ? AND tipo_pagamento = 'CONTANTI' AND detraibile = true", giorno);
+        assertEquals(1, righe.size());
+        assertEquals((long) THREADS, ((Number) righe.get(0).get("conteggio")).longValue());
+        assertEquals(THREADS * 10.0, ((Number) righe.get(0).get("totale")).doubleValue(), 0.001);
+    }
+}
@@ -0,0 +1,73 @@
+-- Script per gli indici della tabella atleti (ricerca per codice fiscale e scadenze degli atleti attivi)
+
+-- Ricerca per codice fiscale (anche l'importazione degli atleti)
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='atleti'
+        AND indexname='idx_atleti_cf'
+    ) THEN
+        CREATE INDEX idx_atleti_cf
+        ON atleti (cf);
+
+        RAISE NOTICE 'Indice idx_atleti_cf creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_atleti_cf esiste già';
+    END IF;
+END $$;
+
+-- Atleti attivi con certificato medico in scadenza
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='atleti'
+        AND indexname='idx_atleti_attivo_certificato'
+    ) THEN
+        CREATE INDEX idx_atleti_attivo_certificato
+        ON atleti (attivo, datascadenzacertificato);
+
+        RAISE NOTICE 'Indice idx_atleti_attivo_certificato creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_atleti_attivo_certificato esiste già';
+    END IF;
+END $$;
+
+-- Atleti attivi con tesseramento ASC in scadenza
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='atleti'
+        AND indexname='idx_atleti_attivo_asc'
+    ) THEN
+        CREATE INDEX idx_atleti_attivo_asc
+        ON atleti (attivo, scadenzatesseramentoasc);
+
+        RAISE NOTICE 'Indice idx_atleti_attivo_asc creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_atleti_attivo_asc esiste già';
+    END IF;
+END $$;
+
+-- Atleti attivi con tesseramento FIJLKAM in scadenza
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='atleti'
+        AND indexname='idx_atleti_attivo_fijlkam'
+    ) THEN
+        CREATE INDEX idx_atleti_attivo_fijlkam
+        ON atleti (attivo, scadenza_tesseramento_fijlkam);
+
+        RAISE NOTICE 'Indice idx_atleti_attivo_fijlkam creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_atleti_attivo_fijlkam esiste già';
+    END IF;
+END $$;
@@ -0,0 +1,23 @@
+-- Script per l'indice della paginazione keyset degli atleti (ordine cognome, nome, id)
+
+-- L'ordinamento usa COALESCE(cognome, ''), COALESCE(nome, ''), id: un indice sulle
+-- colonne semplici non viene usato, quindi si crea l'indice sulle espressioni
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='atleti'
+        AND indexname='idx_atleti_ordinamento'
+    ) THEN
+        CREATE INDEX idx_atleti_ordinamento
+        ON atleti ((COALESCE(cognome, '')), (COALESCE(nome, '')), id);
+
+        RAISE NOTICE 'Indice idx_atleti_ordinamento creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_atleti_ordinamento esiste già';
+    END IF;
+END $$;
+
+-- Il vecchio indice sulle colonne semplici non serve più
+DROP INDEX IF EXISTS idx_atleti_cognome_nome_id;
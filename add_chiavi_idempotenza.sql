@@ -0,0 +1,41 @@
+-- Script per creare la tabella chiavi_idempotenza (Idempotency-Key delle creazioni di pagamenti)
+
+-- Crea la tabella se non esiste già
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.tables
+        WHERE table_name='chiavi_idempotenza'
+    ) THEN
+        CREATE TABLE chiavi_idempotenza (
+            chiave VARCHAR(255) PRIMARY KEY,
+            impronta VARCHAR(64) NOT NULL,
+            risposta TEXT NOT NULL,
+            creata_il TIMESTAMP(6) NOT NULL,
+            scade_il TIMESTAMP(6) NOT NULL
+        );
+
+        RAISE NOTICE 'Tabella chiavi_idempotenza creata con successo';
+    ELSE
+        RAISE NOTICE 'La tabella chiavi_idempotenza esiste già';
+    END IF;
+END $$;
+
+-- Indice per la pulizia periodica delle chiavi scadute
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='chiavi_idempotenza'
+        AND indexname='idx_chiavi_idempotenza_scadenza'
+    ) THEN
+        CREATE INDEX idx_chiavi_idempotenza_scadenza
+        ON chiavi_idempotenza (scade_il);
+
+        RAISE NOTICE 'Indice idx_chiavi_idempotenza_scadenza creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_chiavi_idempotenza_scadenza esiste già';
+    END IF;
+END $$;
@@ -0,0 +1,70 @@
+-- Script per la numerazione delle ricevute: contatore per anno e numero assegnato a ogni pagamento
+
+-- Crea la tabella dei contatori se non esiste già
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.tables
+        WHERE table_name='contatori_ricevute'
+    ) THEN
+        CREATE TABLE contatori_ricevute (
+            anno INTEGER PRIMARY KEY,
+            ultimo_numero BIGINT NOT NULL
+        );
+
+        RAISE NOTICE 'Tabella contatori_ricevute creata con successo';
+    ELSE
+        RAISE NOTICE 'La tabella contatori_ricevute esiste già';
+    END IF;
+END $$;
+
+-- Aggiungi le colonne anno_ricevuta e numero_ricevuta se non esistono già
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.columns
+        WHERE table_name='pagamenti'
+        AND column_name='anno_ricevuta'
+    ) THEN
+        ALTER TABLE pagamenti
+        ADD COLUMN anno_ricevuta INTEGER;
+
+        RAISE NOTICE 'Colonna anno_ricevuta aggiunta con successo';
+    ELSE
+        RAISE NOTICE 'La colonna anno_ricevuta esiste già';
+    END IF;
+
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.columns
+        WHERE table_name='pagamenti'
+        AND column_name='numero_ricevuta'
+    ) THEN
+        ALTER TABLE pagamenti
+        ADD COLUMN numero_ricevuta BIGINT;
+
+        RAISE NOTICE 'Colonna numero_ricevuta aggiunta con successo';
+    ELSE
+        RAISE NOTICE 'La colonna numero_ricevuta esiste già';
+    END IF;
+END $$;
+
+-- Aggiungi il vincolo che impedisce due ricevute con lo stesso numero nello stesso anno
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.table_constraints
+        WHERE table_name='pagamenti'
+        AND constraint_name='uk_pagamenti_ricevuta'
+    ) THEN
+        ALTER TABLE pagamenti
+        ADD CONSTRAINT uk_pagamenti_ricevuta UNIQUE (anno_ricevuta, numero_ricevuta);
+
+        RAISE NOTICE 'Vincolo uk_pagamenti_ricevuta aggiunto con successo';
+    ELSE
+        RAISE NOTICE 'Il vincolo uk_pagamenti_ricevuta esiste già';
+    END IF;
+END $$;
@@ -0,0 +1,55 @@
+-- Script per gli indici della tabella pagamenti
+
+-- Paginazione keyset dei pagamenti (ordine data, id)
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='pagamenti'
+        AND indexname='idx_pagamenti_data_id'
+    ) THEN
+        CREATE INDEX idx_pagamenti_data_id
+        ON pagamenti (data, id);
+
+        RAISE NOTICE 'Indice idx_pagamenti_data_id creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_pagamenti_data_id esiste già';
+    END IF;
+END $$;
+
+-- Pagamenti di un atleta per data
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='pagamenti'
+        AND indexname='idx_pagamenti_atleta_data'
+    ) THEN
+        CREATE INDEX idx_pagamenti_atleta_data
+        ON pagamenti (atleta_id, data);
+
+        RAISE NOTICE 'Indice idx_pagamenti_atleta_data creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_pagamenti_atleta_data esiste già';
+    END IF;
+END $$;
+
+-- Statistiche per tipo di pagamento in un periodo
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_indexes
+        WHERE tablename='pagamenti'
+        AND indexname='idx_pagamenti_tipo_data'
+    ) THEN
+        CREATE INDEX idx_pagamenti_tipo_data
+        ON pagamenti (tipo_pagamento, data);
+
+        RAISE NOTICE 'Indice idx_pagamenti_tipo_data creato con successo';
+    ELSE
+        RAISE NOTICE 'L''indice idx_pagamenti_tipo_data esiste già';
+    END IF;
+END $$;
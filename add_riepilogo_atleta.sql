@@ -0,0 +1,24 @@
+-- Script per creare la tabella riepilogo_pagamenti_atleta (conteggio, totale e ultimo pagamento di ogni atleta)
+
+-- Crea la tabella se non esiste già; viene riempita all'avvio dell'applicazione
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.tables
+        WHERE table_name='riepilogo_pagamenti_atleta'
+    ) THEN
+        CREATE TABLE riepilogo_pagamenti_atleta (
+            atleta_id BIGINT PRIMARY KEY,
+            conteggio BIGINT NOT NULL,
+            totale DOUBLE PRECISION NOT NULL,
+            ultimo_pagamento_id BIGINT,
+            ultimo_pagamento_data DATE,
+            ultimo_pagamento_importo DOUBLE PRECISION
+        );
+
+        RAISE NOTICE 'Tabella riepilogo_pagamenti_atleta creata con successo';
+    ELSE
+        RAISE NOTICE 'La tabella riepilogo_pagamenti_atleta esiste già';
+    END IF;
+END $$;
@@ -0,0 +1,42 @@
+-- Script per creare la tabella riepilogo_pagamenti_giornaliero (riepilogo incassi per giorno, tipo e detraibilità)
+
+-- Crea la tabella se non esiste già; viene riempita all'avvio dell'applicazione
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.tables
+        WHERE table_name='riepilogo_pagamenti_giornaliero'
+    ) THEN
+        CREATE TABLE riepilogo_pagamenti_giornaliero (
+            id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            giorno DATE NOT NULL,
+            tipo_pagamento VARCHAR(255) NOT NULL,
+            detraibile BOOLEAN NOT NULL,
+            conteggio BIGINT NOT NULL,
+            totale DOUBLE PRECISION NOT NULL
+        );
+
+        RAISE NOTICE 'Tabella riepilogo_pagamenti_giornaliero creata con successo';
+    ELSE
+        RAISE NOTICE 'La tabella riepilogo_pagamenti_giornaliero esiste già';
+    END IF;
+END $$;
+
+-- Aggiungi il vincolo di unicità se non esiste già (serve a ON CONFLICT)
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.table_constraints
+        WHERE table_name='riepilogo_pagamenti_giornaliero'
+        AND constraint_name='uk_riepilogo_giorno_tipo_detraibile'
+    ) THEN
+        ALTER TABLE riepilogo_pagamenti_giornaliero
+        ADD CONSTRAINT uk_riepilogo_giorno_tipo_detraibile UNIQUE (giorno, tipo_pagamento, detraibile);
+
+        RAISE NOTICE 'Vincolo uk_riepilogo_giorno_tipo_detraibile aggiunto con successo';
+    ELSE
+        RAISE NOTICE 'Il vincolo uk_riepilogo_giorno_tipo_detraibile esiste già';
+    END IF;
+END $$;
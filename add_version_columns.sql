@@ -0,0 +1,36 @@
+-- Script per aggiungere la colonna version (blocco ottimistico) alle tabelle atleti e pagamenti
+-- Le righe esistenti partono dalla versione 0
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.columns
+        WHERE table_name='atleti'
+        AND column_name='version'
+    ) THEN
+        ALTER TABLE atleti
+        ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+        RAISE NOTICE 'Colonna version aggiunta ad atleti con successo';
+    ELSE
+        RAISE NOTICE 'La colonna version di atleti esiste già';
+    END IF;
+END $$;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.columns
+        WHERE table_name='pagamenti'
+        AND column_name='version'
+    ) THEN
+        ALTER TABLE pagamenti
+        ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+        RAISE NOTICE 'Colonna version aggiunta a pagamenti con successo';
+    ELSE
+        RAISE NOTICE 'La colonna version di pagamenti esiste già';
+    END IF;
+END $$;
@@ -55,6 +55,15 @@ class ApiClient {
         return this.request(endpoint);
     }
 
+    // Keyset-paginated athletes: pass back page.nextCursor to get the following page
+    async getAthletesPage(search = '', cursor = null, limit = 50) {
+        const params = new URLSearchParams();
+        if (search) params.append('search', search);
+        if (cursor) params.append('cursor', cursor);
+        params.append('limit', limit);
+        return this.request(`/atleti/page?${params.toString()}`);
+    }
+
     async getActiveAthletes() {
         return this.request('/atleti/active');
     }
@@ -92,6 +101,16 @@ class ApiClient {
         });
     }
 
+    // JSON Merge Patch: send only the fields to change, plus the version read
+    // with the athlete so a concurrent edit answers 409 instead of being lost
+    async patchAthlete(id, changes) {
+        return this.request(`/atleti/${id}`, {
+            method: 'PATCH',
+            headers: { 'Content-Type': 'application/merge-patch+json' },
+            body: JSON.stringify(changes),
+        });
+    }
+
     async deleteAthlete(id) {
         return this.request(`/atleti/${id}`, {
             method: 'DELETE',
@@ -114,6 +133,7 @@ class ApiClient {
     async getPayments(filters = {}) {
         const params = new URLSearchParams();
         
+        if (filters.ids && filters.ids.length) params.append('ids', filters.ids.join(','));
         if (filters.atletaId) params.append('atletaId', filters.atletaId);
         if (filters.tipo) params.append('tipo', filters.tipo);
         if (filters.fromDate) params.append('fromDate', filters.fromDate);
@@ -123,6 +143,20 @@ class ApiClient {
         return this.request(endpoint);
     }
 
+    // Keyset-paginated payments (newest first) with the same filters as getPayments
+    async getPaymentsPage(filters = {}, cursor = null, limit = 50) {
+        const params = new URLSearchParams();
+        
+        if (filters.atletaId) params.append('atletaId', filters.atletaId);
+        if (filters.tipo) params.append('tipo', filters.tipo);
+        if (filters.fromDate) params.append('fromDate', filters.fromDate);
+        if (filters.toDate) params.append('toDate', filters.toDate);
+        if (cursor) params.append('cursor', cursor);
+        params.append('limit', limit);
+        
+        return this.request(`/pagamenti/page?${params.toString()}`);
+    }
+
     async getRecentPayments(days = 7) {
         return this.request(`/pagamenti/recent?days=${days}`);
     }
@@ -132,17 +166,34 @@ class ApiClient {
     }
 
     async createPayment(payment) {
-        return this.request('/pagamenti', {
-            method: 'POST',
-            body: JSON.stringify(payment),
-        });
+        return this.createOnce('/pagamenti', payment);
     }
 
     async createPaymentForAthlete(atletaId, payment) {
-        return this.request(`/pagamenti/atleta/${atletaId}`, {
-            method: 'POST',
-            body: JSON.stringify(payment),
-        });
+        return this.createOnce(`/pagamenti/atleta/${atletaId}`, payment);
+    }
+
+    // POSTs with an Idempotency-Key and retries with the same key when the
+    // response is lost, so a flaky connection never records a payment twice
+    async createOnce(endpoint, body, attempts = 3) {
+        const key = window.crypto?.randomUUID
+            ? window.crypto.randomUUID()
+            : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+        for (let attempt = 1; ; attempt++) {
+            try {
+                return await this.request(endpoint, {
+                    method: 'POST',
+                    headers: { 'Content-Type': 'application/json', 'Idempotency-Key': key },
+                    body: JSON.stringify(body),
+                });
+            } catch (error) {
+                const retryable = error.status === undefined || error.status === 408 || error.status >= 500;
+                if (!retryable || attempt >= attempts) {
+                    throw error;
+                }
+                await new Promise(resolve => setTimeout(resolve, 500 * 2 ** (attempt - 1)));
+            }
+        }
     }
 
     async updatePayment(id, payment) {
@@ -152,6 +203,14 @@ class ApiClient {
         });
     }
 
+    async patchPayment(id, changes) {
+        return this.request(`/pagamenti/${id}`, {
+            method: 'PATCH',
+            headers: { 'Content-Type': 'application/merge-patch+json' },
+            body: JSON.stringify(changes),
+        });
+    }
+
     async deletePayment(id) {
         return this.request(`/pagamenti/${id}`, {
             method: 'DELETE',
@@ -170,6 +229,34 @@ class ApiClient {
         return this.request(`/pagamenti/atleta/${atletaId}/resoconto730`);
     }
 
+    // Background PDF jobs (all 730 statements of a year, receipt books)
+    async createPdfJob(job) {
+        return this.request('/pdf-jobs', {
+            method: 'POST',
+            body: JSON.stringify(job),
+        });
+    }
+
+    async getPdfJob(id) {
+        return this.request(`/pdf-jobs/${id}`);
+    }
+
+    async cancelPdfJob(id) {
+        return this.request(`/pdf-jobs/${id}`, {
+            method: 'DELETE',
+        });
+    }
+
+    // Server-sent 'avanzamento' events, for an EventSource
+    getPdfJobEventsUrl(id) {
+        return `${this.baseURL}/pdf-jobs/${id}/events`;
+    }
+
+    // The result is a file on the server: let the browser download it directly
+    getPdfJobDownloadUrl(id) {
+        return `${this.baseURL}/pdf-jobs/${id}/download`;
+    }
+
     async getPaymentsByDateRange(startDate, endDate) {
         return this.request(`/pagamenti/date-range?startDate=${startDate}&endDate=${endDate}`);
     }
@@ -248,20 +335,49 @@ class ApiClient {
         return this.request('/reports/dashboard');
     }
 
+    async getDashboardBundle(days = 30, years = []) {
+        const params = new URLSearchParams({ days });
+        years.forEach(year => params.append('years', year));
+        return this.request(`/reports/dashboard/bundle?${params}`);
+    }
+
+    // Deductible totals of every athlete for the 730, by year (default: previous and current year)
+    async get730Summary(years = []) {
+        const params = new URLSearchParams();
+        years.forEach(year => params.append('anni', year));
+        const query = params.toString();
+        return this.request(query ? `/reports/resoconti730?${query}` : '/reports/resoconti730');
+    }
+
     async getMonthlyRevenue(year = new Date().getFullYear()) {
-        return this.request(`/reports/revenue/monthly/${year}`);
+        return this.request(`/reports/monthly-revenue/${year}`);
+    }
+
+    // Monthly revenue with type/deductible breakdown, optionally across several years
+    async getMonthlyRevenueSeries(fromYear = new Date().getFullYear(), toYear = fromYear) {
+        return this.request(`/reports/monthly-revenue?fromYear=${fromYear}&toYear=${toYear}`);
     }
 
     async getAthleteStats() {
         return this.request('/reports/athletes/stats');
     }
 
-    async getTopPayingAthletes(limit = 10) {
-        return this.request(`/reports/athletes/top-payers?limit=${limit}`);
+    async getTopPayingAthletes(limit = 10, filters = {}) {
+        const params = new URLSearchParams();
+        params.append('limit', limit);
+        if (filters.fromDate) params.append('fromDate', filters.fromDate);
+        if (filters.toDate) params.append('toDate', filters.toDate);
+        if (filters.tipo) params.append('tipo', filters.tipo);
+        return this.request(`/reports/athletes/top-payers?${params.toString()}`);
     }
 
-    async getPaymentMethodStats() {
-        return this.request('/reports/payments/method-stats');
+    async getPaymentMethodStats(filters = {}) {
+        const params = new URLSearchParams();
+        if (filters.year) params.append('year', filters.year);
+        if (filters.fromDate) params.append('fromDate', filters.fromDate);
+        if (filters.toDate) params.append('toDate', filters.toDate);
+        const endpoint = params.toString() ? `/reports/payments/method-stats?${params.toString()}` : '/reports/payments/method-stats';
+        return this.request(endpoint);
     }
 }
 
@@ -2,6 +2,9 @@
 class AthletiPage {
     constructor() {
         this.athletes = [];
+        this.athletesCursor = null;
+        this.searchTerm = '';
+        this.searchTimeout = null;
         this.init();
     }
 
@@ -28,7 +31,14 @@ class AthletiPage {
     bindEvents() {
         const searchInput = document.getElementById('athlete-search');
         if (searchInput) {
-            searchInput.addEventListener('input', (e) => this.filterAthletes(e.target.value));
+            searchInput.addEventListener('input', (e) => {
+                // Search runs server-side so it also covers pages not loaded yet
+                clearTimeout(this.searchTimeout);
+                this.searchTimeout = setTimeout(async () => {
+                    this.searchTerm = e.target.value.trim();
+                    await this.loadAthletes();
+                }, 300);
+            });
         }
 
         const statusFilter = document.getElementById('status-filter');
@@ -40,19 +50,33 @@ class AthletiPage {
     async loadAthletes() {
         try {
             console.log('Loading athletes from API...');
-            this.athletes = await api.getAthletes();
+            const page = await api.getAthletesPage(this.searchTerm);
+            this.athletes = page.items;
+            this.athletesCursor = page.nextCursor;
             console.log('Athletes loaded:', this.athletes.length, this.athletes);
             this.updateAthletesTable();
+            this.filterAthletes();
         } catch (error) {
             console.error('Error loading athletes:', error);
             showMessage('Errore nel caricamento degli atleti', 'error');
 
             // Show empty state when backend is unavailable
             this.athletes = [];
+            this.athletesCursor = null;
             this.updateAthletesTable();
         }
     }
 
+    async loadMoreAthletes() {
+        if (!this.athletesCursor) return;
+
+        const page = await api.getAthletesPage(this.searchTerm, this.athletesCursor);
+        this.athletes = this.athletes.concat(page.items);
+        this.athletesCursor = page.nextCursor;
+        this.updateAthletesTable();
+        this.filterAthletes();
+    }
+
     updateAthletesTable() {
         const tableBody = document.getElementById('athletes-table-body');
         if (!tableBody) return;
@@ -95,6 +119,11 @@ class AthletiPage {
         if (this.athletes.length === 0) {
             tableBody.innerHTML = '<tr><td colspan="7" class="empty-row">Nessun atleta trovato</td></tr>';
         }
+
+        const loadMoreBtn = document.getElementById('athletes-load-more');
+        if (loadMoreBtn) {
+            loadMoreBtn.style.display = this.athletesCursor ? '' : 'none';
+        }
     }
 
     async showAthleteProfile(athleteId) {
@@ -287,6 +316,15 @@ class AthletiPage {
 }
 
 // Global functions for athlete management
+window.loadMoreAthletes = async function () {
+    try {
+        await window.atletiPage.loadMoreAthletes();
+    } catch (error) {
+        showMessage('Errore nel caricamento degli atleti', 'error');
+        console.error('Error loading more athletes:', error);
+    }
+};
+
 window.hideAthleteProfile = function () {
     const profileSection = document.getElementById('athlete-profile');
     const listSection = document.getElementById('athlete-list');
@@ -412,6 +450,7 @@ window.editAthlete = async function (id) {
                 <div class="modal-body">
                     <form id="edit-athlete-form">
                         <input type="hidden" name="athlete-id" value="${athlete.id}">
+                        <input type="hidden" name="version" value="${athlete.version ?? ''}">
                         <div class="form-row">
                             <div class="form-group">
                                 <label for="nome">Nome*</label>
@@ -596,6 +635,7 @@ async function handleEditAthlete(e, modal) {
         scadenzaTesseramentoAsc: formData.get('scadenzaTesseramentoAsc') || null,
         scadenzaTesseramentoFijlkam: formData.get('scadenzaTesseramentoFijlkam') || null
     };
+    const version = formData.get('version');
 
     // Validate required fields
     if (!athlete.nome || !athlete.cognome) {
@@ -604,11 +644,15 @@ async function handleEditAthlete(e, modal) {
     }
 
     try {
-        const response = await api.updateAthlete(id, athlete);
+        const response = await api.patchAthlete(id, { ...athlete, version: version ? Number(version) : null });
         showMessage('Atleta aggiornato con successo!', 'success');
         removeModal(modal);
         await window.atletiPage.loadAthletes();
     } catch (error) {
+        if (error.status === 409) {
+            showMessage('L\'atleta è stato modificato da un altro utente: riaprilo per vedere i dati aggiornati', 'error');
+            return;
+        }
         const errorMessage = error.data?.message || error.message || 'Errore nell\'aggiornamento dell\'atleta';
         showMessage(errorMessage, 'error');
         console.error('Error updating athlete:', {
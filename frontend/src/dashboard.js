@@ -1,8 +1,8 @@
 // Dashboard specific functionality
 class DashboardPage {
     constructor() {
-        this.athletes = [];
-        this.payments = [];
+        this.revenueByYear = {};
+        this.totalPayments = 0;
         this.init();
     }
 
@@ -14,35 +14,17 @@ class DashboardPage {
         console.log('Loading dashboard data...');
         try {
             
-            // Load athletes
-            console.log('Fetching athletes...');
-            this.athletes = await api.getAthletes();
-            console.log('Athletes loaded:', this.athletes.length, this.athletes);
+            // Stats, revenue and expiring lists arrive in a single response
+            console.log('Fetching dashboard bundle...');
+            const bundle = await api.getDashboardBundle(30, [2025, 2026]);
+            console.log('Dashboard bundle loaded:', bundle);
             
-            // Load payments
-            console.log('Fetching payments...');
-            this.payments = await api.getPayments();
-            console.log('Payments loaded:', this.payments.length, this.payments);
-            
-            // Load stats
-            console.log('Fetching dashboard stats...');
-            const stats = await api.getDashboardStats();
-            console.log('Stats loaded:', stats);
-            
-            // Load expiring certificates
-            console.log('Fetching expiring certificates...');
-            this.expiringCertificates = await api.getExpiringCertificates(30);
-            console.log('Expiring certificates loaded:', this.expiringCertificates.length, this.expiringCertificates);
-            
-            // Load expiring memberships
-            console.log('Fetching expiring memberships...');
-            this.expiringMemberships = await api.getExpiringMemberships(30);
-            console.log('Expiring memberships loaded:', this.expiringMemberships.length, this.expiringMemberships);
-            
-            // Load expiring FIJLKAM memberships
-            console.log('Fetching expiring FIJLKAM memberships...');
-            this.expiringFijlkamMemberships = await api.getExpiringFijlkamMemberships(30);
-            console.log('Expiring FIJLKAM memberships loaded:', this.expiringFijlkamMemberships.length, this.expiringFijlkamMemberships);
+            const stats = bundle.stats;
+            this.revenueByYear = bundle.revenueByYear || {};
+            this.totalPayments = bundle.totalPayments || 0;
+            this.expiringCertificates = bundle.expiringCertificates || [];
+            this.expiringMemberships = bundle.expiringAscMemberships || [];
+            this.expiringFijlkamMemberships = bundle.expiringFijlkamMemberships || [];
             
             this.updateStats(stats);
             this.renderExpiringCertificates();
@@ -87,28 +69,21 @@ class DashboardPage {
         const receiptsToGenerateEl = document.getElementById('receiptsToGenerate');
 
         if (totalAthletesEl) {
-            const totalAthletes = this.athletes.filter(a => a.attivo).length;
-            totalAthletesEl.textContent = totalAthletes;
+            totalAthletesEl.textContent = stats.activeAthletes || 0;
         }
 
         if (revenue2025El) {
-            const revenue2025 = this.payments
-                .filter(p => new Date(p.data).getFullYear() === 2025)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
+            const revenue2025 = this.revenueByYear[2025] || 0;
             revenue2025El.textContent = `€ ${revenue2025.toLocaleString('it-IT', { minimumFractionDigits: 0, maximumFractionDigits: 0 })}`;
         }
 
         if (revenue2026El) {
-            const revenue2026 = this.payments
-                .filter(p => new Date(p.data).getFullYear() === 2026)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
+            const revenue2026 = this.revenueByYear[2026] || 0;
             revenue2026El.textContent = `€ ${revenue2026.toLocaleString('it-IT', { minimumFractionDigits: 0, maximumFractionDigits: 0 })}`;
         }
 
         if (receiptsToGenerateEl) {
-            // Calculate receipts to generate (payments without receipts)
-            const receiptsToGenerate = this.payments.filter(p => !p.ricevutaGenerata).length;
-            receiptsToGenerateEl.textContent = receiptsToGenerate;
+            receiptsToGenerateEl.textContent = this.totalPayments;
         }
     }
 
@@ -194,7 +169,7 @@ class DashboardPage {
             if (certDiv) {
                 certDiv.style.cursor = 'pointer';
                 certDiv.title = `Clicca per vedere l'anagrafica di ${cert.nome} ${cert.cognome}`;
-                certDiv.addEventListener('click', async (e) => {
+                certDiv.addEventListener('click', (e) => {
                     console.log('Certificate div clicked!', cert);
                     console.log('Event target:', e.target);
                     console.log('Current target:', e.currentTarget);
@@ -203,34 +178,8 @@ class DashboardPage {
                     e.stopPropagation();
                     e.stopImmediatePropagation();
                     
-                    try {
-                        // Show loading state
-                        showMessage('Caricamento anagrafica...', 'info');
-                        
-                        // Call API to get athlete details
-                        const athleteData = await api.getAthleteById(cert.id);
-                        console.log('Athlete data retrieved:', athleteData);
-                        
-                        // Get athlete's payments to find the last one
-                        const payments = await api.getPayments({ atletaId: cert.id });
-                        console.log('Payments retrieved:', payments);
-                        
-                        // Find the most recent payment
-                        const lastPayment = payments.length > 0 
-                            ? payments.sort((a, b) => new Date(b.data) - new Date(a.data))[0]
-                            : null;
-                        
-                        // Attach last payment info to athlete data
-                        athleteData.ultimoPagamento = lastPayment ? lastPayment.data : null;
-                        athleteData.importoUltimoPagamento = lastPayment ? lastPayment.importo : null;
-                        
-                        // Show athlete details in a modal or dedicated section
-                        this.showAthleteDetails(athleteData);
-                        
-                    } catch (error) {
-                        console.error('Error fetching athlete details:', error);
-                        showMessage('Errore nel caricamento dell\'anagrafica', 'error');
-                    }
+                    // The bundle already carries the registry data and the latest payment
+                    this.showAthleteDetails(cert);
                 });
             } else {
                 console.log('Certificate name div not found!');
@@ -333,7 +282,7 @@ class DashboardPage {
             if (membDiv) {
                 membDiv.style.cursor = 'pointer';
                 membDiv.title = `Clicca per vedere l'anagrafica di ${memb.nome} ${memb.cognome}`;
-                membDiv.addEventListener('click', async (e) => {
+                membDiv.addEventListener('click', (e) => {
                     console.log('Membership div clicked!', memb);
                     console.log('Event target:', e.target);
                     console.log('Current target:', e.currentTarget);
@@ -342,34 +291,8 @@ class DashboardPage {
                     e.stopPropagation();
                     e.stopImmediatePropagation();
                     
-                    try {
-                        // Show loading state
-                        showMessage('Caricamento anagrafica...', 'info');
-                        
-                        // Call API to get athlete details
-                        const athleteData = await api.getAthleteById(memb.id);
-                        console.log('Athlete data retrieved:', athleteData);
-                        
-                        // Get athlete's payments to find the last one
-                        const payments = await api.getPayments({ atletaId: memb.id });
-                        console.log('Payments retrieved:', payments);
-                        
-                        // Find the most recent payment
-                        const lastPayment = payments.length > 0 
-                            ? payments.sort((a, b) => new Date(b.data) - new Date(a.data))[0]
-                            : null;
-                        
-                        // Attach last payment info to athlete data
-                        athleteData.ultimoPagamento = lastPayment ? lastPayment.data : null;
-                        athleteData.importoUltimoPagamento = lastPayment ? lastPayment.importo : null;
-                        
-                        // Show athlete details in a modal or dedicated section
-                        this.showAthleteDetails(athleteData);
-                        
-                    } catch (error) {
-                        console.error('Error fetching athlete details:', error);
-                        showMessage('Errore nel caricamento dell\'anagrafica', 'error');
-                    }
+                    // The bundle already carries the registry data and the latest payment
+                    this.showAthleteDetails(memb);
                 });
             } else {
                 console.log('Membership name div not found!');
@@ -470,7 +393,7 @@ class DashboardPage {
             if (membDiv) {
                 membDiv.style.cursor = 'pointer';
                 membDiv.title = `Clicca per vedere l'anagrafica di ${memb.nome} ${memb.cognome}`;
-                membDiv.addEventListener('click', async (e) => {
+                membDiv.addEventListener('click', (e) => {
                     console.log('FIJLKAM membership div clicked!', memb);
                     console.log('Event target:', e.target);
                     console.log('Current target:', e.currentTarget);
@@ -479,34 +402,8 @@ class DashboardPage {
                     e.stopPropagation();
                     e.stopImmediatePropagation();
                     
-                    try {
-                        // Show loading state
-                        showMessage('Caricamento anagrafica...', 'info');
-                        
-                        // Call API to get athlete details
-                        const athleteData = await api.getAthleteById(memb.id);
-                        console.log('Athlete data retrieved:', athleteData);
-                        
-                        // Get athlete's payments to find last one
-                        const payments = await api.getPayments({ atletaId: memb.id });
-                        console.log('Payments retrieved:', payments);
-                        
-                        // Find most recent payment
-                        const lastPayment = payments.length > 0 
-                            ? payments.sort((a, b) => new Date(b.data) - new Date(a.data))[0]
-                            : null;
-                        
-                        // Attach last payment info to athlete data
-                        athleteData.ultimoPagamento = lastPayment ? lastPayment.data : null;
-                        athleteData.importoUltimoPagamento = lastPayment ? lastPayment.importo : null;
-                        
-                        // Show athlete details in a modal or dedicated section
-                        this.showAthleteDetails(athleteData);
-                        
-                    } catch (error) {
-                        console.error('Error fetching athlete details:', error);
-                        showMessage('Errore nel caricamento dell\'anagrafica', 'error');
-                    }
+                    // The bundle already carries the registry data and the latest payment
+                    this.showAthleteDetails(memb);
                 });
             } else {
                 console.log('FIJLKAM membership name div not found!');
@@ -19,6 +19,8 @@ function togglePaymentForm() {
 class PagamentiPage {
     constructor() {
         this.payments = [];
+        this.paymentFilters = {};
+        this.paymentsCursor = null;
         this.athletes = [];
         this.init();
     }
@@ -101,8 +103,10 @@ class PagamentiPage {
             this.athletes = await api.getAthletes();
             console.log('Athletes loaded:', this.athletes.length, this.athletes);
             
-            // Load payments
-            this.payments = await api.getPayments();
+            // Load first page of payments
+            const page = await api.getPaymentsPage(this.paymentFilters);
+            this.payments = page.items;
+            this.paymentsCursor = page.nextCursor;
             console.log('Payments loaded:', this.payments.length, this.payments);
             
             // Debug: Log the first payment to see its structure
@@ -124,6 +128,7 @@ class PagamentiPage {
             // Show empty state when backend is unavailable
             this.athletes = [];
             this.payments = [];
+            this.paymentsCursor = null;
             await this.updatePaymentsTable();
             this.updateAthleteFilter();
             this.updatePaymentFormAthletes();
@@ -213,6 +218,24 @@ class PagamentiPage {
         if (this.payments.length === 0) {
             tableBody.innerHTML = '<tr><td colspan="7" class="empty-row">Nessun pagamento trovato</td></tr>';
         }
+
+        this.updateLoadMoreButton();
+    }
+
+    updateLoadMoreButton() {
+        const loadMoreBtn = document.getElementById('payments-load-more');
+        if (loadMoreBtn) {
+            loadMoreBtn.style.display = this.paymentsCursor ? '' : 'none';
+        }
+    }
+
+    async loadMorePayments() {
+        if (!this.paymentsCursor) return;
+
+        const page = await api.getPaymentsPage(this.paymentFilters, this.paymentsCursor);
+        this.payments = this.payments.concat(page.items);
+        this.paymentsCursor = page.nextCursor;
+        await this.updatePaymentsTable();
     }
 
     async getAthleteName(payment) {
@@ -432,6 +455,7 @@ window.editPayment = async function(id) {
                 <div class="modal-body">
                     <form id="edit-payment-form">
                         <input type="hidden" id="payment-id" name="payment-id" value="${payment.id}">
+                        <input type="hidden" name="version" value="${payment.version ?? ''}">
                         <div class="form-group">
                             <label for="athlete">Atleta*</label>
                             <select id="athlete" name="athlete" required>
@@ -611,7 +635,10 @@ window.filterPayments = async function() {
         if (dateFrom) filters.fromDate = dateFrom;
         if (dateTo) filters.toDate = dateTo;
 
-        window.pagamentiPage.payments = await api.getPayments(filters);
+        const page = await api.getPaymentsPage(filters);
+        window.pagamentiPage.paymentFilters = filters;
+        window.pagamentiPage.payments = page.items;
+        window.pagamentiPage.paymentsCursor = page.nextCursor;
         await window.pagamentiPage.updatePaymentsTable();
     } catch (error) {
         showMessage('Errore nel filtraggio dei pagamenti', 'error');
@@ -619,6 +646,15 @@ window.filterPayments = async function() {
     }
 };
 
+window.loadMorePayments = async function() {
+    try {
+        await window.pagamentiPage.loadMorePayments();
+    } catch (error) {
+        showMessage('Errore nel caricamento dei pagamenti', 'error');
+        console.error('Error loading more payments:', error);
+    }
+};
+
 window.showQuickPaymentForm = function(athleteId) {
     const athlete = window.pagamentiPage.athletes.find(a => a.id == athleteId);
     if (!athlete) {
@@ -1171,23 +1207,25 @@ async function handleEditPayment(e, modal) {
     const formData = new FormData(e.target);
     const id = formData.get('payment-id');
     
+    const version = formData.get('version');
     const payment = {
         importo: parseFloat(formData.get('importo')),
-        dataPagamento: formData.get('data'),
+        data: formData.get('data'),
         tipoPagamento: formData.get('paymentType'),
-        metodoPagamento: formData.get('metodoPagamento'),
         detraibile: formData.get('detraibile') === 'true',
-        atleta: {
-            id: formData.get('athlete')
-        }
+        version: version ? Number(version) : null
     };
 
     try {
-        await api.updatePayment(id, payment);
+        await api.patchPayment(id, payment);
         showMessage('Pagamento aggiornato con successo!', 'success');
         removeModal(modal);
         await window.pagamentiPage.loadPaymentsData();
     } catch (error) {
+        if (error.status === 409) {
+            showMessage('Il pagamento è stato modificato da un altro utente: riaprilo per vedere i dati aggiornati', 'error');
+            return;
+        }
         showMessage('Errore nell\'aggiornamento del pagamento', 'error');
         console.error('Error updating payment:', error);
     }
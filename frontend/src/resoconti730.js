@@ -2,7 +2,9 @@
 class Resoconti730Page {
     constructor() {
         this.athletes = [];
-        this.payments = [];
+        this.summary = null;
+        this.currentYear = new Date().getFullYear();
+        this.previousYear = this.currentYear - 1;
         this.init();
     }
 
@@ -14,22 +16,12 @@ class Resoconti730Page {
     async loadDashboardData() {
         console.log('Loading 730 dashboard data...');
         try {
-            // Load athletes
-            console.log('Fetching athletes...');
-            this.athletes = await api.getAthletes();
-            console.log('Athletes loaded:', this.athletes.length, this.athletes);
+            // One grouped query on the server: per-athlete deductible totals for both years
+            this.summary = await api.get730Summary([this.previousYear, this.currentYear]);
+            this.athletes = this.summary.atleti || [];
+            console.log('730 summary loaded:', this.athletes.length, 'athletes');
             
-            // Load payments
-            console.log('Fetching payments...');
-            this.payments = await api.getPayments();
-            console.log('Payments loaded:', this.payments.length, this.payments);
-            
-            // Load stats
-            console.log('Fetching dashboard stats...');
-            const stats = await api.getDashboardStats();
-            console.log('Stats loaded:', stats);
-            
-            this.updateStats(stats);
+            this.updateStats();
             this.updateAthletes730Table();
             console.log('730 Dashboard updated successfully');
             
@@ -39,16 +31,21 @@ class Resoconti730Page {
             
             // Show empty state when backend is unavailable
             this.athletes = [];
-            this.payments = [];
-            this.updateStats({});
+            this.summary = null;
+            this.updateStats();
             this.updateAthletes730Table();
         }
     }
 
-    updateStats(stats) {
+    yearTotals(source, year) {
+        return source?.[year] || { totaleDetraibile: 0, importoDetraibile: 0, eccedenza: 0, senzaPagamenti: true };
+    }
+
+    updateStats() {
         const totalAthletesEl = document.getElementById('totalAthletes');
         const totalRevenueCurrentEl = document.getElementById('totalRevenueCurrent');
         const totalRevenuePreviousEl = document.getElementById('totalRevenuePrevious');
+        const format = (amount) => `€ ${amount.toLocaleString('it-IT', { minimumFractionDigits: 0, maximumFractionDigits: 0 })}`;
 
         if (totalAthletesEl) {
             const totalAthletes = this.athletes.filter(a => a.attivo).length;
@@ -56,22 +53,26 @@ class Resoconti730Page {
         }
 
         if (totalRevenueCurrentEl) {
-            const currentYear = new Date().getFullYear();
-            const revenueCurrent = this.payments
-                .filter(p => new Date(p.data).getFullYear() === currentYear && p.detraibile !== false)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
-            totalRevenueCurrentEl.textContent = `€ ${revenueCurrent.toLocaleString('it-IT', { minimumFractionDigits: 0, maximumFractionDigits: 0 })}`;
+            totalRevenueCurrentEl.textContent = format(this.yearTotals(this.summary?.totali, this.currentYear).totaleDetraibile);
         }
 
         if (totalRevenuePreviousEl) {
-            const previousYear = new Date().getFullYear() - 1;
-            const revenuePrevious = this.payments
-                .filter(p => new Date(p.data).getFullYear() === previousYear && p.detraibile !== false)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
-            totalRevenuePreviousEl.textContent = `€ ${revenuePrevious.toLocaleString('it-IT', { minimumFractionDigits: 0, maximumFractionDigits: 0 })}`;
+            totalRevenuePreviousEl.textContent = format(this.yearTotals(this.summary?.totali, this.previousYear).totaleDetraibile);
         }
     }
 
+    // Deductible total of a year, noting the part above the TUIR limit and years without payments
+    yearCell(totals) {
+        if (totals.senzaPagamenti) {
+            return '<span class="empty-message" title="Nessun pagamento nell\'anno">—</span>';
+        }
+        if (totals.eccedenza > 0) {
+            const limite = formatCurrency(this.summary.limiteDetraibile);
+            return `<strong title="Detraibili ${formatCurrency(totals.importoDetraibile)} (limite ${limite})">${formatCurrency(totals.totaleDetraibile)} *</strong>`;
+        }
+        return `<strong>${formatCurrency(totals.totaleDetraibile)}</strong>`;
+    }
+
     updateAthletes730Table() {
         const tableBody = document.getElementById('athletes-730-table-body');
         if (!tableBody) return;
@@ -83,14 +84,8 @@ class Resoconti730Page {
             row.setAttribute('data-athlete-id', athlete.id);
             row.setAttribute('data-athlete-name', `${athlete.nome} ${athlete.cognome}`.toLowerCase());
             
-            // Calculate total payments for this athlete
-            const athletePayments = this.payments.filter(p => p.atletaId === athlete.id);
-            const currentYearTotal = athletePayments
-                .filter(p => new Date(p.data).getFullYear() === new Date().getFullYear() && p.detraibile !== false)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
-            const previousYearTotal = athletePayments
-                .filter(p => new Date(p.data).getFullYear() === new Date().getFullYear() - 1 && p.detraibile !== false)
-                .reduce((sum, p) => sum + (p.importo || 0), 0);
+            const currentYearTotals = this.yearTotals(athlete.anni, this.currentYear);
+            const previousYearTotals = this.yearTotals(athlete.anni, this.previousYear);
             
             row.innerHTML = `
                 <td>${athlete.nome}</td>
@@ -98,8 +93,8 @@ class Resoconti730Page {
                 <td>${athlete.email || 'N/D'}</td>
                 <td>${athlete.telefono || 'N/D'}</td>
                 <td>${athlete.dataIscrizione ? formatDate(athlete.dataIscrizione) : 'N/D'}</td>
-                <td><strong>${formatCurrency(currentYearTotal)}</strong></td>
-                <td><strong>${formatCurrency(previousYearTotal)}</strong></td>
+                <td>${this.yearCell(currentYearTotals)}</td>
+                <td>${this.yearCell(previousYearTotals)}</td>
                 <td>
                     <span class="status-badge ${athlete.attivo ? 'active' : 'inactive'}">
                         ${athlete.attivo ? 'Attivo' : 'Disattivato'}
@@ -215,59 +210,51 @@ window.generateAll730Reports = async function() {
         return;
     }
 
-    try {
-        const activeAthletes = window.resoconti730Page.athletes.filter(a => a.attivo);
-        
-        if (activeAthletes.length === 0) {
-            showMessage('Nessun atleta attivo trovato', 'warning');
-            return;
-        }
+    const activeAthletes = window.resoconti730Page.athletes.filter(a => a.attivo);
+    
+    if (activeAthletes.length === 0) {
+        showMessage('Nessun atleta attivo trovato', 'warning');
+        return;
+    }
 
-        showMessage(`Generazione e download di ${activeAthletes.length} resoconti 730 in corso...`, 'info');
-        
-        // Generate and download reports for each active athlete
-        for (let i = 0; i < activeAthletes.length; i++) {
-            const athlete = activeAthletes[i];
-            console.log(`Generating report ${i + 1}/${activeAthletes.length} for ${athlete.nome} ${athlete.cognome}`);
-            
-            try {
-                // Call API to generate 730 report
-                const response = await fetch(`http://localhost:8080/api/v1/pagamenti/atleta/${athlete.id}/resoconto730`);
-                
-                if (!response.ok) {
-                    throw new Error(`HTTP error! status: ${response.status}`);
-                }
-                
-                // Get the PDF blob
-                const blob = await response.blob();
-                
-                // Create download link
-                const url = window.URL.createObjectURL(blob);
-                const a = document.createElement('a');
-                a.href = url;
-                a.download = `resoconto_730_${athlete.cognome}_${athlete.nome}_${new Date().getFullYear() - 1}.pdf`;
-                document.body.appendChild(a);
-                a.click();
-                document.body.removeChild(a);
-                window.URL.revokeObjectURL(url);
-                
-                console.log(`Successfully downloaded report for ${athlete.nome} ${athlete.cognome}`);
-                
-            } catch (error) {
-                console.error(`Error generating report for ${athlete.nome} ${athlete.cognome}:`, error);
-                showMessage(`Errore nel generare il resoconto per ${athlete.nome} ${athlete.cognome}`, 'error');
-            }
-            
-            // Small delay between downloads to avoid overwhelming the browser
-            await new Promise(resolve => setTimeout(resolve, 1000));
-        }
-        
-        showMessage(`✅ Completato il download di ${activeAthletes.length} resoconti 730`, 'success');
-        
+    const anno = new Date().getFullYear() - 1;
+    let job;
+    try {
+        // Generated in the background on the server: the page stays usable meanwhile
+        job = await api.createPdfJob({ tipo: 'RESOCONTI_730', anno });
     } catch (error) {
-        console.error('Error generating all 730 reports:', error);
-        showMessage('Errore nella generazione dei resoconti 730', 'error');
+        showMessage(error.status === 503
+            ? 'Troppe elaborazioni in corso, riprova tra poco'
+            : 'Errore durante l\'avvio della generazione dei resoconti 730', 'error');
+        return;
     }
+    showMessage(`Generazione di ${activeAthletes.length} resoconti 730 in un unico archivio ZIP...`, 'info');
+
+    const events = new EventSource(api.getPdfJobEventsUrl(job.id));
+    events.addEventListener('avanzamento', (event) => {
+        const stato = JSON.parse(event.data);
+        if (stato.stato === 'IN_ESECUZIONE' && stato.totale > 0) {
+            console.log(`Resoconti 730: ${stato.completati}/${stato.totale} (${stato.percentuale}%)`);
+        } else if (stato.stato === 'COMPLETATO') {
+            events.close();
+            const a = document.createElement('a');
+            a.href = api.getPdfJobDownloadUrl(job.id);
+            a.download = stato.fileName;
+            document.body.appendChild(a);
+            a.click();
+            document.body.removeChild(a);
+            showMessage(`${stato.completati} resoconti 730 generati`, 'success');
+        } else if (stato.stato === 'FALLITO' || stato.stato === 'ANNULLATO') {
+            events.close();
+            showMessage(`Generazione dei resoconti 730 non completata: ${stato.errore || stato.stato}`, 'error');
+        }
+    });
+    events.onerror = () => {
+        // While reconnecting the browser retries by itself and gets the current state again
+        if (events.readyState === EventSource.CLOSED) {
+            showMessage('Connessione persa: lo stato della generazione non è più aggiornato', 'warning');
+        }
+    };
 };
 
 window.viewAthletePayments = async function(athleteId) {
@@ -280,8 +267,8 @@ window.viewAthletePayments = async function(athleteId) {
             return;
         }
 
-        // Get payments for this athlete
-        const payments = window.resoconti730Page.payments.filter(p => p.atletaId === athleteId);
+        // Loaded only when the details are opened
+        const payments = await api.getPaymentsByAthlete(athleteId);
         
         const modal = document.createElement('div');
         modal.className = 'modal';